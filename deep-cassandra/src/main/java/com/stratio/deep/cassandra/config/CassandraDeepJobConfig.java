@@ -22,8 +22,23 @@ import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.BISECT
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.CQLPORT;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.CREATE_ON_WRITE;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.PAGE_SIZE;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.PREFETCH_DEPTH;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.READ_CONSISTENCY_LEVEL;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.RPCPORT;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.SPLITS_CACHE_TTL;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.SPLIT_DISCOVERY_PARALLELISM;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.SUB_RANGE_CONCURRENCY;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.CONNECTIONS_PER_HOST;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.MAX_REQUESTS_PER_CONNECTION;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.SESSION_IDLE_TIMEOUT;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.BULK_LOAD;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.BULK_LOAD_DIRECTORY;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.BULK_LOAD_STREAM;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.COUNTER_AGGREGATION_SIZE;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.WRITE_CONCURRENCY;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.WRITE_RETRIES;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.WRITE_RETRY_BACKOFF;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.TARGET_PARTITION_SIZE;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.WRITE_CONSISTENCY_LEVEL;
 import static com.stratio.deep.commons.utils.Utils.quote;
 
@@ -124,12 +139,88 @@ public abstract class CassandraDeepJobConfig<T> extends DeepJobConfig<T, Cassand
 
     private int pageSize = Constants.DEFAULT_PAGE_SIZE;
 
+    /**
+     * Number of pages worth of buffered rows below which the next result page is fetched in the background. Zero
+     * disables prefetching.
+     */
+    private int prefetchDepth = Constants.DEFAULT_PREFETCH_DEPTH;
+
     protected Boolean isWriteConfig = Boolean.TRUE;
 
     private int bisectFactor = Constants.DEFAULT_BISECT_FACTOR;
 
     private final int splitSize = Constants.DEFAULT_SPLIT_SIZE;
 
+    /**
+     * Maximum number of token ranges split concurrently when computing the partitions.
+     */
+    private int splitDiscoveryParallelism = Constants.DEFAULT_SPLIT_DISCOVERY_PARALLELISM;
+
+    /**
+     * Milliseconds during which computed token range splits are reused. Zero disables caching.
+     */
+    private long splitsCacheTtl = Constants.DEFAULT_SPLITS_CACHE_TTL;
+
+    /**
+     * Approximate number of bytes read by every partition in bisect mode. Zero disables size-aware splitting.
+     */
+    private long targetPartitionSize = Constants.DEFAULT_TARGET_PARTITION_SIZE;
+
+    /**
+     * Number of sub-ranges of a partition read concurrently. One disables sub-range reading.
+     */
+    private int subRangeConcurrency = Constants.DEFAULT_SUB_RANGE_CONCURRENCY;
+
+    /**
+     * Maximum number of batches being written at the same time by every writer.
+     */
+    private int writeConcurrency = Constants.DEFAULT_WRITE_CONCURRENCY;
+
+    /**
+     * Number of times a batch failed because of a timeout or an unavailable replica is retried.
+     */
+    private int writeRetries = Constants.DEFAULT_WRITE_RETRIES;
+
+    /**
+     * Milliseconds to wait before the first retry of a batch, doubled on every further retry.
+     */
+    private long writeRetryBackoff = Constants.DEFAULT_WRITE_RETRY_BACKOFF;
+
+    /**
+     * Connections opened to every host of the cluster. Zero keeps the driver default.
+     */
+    private int connectionsPerHost = Constants.DEFAULT_CONNECTIONS_PER_HOST;
+
+    /**
+     * Simultaneous requests on a connection before opening another one. Zero keeps the driver default.
+     */
+    private int maxRequestsPerConnection = Constants.DEFAULT_MAX_REQUESTS_PER_CONNECTION;
+
+    /**
+     * Milliseconds an unused session is kept open before closing it.
+     */
+    private long sessionIdleTimeout = Constants.DEFAULT_SESSION_IDLE_TIMEOUT;
+
+    /**
+     * Whether to save by writing SSTables instead of CQL batches.
+     */
+    private boolean bulkLoad = Constants.DEFAULT_BULK_LOAD;
+
+    /**
+     * Local directory where SSTables are written when bulk loading. Null for the system temporary directory.
+     */
+    private String bulkLoadDirectory;
+
+    /**
+     * Whether written SSTables are streamed to the cluster when bulk loading.
+     */
+    private boolean bulkLoadStream = Constants.DEFAULT_BULK_LOAD_STREAM;
+
+    /**
+     * Number of primary keys whose counter increments are summed before writing them. 0 disables the aggregation.
+     */
+    private int counterAggregationSize = Constants.DEFAULT_COUNTER_AGGREGATION_SIZE;
+
     private boolean isSplitModeSet = false;
 
     private boolean isBisectModeSet = true;
@@ -490,6 +581,66 @@ public abstract class CassandraDeepJobConfig<T> extends DeepJobConfig<T, Cassand
             pageSize(extractorConfig.getInteger(PAGE_SIZE));
         }
 
+        if (values.get(PREFETCH_DEPTH) != null) {
+            prefetchDepth(extractorConfig.getInteger(PREFETCH_DEPTH));
+        }
+
+        if (values.get(SPLIT_DISCOVERY_PARALLELISM) != null) {
+            splitDiscoveryParallelism(extractorConfig.getInteger(SPLIT_DISCOVERY_PARALLELISM));
+        }
+
+        if (values.get(SPLITS_CACHE_TTL) != null) {
+            splitsCacheTtl(extractorConfig.getLong(SPLITS_CACHE_TTL));
+        }
+
+        if (values.get(TARGET_PARTITION_SIZE) != null) {
+            targetPartitionSize(extractorConfig.getLong(TARGET_PARTITION_SIZE));
+        }
+
+        if (values.get(SUB_RANGE_CONCURRENCY) != null) {
+            subRangeConcurrency(extractorConfig.getInteger(SUB_RANGE_CONCURRENCY));
+        }
+
+        if (values.get(WRITE_CONCURRENCY) != null) {
+            writeConcurrency(extractorConfig.getInteger(WRITE_CONCURRENCY));
+        }
+
+        if (values.get(WRITE_RETRIES) != null) {
+            writeRetries(extractorConfig.getInteger(WRITE_RETRIES));
+        }
+
+        if (values.get(WRITE_RETRY_BACKOFF) != null) {
+            writeRetryBackoff(extractorConfig.getLong(WRITE_RETRY_BACKOFF));
+        }
+
+        if (values.get(CONNECTIONS_PER_HOST) != null) {
+            connectionsPerHost(extractorConfig.getInteger(CONNECTIONS_PER_HOST));
+        }
+
+        if (values.get(MAX_REQUESTS_PER_CONNECTION) != null) {
+            maxRequestsPerConnection(extractorConfig.getInteger(MAX_REQUESTS_PER_CONNECTION));
+        }
+
+        if (values.get(SESSION_IDLE_TIMEOUT) != null) {
+            sessionIdleTimeout(extractorConfig.getLong(SESSION_IDLE_TIMEOUT));
+        }
+
+        if (values.get(BULK_LOAD) != null) {
+            bulkLoad(extractorConfig.getBoolean(BULK_LOAD));
+        }
+
+        if (values.get(BULK_LOAD_DIRECTORY) != null) {
+            bulkLoadDirectory(extractorConfig.getString(BULK_LOAD_DIRECTORY));
+        }
+
+        if (values.get(BULK_LOAD_STREAM) != null) {
+            bulkLoadStream(extractorConfig.getBoolean(BULK_LOAD_STREAM));
+        }
+
+        if (values.get(COUNTER_AGGREGATION_SIZE) != null) {
+            counterAggregationSize(extractorConfig.getInteger(COUNTER_AGGREGATION_SIZE));
+        }
+
         if (values.get(READ_CONSISTENCY_LEVEL) != null) {
             readConsistencyLevel(extractorConfig.getString(READ_CONSISTENCY_LEVEL));
         }
@@ -622,6 +773,50 @@ public abstract class CassandraDeepJobConfig<T> extends DeepJobConfig<T, Cassand
             throw new IllegalArgumentException("pageSize cannot exceed " + Constants.DEFAULT_MAX_PAGE_SIZE);
         }
 
+        if (prefetchDepth < 0) {
+            throw new IllegalArgumentException("prefetchDepth cannot be negative");
+        }
+
+        if (splitDiscoveryParallelism <= 0) {
+            throw new IllegalArgumentException("splitDiscoveryParallelism must be greater than zero");
+        }
+
+        if (targetPartitionSize < 0) {
+            throw new IllegalArgumentException("targetPartitionSize cannot be negative");
+        }
+
+        if (subRangeConcurrency <= 0) {
+            throw new IllegalArgumentException("subRangeConcurrency must be greater than zero");
+        }
+
+        if (writeConcurrency <= 0) {
+            throw new IllegalArgumentException("writeConcurrency must be greater than zero");
+        }
+
+        if (writeRetries < 0) {
+            throw new IllegalArgumentException("writeRetries cannot be negative");
+        }
+
+        if (writeRetryBackoff < 0) {
+            throw new IllegalArgumentException("writeRetryBackoff cannot be negative");
+        }
+
+        if (connectionsPerHost < 0) {
+            throw new IllegalArgumentException("connectionsPerHost cannot be negative");
+        }
+
+        if (maxRequestsPerConnection < 0) {
+            throw new IllegalArgumentException("maxRequestsPerConnection cannot be negative");
+        }
+
+        if (sessionIdleTimeout < 0) {
+            throw new IllegalArgumentException("sessionIdleTimeout cannot be negative");
+        }
+
+        if (counterAggregationSize < 0) {
+            throw new IllegalArgumentException("counterAggregationSize cannot be negative");
+        }
+
         validateConsistencyLevels();
 
         TableMetadata tableMetadata = fetchTableMetadata();
@@ -787,6 +982,246 @@ public abstract class CassandraDeepJobConfig<T> extends DeepJobConfig<T, Cassand
         return this;
     }
 
+    public int getPrefetchDepth() {
+        return this.prefetchDepth;
+    }
+
+    /**
+     * Sets when the reader fetches the next result page in the background: as soon as no more than
+     * {@code prefetchDepth * pageSize} rows are left buffered. Only one page is fetched at a time whatever the
+     * value, a greater one just starts that fetch earlier and buffers more rows. Zero disables prefetching, so every
+     * page is fetched only when the previous one has been consumed.
+     *
+     * @param prefetchDepth the number of pages worth of buffered rows that triggers the next fetch.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> prefetchDepth(int prefetchDepth) {
+        this.prefetchDepth = prefetchDepth;
+        return this;
+    }
+
+    public int getSplitDiscoveryParallelism() {
+        return this.splitDiscoveryParallelism;
+    }
+
+    /**
+     * Sets the maximum number of token ranges split concurrently when computing the partitions.
+     *
+     * @param splitDiscoveryParallelism the maximum number of concurrent split requests.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> splitDiscoveryParallelism(int splitDiscoveryParallelism) {
+        this.splitDiscoveryParallelism = splitDiscoveryParallelism;
+        return this;
+    }
+
+    public long getSplitsCacheTtl() {
+        return this.splitsCacheTtl;
+    }
+
+    /**
+     * Sets the time during which the token range splits computed for a keyspace, table and split size are reused by
+     * later jobs instead of being asked again to the cluster. Zero disables caching.
+     *
+     * @param splitsCacheTtl the time to live of the cached splits, in milliseconds.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> splitsCacheTtl(long splitsCacheTtl) {
+        this.splitsCacheTtl = splitsCacheTtl;
+        return this;
+    }
+
+    public long getTargetPartitionSize() {
+        return this.targetPartitionSize;
+    }
+
+    /**
+     * Sets the approximate number of bytes each partition should read. When set, the ring token ranges are split or
+     * merged according to the table size estimates instead of being bisected {@code bisectFactor} times. Zero
+     * disables size-aware splitting.
+     *
+     * @param targetPartitionSize the target partition size, in bytes.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> targetPartitionSize(long targetPartitionSize) {
+        this.targetPartitionSize = targetPartitionSize;
+        return this;
+    }
+
+    public int getSubRangeConcurrency() {
+        return this.subRangeConcurrency;
+    }
+
+    /**
+     * Sets the number of threads reading each partition. When greater than one, the token range of the partition is
+     * divided into smaller sub-ranges, and the threads take them one at a time until all of them have been read, so a
+     * slow sub-range does not hold up the rest of the partition.
+     *
+     * @param subRangeConcurrency the number of threads reading each partition.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> subRangeConcurrency(int subRangeConcurrency) {
+        this.subRangeConcurrency = subRangeConcurrency;
+        return this;
+    }
+
+    public int getWriteConcurrency() {
+        return this.writeConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of batches every writer has in flight. Writing blocks while the limit is reached.
+     *
+     * @param writeConcurrency the maximum number of batches being written at the same time.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> writeConcurrency(int writeConcurrency) {
+        this.writeConcurrency = writeConcurrency;
+        return this;
+    }
+
+    public int getWriteRetries() {
+        return this.writeRetries;
+    }
+
+    /**
+     * Sets the number of times a batch which failed because of a timeout or an unavailable replica is retried before
+     * failing the write.
+     *
+     * @param writeRetries the number of retries.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> writeRetries(int writeRetries) {
+        this.writeRetries = writeRetries;
+        return this;
+    }
+
+    public long getWriteRetryBackoff() {
+        return this.writeRetryBackoff;
+    }
+
+    /**
+     * Sets the milliseconds to wait before the first retry of a batch. The wait is doubled on every further retry.
+     *
+     * @param writeRetryBackoff the milliseconds to wait before the first retry.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> writeRetryBackoff(long writeRetryBackoff) {
+        this.writeRetryBackoff = writeRetryBackoff;
+        return this;
+    }
+
+    public int getConnectionsPerHost() {
+        return this.connectionsPerHost;
+    }
+
+    /**
+     * Sets the number of connections opened to every local host of the cluster. Zero keeps the driver default.
+     *
+     * @param connectionsPerHost the number of connections per host.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> connectionsPerHost(int connectionsPerHost) {
+        this.connectionsPerHost = connectionsPerHost;
+        return this;
+    }
+
+    public int getMaxRequestsPerConnection() {
+        return this.maxRequestsPerConnection;
+    }
+
+    /**
+     * Sets the number of simultaneous requests on a connection above which the driver opens another one. Zero keeps
+     * the driver default.
+     *
+     * @param maxRequestsPerConnection the maximum number of simultaneous requests per connection.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> maxRequestsPerConnection(int maxRequestsPerConnection) {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        return this;
+    }
+
+    public long getSessionIdleTimeout() {
+        return this.sessionIdleTimeout;
+    }
+
+    /**
+     * Sets the milliseconds a session nobody is using is kept open, so that the next task of the executor can reuse
+     * it. Zero closes sessions as soon as they are released.
+     *
+     * @param sessionIdleTimeout the milliseconds an unused session is kept open.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> sessionIdleTimeout(long sessionIdleTimeout) {
+        this.sessionIdleTimeout = sessionIdleTimeout;
+        return this;
+    }
+
+    public boolean isBulkLoad() {
+        return this.bulkLoad;
+    }
+
+    /**
+     * Sets whether to save by writing every partition to local SSTables, instead of sending CQL batches through the
+     * coordinators. Counters cannot be increased by bulk loading.
+     *
+     * @param bulkLoad true to save by writing SSTables.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> bulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+        return this;
+    }
+
+    public String getBulkLoadDirectory() {
+        return this.bulkLoadDirectory;
+    }
+
+    /**
+     * Sets the local directory where SSTables are written when bulk loading. Defaults to the system temporary
+     * directory.
+     *
+     * @param bulkLoadDirectory the local directory.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> bulkLoadDirectory(String bulkLoadDirectory) {
+        this.bulkLoadDirectory = bulkLoadDirectory;
+        return this;
+    }
+
+    public boolean isBulkLoadStream() {
+        return this.bulkLoadStream;
+    }
+
+    /**
+     * Sets whether the SSTables written when bulk loading are streamed to the cluster and then deleted, or left in
+     * the bulk load directory to be loaded offline.
+     *
+     * @param bulkLoadStream true to stream the SSTables to the cluster.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> bulkLoadStream(boolean bulkLoadStream) {
+        this.bulkLoadStream = bulkLoadStream;
+        return this;
+    }
+
+    public int getCounterAggregationSize() {
+        return this.counterAggregationSize;
+    }
+
+    /**
+     * Sets the number of primary keys whose counter increments are summed in memory before writing them, when
+     * saving with an IncreaseCountersQueryBuilder. 0 writes every increment as is.
+     *
+     * @param counterAggregationSize the number of primary keys.
+     * @return this object.
+     */
+    public CassandraDeepJobConfig<T> counterAggregationSize(int counterAggregationSize) {
+        this.counterAggregationSize = counterAggregationSize;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
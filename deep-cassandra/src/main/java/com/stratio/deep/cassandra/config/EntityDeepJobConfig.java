@@ -19,10 +19,13 @@ package com.stratio.deep.cassandra.config;
 import java.lang.annotation.AnnotationTypeMismatchException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 
@@ -70,9 +73,40 @@ public final class EntityDeepJobConfig<T extends IDeepType> extends CassandraDee
 
         mapDBNameToEntityName = Collections.unmodifiableMap(tmpMap);
 
+        initProjection(deepFields);
+
         return this;
     }
 
+    /**
+     * Unless input columns have been explicitly configured, reads only the columns mapped to a property of the
+     * entity, since any other column would be fetched and then discarded.
+     *
+     * @param deepFields the entity properties mapped to a column.
+     */
+    private void initProjection(Field[] deepFields) {
+        if (isWriteConfig || !ArrayUtils.isEmpty(inputColumns)) {
+            return;
+        }
+
+        Map<String, Cell> colDefs = columnDefinitions();
+        if (colDefs == null) {
+            return;
+        }
+
+        List<String> columns = new ArrayList<>();
+        for (Field f : deepFields) {
+            String dbName = AnnotationUtils.deepFieldName(f);
+            if (colDefs.containsKey(dbName)) {
+                columns.add(dbName);
+            }
+        }
+
+        if (!columns.isEmpty()) {
+            inputColumns = columns.toArray(new String[columns.size()]);
+        }
+    }
+
     public Configuration getHadoopConfiguration() {
         return null;
     }
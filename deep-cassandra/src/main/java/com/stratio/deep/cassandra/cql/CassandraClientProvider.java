@@ -19,7 +19,6 @@ package com.stratio.deep.cassandra.cql;
 import static com.stratio.deep.commons.utils.Utils.quote;
 
 import java.net.InetAddress;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,40 +26,50 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PoolingOptions;
 import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.policies.LoadBalancingPolicy;
 import com.datastax.driver.core.policies.Policies;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
 import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
 import com.stratio.deep.commons.exception.DeepIOException;
 import com.stratio.deep.commons.utils.Pair;
+import com.stratio.deep.commons.utils.ReferenceCountedRegistry;
 
 /**
+ * Executor wide registry of Cassandra sessions.
+ * <p>
+ * One {@link Cluster} is built per contact point, port, routing, credentials and pooling options, and shared by the
+ * sessions of all keyspaces. Sessions are reference counted: every {@link #getSession} must be paired with a
+ * {@link #release}. Sessions nobody is using are closed once they have been idle for the configured
+ * {@link CassandraDeepJobConfig#getSessionIdleTimeout()}, and clusters are closed together with their last session.
+ * </p>
  * Created by luca on 09/04/14.
  */
 class CassandraClientProvider {
-    private static final transient Map<String, Session> CLIENTS_CACHE = Collections.synchronizedMap(new
-            HashMap<String, Session>());
 
     private static final Logger LOG = LoggerFactory.getLogger(CassandraClientProvider.class);
 
-    static {
-        Runtime.getRuntime().addShutdownHook(new Thread() {
-            @Override
-            public void run() {
-                synchronized (CLIENTS_CACHE) {
-                    if (CLIENTS_CACHE != null && !CLIENTS_CACHE.isEmpty()) {
-                        LOG.info("Closing clients ");
-                        for (Session entry : CLIENTS_CACHE.values()) {
-                            if (entry != null) {
-                                entry.close();
-                            }
-                        }
-                    }
+    /**
+     * The open clusters, guarded by the lock of the session registry, which opens and closes sessions under it.
+     */
+    private static final Map<String, ClusterEntry> CLUSTERS = new HashMap<>();
+
+    private static final ReferenceCountedRegistry<SessionKey, Session> SESSIONS = new ReferenceCountedRegistry<>(
+            "session", new ReferenceCountedRegistry.Handler<SessionKey, Session>() {
+                @Override
+                public Session open(SessionKey key) {
+                    return openSession(key);
                 }
-            }
-        });
-    }
+
+                @Override
+                public void close(SessionKey key, Session session) {
+                    closeSession(key, session);
+                }
+            });
 
     CassandraClientProvider() {
     }
@@ -78,48 +87,152 @@ class CassandraClientProvider {
         }
     }
 
+    /**
+     * Returns a session connected to the configured keyspace through the given location. The session must be handed
+     * back with {@link #release} once it is no longer used.
+     *
+     * @param location the contact point.
+     * @param conf     the Deep configuration object.
+     * @param balanced true to balance the requests among the whole cluster, false to send them to the location only.
+     * @return the session and the location.
+     */
     static Pair<Session, String> getSession(String location, CassandraDeepJobConfig conf, Boolean balanced) {
         assert balanced != null;
 
-        synchronized (CLIENTS_CACHE) {
-            final int port = conf.getCqlPort();
-            final String key = location + ":" + port + ":" + conf.getKeyspace() + ":" + balanced;
+        Session session = SESSIONS.retain(new SessionKey(location, conf, balanced), conf.getSessionIdleTimeout());
+        return Pair.create(session, location);
+    }
+
+    /**
+     * Returns a digest of the given password, so a cluster built with other credentials is not reused without keeping
+     * the password itself in the key.
+     */
+    private static String passwordHash(String password) {
+        return password == null ? "" : Hashing.sha256().hashString(password, Charsets.UTF_8).toString();
+    }
 
-            if (CLIENTS_CACHE.containsKey(key)) {
-                LOG.trace("Found cached session at level 1 for key {{}}", key);
-                return Pair.create(CLIENTS_CACHE.get(key), location);
+    /**
+     * Hands back a session obtained from {@link #getSession}. Sessions not created by this registry are ignored.
+     *
+     * @param session the session no longer used.
+     */
+    static void release(Session session) {
+        SESSIONS.release(session);
+    }
+
+    private static Session openSession(SessionKey key) {
+        ClusterEntry clusterEntry = CLUSTERS.get(key.clusterKey);
+        try {
+            if (clusterEntry == null) {
+                clusterEntry = new ClusterEntry(buildCluster(key.location, key.conf, key.balanced));
+                CLUSTERS.put(key.clusterKey, clusterEntry);
             }
 
-            if (balanced && location.equals(conf.getHost())) {
-                CLIENTS_CACHE.put(key, conf.getSession());
-                LOG.trace("Found cached session at level 2 for key {{}}", key);
-                return Pair.create(CLIENTS_CACHE.get(key), location);
+            Session session = clusterEntry.cluster.connect(quote(key.conf.getKeyspace()));
+            clusterEntry.sessions++;
+            return session;
+        } catch (Exception e) {
+            if (clusterEntry != null && clusterEntry.sessions == 0) {
+                CLUSTERS.remove(key.clusterKey);
+                clusterEntry.cluster.closeAsync();
+            }
+            throw new DeepIOException("Failed to create authenticated client to {" + key.location + "}:{" +
+                    key.conf.getCqlPort() + "}", e);
+        }
+    }
+
+    /**
+     * Closes the given session, and its cluster if it was the last one.
+     */
+    private static void closeSession(SessionKey key, Session session) {
+        session.closeAsync();
+
+        ClusterEntry clusterEntry = CLUSTERS.get(key.clusterKey);
+        if (clusterEntry != null && --clusterEntry.sessions == 0) {
+            CLUSTERS.remove(key.clusterKey);
+            clusterEntry.cluster.closeAsync();
+        }
+    }
+
+    private static Cluster buildCluster(String location, CassandraDeepJobConfig conf, boolean balanced)
+            throws Exception {
+        InetAddress locationInet = InetAddress.getByName(location);
+        LoadBalancingPolicy loadBalancingPolicy = balanced ? Policies.defaultLoadBalancingPolicy() : new
+                LocalMachineLoadBalancingPolicy(locationInet);
+
+        PoolingOptions poolingOptions = new PoolingOptions();
+        int connections = conf.getConnectionsPerHost();
+        if (connections > 0) {
+            // core connections can never exceed max connections, so they are set in the order keeping it true
+            if (connections > poolingOptions.getCoreConnectionsPerHost(HostDistance.LOCAL)) {
+                poolingOptions.setMaxConnectionsPerHost(HostDistance.LOCAL, connections);
+                poolingOptions.setCoreConnectionsPerHost(HostDistance.LOCAL, connections);
+            } else {
+                poolingOptions.setCoreConnectionsPerHost(HostDistance.LOCAL, connections);
+                poolingOptions.setMaxConnectionsPerHost(HostDistance.LOCAL, connections);
             }
+        }
+        if (conf.getMaxRequestsPerConnection() > 0) {
+            poolingOptions.setMaxSimultaneousRequestsPerConnectionThreshold(HostDistance.LOCAL,
+                    conf.getMaxRequestsPerConnection());
+        }
 
-            try {
+        return Cluster.builder()
+                .withPort(conf.getCqlPort())
+                .addContactPoint(location)
+                .withLoadBalancingPolicy(loadBalancingPolicy)
+                .withPoolingOptions(poolingOptions)
+                .withProtocolVersion(ProtocolVersion.V2)
+                .withCredentials(conf.getUsername(), conf.getPassword())
+                .build();
+    }
 
-                LOG.debug("No cached session found for key {{}}", key);
-                InetAddress locationInet = InetAddress.getByName(location);
-                LoadBalancingPolicy loadBalancingPolicy = balanced ? Policies.defaultLoadBalancingPolicy() : new
-                        LocalMachineLoadBalancingPolicy(locationInet);
+    /**
+     * A shared cluster and the number of open sessions using it.
+     */
+    private static final class ClusterEntry {
+        private final Cluster cluster;
+        private int sessions;
 
-                Cluster cluster = Cluster.builder()
-                        .withPort(port)
-                        .addContactPoint(location)
-                        .withLoadBalancingPolicy(loadBalancingPolicy)
-                        .withProtocolVersion(ProtocolVersion.V2)
-                        .withCredentials(conf.getUsername(), conf.getPassword())
-                        .build();
+        private ClusterEntry(Cluster cluster) {
+            this.cluster = cluster;
+        }
+    }
 
-                Session session = cluster.connect(quote(conf.getKeyspace()));
-                CLIENTS_CACHE.put(key, session);
+    /**
+     * The location, routing and configuration a session is opened with. Two keys are equal if their sessions would
+     * connect the same keyspace through clusters built the same way.
+     */
+    private static final class SessionKey {
+        private final String location;
+        private final CassandraDeepJobConfig conf;
+        private final boolean balanced;
+        private final String clusterKey;
+        private final String sessionKey;
+
+        private SessionKey(String location, CassandraDeepJobConfig conf, boolean balanced) {
+            this.location = location;
+            this.conf = conf;
+            this.balanced = balanced;
+            this.clusterKey = location + ":" + conf.getCqlPort() + ":" + balanced + ":" + conf.getUsername() + ":" +
+                    passwordHash(conf.getPassword()) + ":" + conf.getConnectionsPerHost() + ":" +
+                    conf.getMaxRequestsPerConnection();
+            this.sessionKey = clusterKey + ":" + conf.getKeyspace();
+        }
 
-                return Pair.create(CLIENTS_CACHE.get(key), location);
-            } catch (Exception e) {
-                throw new DeepIOException("Failed to create authenticated client to {" + location + "}:{" + port +
-                        "}", e);
-            }
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SessionKey && sessionKey.equals(((SessionKey) o).sessionKey);
         }
 
+        @Override
+        public int hashCode() {
+            return sessionKey.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return sessionKey;
+        }
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
+import com.stratio.deep.cassandra.querybuilder.CassandraUpdateQueryBuilder;
+import com.stratio.deep.cassandra.querybuilder.IncreaseCountersQueryBuilder;
+import com.stratio.deep.commons.entity.Cells;
+import com.stratio.deep.commons.handler.DeepRecordWriter;
+
+/**
+ * Writes the rows of a Spark partition to Cassandra.
+ */
+public abstract class CassandraRecordWriter extends DeepRecordWriter {
+
+    /**
+     * Returns the writer saving rows as configured: rows are bulk loaded through SSTables if
+     * {@link CassandraDeepJobConfig#isBulkLoad()} is set, and written with the statements built by the given query
+     * builder otherwise. Counter increments are aggregated if {@link CassandraDeepJobConfig#getCounterAggregationSize()}
+     * is positive.
+     *
+     * @param config       write configuration
+     * @param queryBuilder query builder, whose catalog and table are set to the configured ones
+     * @return the writer of a Spark partition.
+     * @throws IllegalArgumentException if bulk loading is requested to increase counters, which SSTables cannot do.
+     */
+    public static CassandraRecordWriter newWriter(CassandraDeepJobConfig<?> config,
+                                                  CassandraUpdateQueryBuilder queryBuilder) {
+        boolean counters = queryBuilder instanceof IncreaseCountersQueryBuilder;
+        if (config.isBulkLoad() && counters) {
+            throw new IllegalArgumentException("bulkLoad cannot be used to increase counters");
+        }
+
+        queryBuilder.setCatalogName(config.getCatalog());
+        queryBuilder.setTableName(config.getTable());
+
+        CassandraRecordWriter writer;
+        if (config.isBulkLoad()) {
+            writer = new DeepSSTableRecordWriter(config);
+        } else {
+            writer = new DeepCqlRecordWriter(config, queryBuilder);
+        }
+
+        if (counters && config.getCounterAggregationSize() > 0) {
+            writer = new CounterAggregatingRecordWriter(writer, config.getCounterAggregationSize());
+        }
+
+        return writer;
+    }
+
+    /**
+     * Writes the provided row.
+     *
+     * @param keys   the Cells object containing the row keys.
+     * @param values the Cells object containing all the other row columns.
+     */
+    public abstract void write(Cells keys, Cells values);
+
+    /**
+     * Sends the rows written so far, so rows written afterwards are not batched with them. Writers that do not batch
+     * rows have nothing to do.
+     */
+    public void flush() {
+    }
+
+    /**
+     * Flushes all the written rows and releases the resources held by this writer.
+     */
+    @Override
+    public abstract void close();
+}
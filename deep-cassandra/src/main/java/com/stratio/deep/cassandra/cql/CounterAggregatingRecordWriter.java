@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
+import com.stratio.deep.commons.entity.Cell;
+import com.stratio.deep.commons.entity.Cells;
+
+/**
+ * Sums the counter increments of the rows sharing the same primary key before writing them.
+ * <p>
+ * Jobs counting events usually increment the same few counters many times per partition: writing every increment
+ * as its own {@code UPDATE} sends most of them to the same rows. Increments are instead accumulated in primitive
+ * {@code long} arrays, one per primary key, and only their sums are written. When the number of accumulated keys
+ * reaches {@link CassandraDeepJobConfig#getCounterAggregationSize()}, the partial sums are spilled to the underlying
+ * writer, so memory stays bounded whatever the cardinality of the keys: counter increments are commutative, so
+ * writing a sum in several parts gives the same result.
+ * </p>
+ * <p>
+ * Every written row increments only the counter columns incremented for its key. Rows are written grouped by their
+ * counter columns, and the underlying writer is flushed whenever they change, since its batches execute a single
+ * statement.
+ * </p>
+ */
+public final class CounterAggregatingRecordWriter extends CassandraRecordWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CounterAggregatingRecordWriter.class);
+
+    private final CassandraRecordWriter writer;
+
+    private final int maxKeys;
+
+    /**
+     * Position of every counter column in the accumulated arrays.
+     */
+    private final Map<String, Integer> counterColumns = new HashMap<>();
+
+    /**
+     * Name of every counter column, by position.
+     */
+    private final List<String> counterColumnNames = new ArrayList<>();
+
+    private final Map<List<Object>, Counters> counters = new HashMap<>();
+
+    /**
+     * Name space of the written values.
+     */
+    private String nameSpace;
+
+    /**
+     * Counter columns of the last row written to the underlying writer.
+     */
+    private BitSet lastColumns;
+
+    /**
+     * Counter aggregating writer constructor.
+     *
+     * @param writer  the writer the summed increments are written to.
+     * @param maxKeys the number of primary keys accumulated before spilling their sums to the writer.
+     */
+    public CounterAggregatingRecordWriter(CassandraRecordWriter writer, int maxKeys) {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("maxKeys must be greater than zero");
+        }
+        this.writer = writer;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Adds the counter increments of the provided row to the sums of its primary key.
+     *
+     * @param keys   the Cells object containing the row keys.
+     * @param values the Cells object containing the counter increments.
+     */
+    @Override
+    public void write(Cells keys, Cells values) {
+        if (nameSpace == null) {
+            nameSpace = values.getnameSpace();
+        }
+
+        List<Object> key = new ArrayList<>(keys.getCellValues());
+        Counters keyCounters = counters.get(key);
+        if (keyCounters == null) {
+            keyCounters = new Counters(keys);
+            counters.put(key, keyCounters);
+        }
+
+        for (Cell cell : values.getCells()) {
+            keyCounters.add(position(cell.getCellName()), increment(cell));
+        }
+
+        if (counters.size() >= maxKeys) {
+            spill();
+        }
+    }
+
+    /**
+     * Returns the position of the given counter column, registering it if it had not been seen yet.
+     */
+    private int position(String column) {
+        Integer position = counterColumns.get(column);
+        if (position == null) {
+            position = counterColumns.size();
+            counterColumns.put(column, position);
+            counterColumnNames.add(column);
+        }
+        return position;
+    }
+
+    private static long increment(Cell cell) {
+        Object value = cell.getCellValue();
+        if (value == null) {
+            return 0;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("Increment of counter " + cell.getCellName() + " is not a number: " +
+                    value);
+        }
+        return ((Number) value).longValue();
+    }
+
+    /**
+     * Writes the accumulated sums grouped by counter columns, and forgets them.
+     */
+    private void spill() {
+        LOG.debug("Writing the counters of {} keys", counters.size());
+
+        Map<BitSet, List<Counters>> groups = new LinkedHashMap<>();
+        if (lastColumns != null) {
+            // the rows sharing the columns of the last written ones go first, saving a flush
+            groups.put(lastColumns, new ArrayList<Counters>());
+        }
+        for (Counters keyCounters : counters.values()) {
+            List<Counters> group = groups.get(keyCounters.columns);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(keyCounters.columns, group);
+            }
+            group.add(keyCounters);
+        }
+        counters.clear();
+
+        for (Map.Entry<BitSet, List<Counters>> group : groups.entrySet()) {
+            BitSet columns = group.getKey();
+            if (group.getValue().isEmpty()) {
+                continue;
+            }
+            if (lastColumns != null && !lastColumns.equals(columns)) {
+                writer.flush();
+            }
+            lastColumns = columns;
+
+            for (Counters keyCounters : group.getValue()) {
+                Cells values = new Cells(nameSpace);
+                for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+                    values.add(Cell.create(counterColumnNames.get(i), keyCounters.get(i)));
+                }
+                writer.write(keyCounters.keys, values);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        spill();
+        writer.flush();
+        lastColumns = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        try {
+            spill();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * The keys of a row, the sums of its counter increments indexed by counter column position, and the positions
+     * of the incremented counter columns.
+     */
+    private static final class Counters {
+        private final Cells keys;
+        private final BitSet columns = new BitSet();
+        private long[] sums = new long[4];
+
+        private Counters(Cells keys) {
+            this.keys = keys;
+        }
+
+        private void add(int position, long increment) {
+            if (position >= sums.length) {
+                sums = Arrays.copyOf(sums, Math.max(position + 1, sums.length * 2));
+            }
+            sums[position] += increment;
+            columns.set(position);
+        }
+
+        private long get(int position) {
+            return position < sums.length ? sums[position] : 0;
+        }
+    }
+}
@@ -16,50 +16,108 @@
 
 package com.stratio.deep.cassandra.cql;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
+import static com.stratio.deep.commons.utils.Utils.quote;
+
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.cassandra.db.marshal.CompositeType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
-import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.UnavailableException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
 import com.stratio.deep.cassandra.config.ICassandraDeepJobConfig;
 import com.stratio.deep.cassandra.querybuilder.CassandraUpdateQueryBuilder;
+import com.stratio.deep.cassandra.querybuilder.IncreaseCountersQueryBuilder;
+import com.stratio.deep.commons.entity.Cell;
 import com.stratio.deep.commons.entity.Cells;
-import com.stratio.deep.commons.exception.DeepInstantiationException;
-import com.stratio.deep.commons.handler.DeepRecordWriter;
-import com.stratio.deep.commons.utils.Utils;
+import com.stratio.deep.commons.exception.DeepIOException;
 
 /**
  * Handles the distributed write to cassandra in batch.
+ * <p>
+ * Rows are grouped by the replicas owning their partition key, so every batch only contains rows stored on the same
+ * nodes and, thanks to the token aware routing of the session, is sent straight to one of them.
+ * </p>
+ * <p>
+ * Batches are written asynchronously, with at most {@link CassandraDeepJobConfig#getWriteConcurrency()} of them in
+ * flight: writing blocks until one of them completes. Batches failed because of a timeout or an unavailable replica
+ * are retried with exponential backoff. Counter updates are not idempotent, so counter batches are only retried when
+ * they were not applied at all: a timed out counter batch may have been applied. Any other failure, or running out of
+ * retries, makes the writer fail, at the latest when it is closed, so the Spark task fails too.
+ * </p>
  */
-public final class DeepCqlRecordWriter extends DeepRecordWriter {
+public final class DeepCqlRecordWriter extends CassandraRecordWriter {
 
     private static final Logger LOG = LoggerFactory.getLogger(DeepCqlRecordWriter.class);
-    private final static int MAX_PARALLEL_QUERIES = 4;
-    private final static int WORK_QUEUE_SIZE = 8;
 
-    private final ListeningExecutorService taskExecutorService;
-    private final ConcurrentHashMap<String, ListenableFuture<?>> pendingTasks;
-    private WriteTask currentTask;
-    private boolean hasCurrentTask = false;
+    /**
+     * Batch key used for all rows when their replicas cannot be resolved.
+     */
+    private static final Object SINGLE_BATCH_KEY = new Object();
+
+    private final Map<Object, WriteTask> currentTasks = new HashMap<>();
+
+    /**
+     * Permits for the batches in flight.
+     */
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    /**
+     * Schedules the retries of failed batches.
+     */
+    private final ScheduledExecutorService retryExecutor;
+
+    /**
+     * The first unrecoverable write failure.
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
 
     private final ICassandraDeepJobConfig writeConfig;
     private final CassandraUpdateQueryBuilder queryBuilder;
 
+    /**
+     * True if the rows are counter increments, which must not be written twice.
+     */
+    private final boolean counters;
+
     private Session sessionWithHost;
 
+    /**
+     * Cluster metadata used to find the replicas of every row. Null if rows cannot be grouped by replica.
+     */
+    private Metadata clusterMetadata;
+
+    /**
+     * Partition key columns of the output table. Null if rows cannot be grouped by replica.
+     */
+    private List<ColumnMetadata> partitionKeyColumns;
+
     /**
      * Cassandra record writer constructor.
      *
@@ -67,19 +125,71 @@ public final class DeepCqlRecordWriter extends DeepRecordWriter {
      * @param queryBuilder query builder
      */
     public DeepCqlRecordWriter(ICassandraDeepJobConfig writeConfig, CassandraUpdateQueryBuilder queryBuilder) {
-        this.taskExecutorService = MoreExecutors.listeningDecorator(Utils.newBlockingFixedThreadPoolExecutor
-                (MAX_PARALLEL_QUERIES, WORK_QUEUE_SIZE));
-        this.pendingTasks = new ConcurrentHashMap<>();
         this.writeConfig = writeConfig;
         this.queryBuilder = queryBuilder;
+        this.counters = queryBuilder instanceof IncreaseCountersQueryBuilder;
+
+        CassandraDeepJobConfig config = (CassandraDeepJobConfig) writeConfig;
+        this.maxInFlight = config.getWriteConcurrency();
+        this.inFlight = new Semaphore(maxInFlight);
+        this.retryExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("deep-write-retry-%d").setDaemon(true).build());
+
+        // a balanced session routes every statement to a replica of its partition key
+        sessionWithHost = CassandraClientProvider.trySessionForLocation(config.getHost(), config, true).left;
+        sessionWithHost.init();
+
+        initReplicaGrouping();
+    }
+
+    /**
+     * Resolves what is needed to find the replicas of every written row. If anything is missing, all rows are
+     * batched together.
+     */
+    private void initReplicaGrouping() {
         try {
-            InetAddress localhost = InetAddress.getLocalHost();
-            sessionWithHost = CassandraClientProvider.trySessionForLocation(localhost.getHostAddress(),
-                    (CassandraDeepJobConfig) writeConfig, false).left;
-            sessionWithHost.init();
-        } catch (UnknownHostException e) {
-            throw new DeepInstantiationException("Cannot resolve local hostname", e);
+            TableMetadata tableMetadata = ((CassandraDeepJobConfig) writeConfig).fetchTableMetadata();
+
+            if (tableMetadata != null && sessionWithHost.getCluster() != null) {
+                clusterMetadata = sessionWithHost.getCluster().getMetadata();
+                partitionKeyColumns = tableMetadata.getPartitionKey();
+            }
+        } catch (Exception e) {
+            LOG.warn("[" + this + "] Cannot resolve the output table partition key, rows will not be grouped by " +
+                    "replica: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the key of the batch the given row belongs to: the replicas owning its partition key if known, or its
+     * serialized partition key otherwise.
+     *
+     * @param keys the Cells object containing the row keys.
+     * @return the batch key of the row.
+     */
+    private Object batchKey(Cells keys) {
+        if (clusterMetadata == null || partitionKeyColumns == null) {
+            return SINGLE_BATCH_KEY;
         }
+
+        ByteBuffer[] components = new ByteBuffer[partitionKeyColumns.size()];
+        for (int i = 0; i < components.length; i++) {
+            ColumnMetadata column = partitionKeyColumns.get(i);
+            Cell cell = keys.getCellByName(column.getName());
+
+            if (cell == null || cell.getCellValue() == null) {
+                return SINGLE_BATCH_KEY;
+            }
+
+            components[i] = column.getType().serialize(cell.getCellValue(),
+                    CassandraDeepJobConfig.PROTOCOL_VERSION);
+        }
+
+        ByteBuffer partitionKey = components.length == 1 ? components[0] : CompositeType.build(components);
+
+        Set<Host> replicas = clusterMetadata.getReplicas(quote(writeConfig.getKeyspace()), partitionKey);
+
+        return replicas.isEmpty() ? partitionKey : replicas;
     }
 
     /**
@@ -89,88 +199,125 @@ public final class DeepCqlRecordWriter extends DeepRecordWriter {
     public void close() {
         LOG.debug("Closing all writer tasks");
 
-        if (hasCurrentTask) {
-            executeTaskAsync();
+        try {
+            flush();
+        } finally {
+            waitForCompletion();
+            retryExecutor.shutdownNow();
+            CassandraClientProvider.release(sessionWithHost);
         }
 
-        waitForCompletion();
-        taskExecutorService.shutdown();
+        checkFailure();
     }
 
     /**
-     * Adds the provided row to a batch. If the batch size reaches the threshold configured in
-     * IDeepJobConfig.getBatchSize the batch will be sent to the data store.
+     * Sends the batches of all the replicas, whatever their size. Every batch executes a single statement, so rows
+     * written with other columns than the previous ones must be preceded by a flush.
+     */
+    @Override
+    public void flush() {
+        try {
+            for (WriteTask task : currentTasks.values()) {
+                executeTaskAsync(task);
+            }
+        } finally {
+            currentTasks.clear();
+        }
+    }
+
+    /**
+     * Adds the provided row to the batch of the replicas owning it. If the batch size reaches the threshold
+     * configured in IDeepJobConfig.getBatchSize the batch will be sent to the data store.
      *
      * @param keys   the Cells object containing the row keys.
      * @param values the Cells object containing all the other row columns.
      */
+    @Override
     public void write(Cells keys, Cells values) {
+        checkFailure();
+
+        Object batchKey = batchKey(keys);
 
-        if (!hasCurrentTask) {
+        WriteTask task = currentTasks.get(batchKey);
+        if (task == null) {
             String localCql = queryBuilder.prepareQuery(keys, values);
-            currentTask = new WriteTask(localCql);
-            hasCurrentTask = true;
+            task = new WriteTask(localCql);
+            currentTasks.put(batchKey, task);
         }
 
         // add primary key columns to the bind variables
         List<Object> allValues = new ArrayList<>(values.getCellValues());
         allValues.addAll(keys.getCellValues());
-        currentTask.add(allValues);
+        task.add(allValues);
 
-        if (isBatchSizeReached()) {
-            executeTaskAsync();
+        if (isBatchSizeReached(task)) {
+            currentTasks.remove(batchKey);
+            executeTaskAsync(task);
         }
     }
 
     /**
      * Validates if batch size threshold has been reached.
      */
-    private boolean isBatchSizeReached() {
-        return currentTask.size() >= writeConfig.getBatchSize();
+    private boolean isBatchSizeReached(WriteTask task) {
+        return task.size() >= writeConfig.getBatchSize();
     }
 
     /**
-     * Submits the task for future execution. Task is added to pending tasks
-     * and removed when the execution is done.
+     * Sends the task to cassandra, waiting first for a free slot if the maximum number of batches is in flight.
+     *
+     * @param task the task to execute.
      */
-    private void executeTaskAsync() {
-        final String taskId = currentTask.getId();
-
-        ListenableFuture<?> future = taskExecutorService.submit(currentTask);
-        pendingTasks.put(taskId, future);
+    private void executeTaskAsync(WriteTask task) {
+        checkFailure();
 
-        future.addListener(new Runnable() {
-            @Override
-            public void run() {
-                pendingTasks.remove(taskId);
-            }
-        }, MoreExecutors.sameThreadExecutor());
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeepIOException(e);
+        }
 
-        hasCurrentTask = false;
+        task.execute();
     }
 
     /**
-     * Waits until all pending tasks completed.
+     * Waits until all batches in flight completed.
      */
     private void waitForCompletion() {
-        for (ListenableFuture<?> future : pendingTasks.values()) {
-            try {
-                future.get();
-            } catch (InterruptedException | ExecutionException e) {
-                LOG.error("[" + this + "] Error waiting for writes to complete: " + e.getMessage());
-            }
+        inFlight.acquireUninterruptibly(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    /**
+     * Throws the first unrecoverable write failure, if any.
+     */
+    private void checkFailure() {
+        Throwable t = failure.get();
+        if (t != null) {
+            throw new DeepIOException("[" + this + "] Batch write to cassandra failed", t);
         }
     }
 
     /**
-     * A task that executes async writes to cassandra.
+     * Returns true for failures caused by an overloaded or unavailable cluster, which may succeed if retried later.
+     * Timed out counter batches are not retried, since they may have been applied.
      */
-    class WriteTask implements Runnable {
-        private final UUID id = UUID.randomUUID();
+    private boolean isRetryable(Throwable t) {
+        return (t instanceof WriteTimeoutException && !counters) || t instanceof UnavailableException
+                || t instanceof NoHostAvailableException;
+    }
 
+    /**
+     * A batch of rows sharing the same cql statement, written asynchronously to cassandra.
+     */
+    class WriteTask implements FutureCallback<ResultSet> {
         private final String cql;
         private final List<List<Object>> records = new ArrayList<>();
 
+        private BatchStatement batchStatement;
+        private int retries;
+
         public WriteTask(String cql) {
             this.cql = cql;
         }
@@ -183,27 +330,68 @@ public final class DeepCqlRecordWriter extends DeepRecordWriter {
             return this.records.size();
         }
 
-        public String getId() {
-            return id.toString();
-        }
-
         /**
-         * Executes cql batch statements in Cassandra
+         * Executes the cql batch statement in Cassandra. Completion is notified to this task, which releases the
+         * in-flight slot taken for it.
          */
-        @Override
-        public void run() {
+        void execute() {
             LOG.debug("[" + this + "] Executing batch write to cassandra");
+            ResultSetFuture future;
             try {
-                final PreparedStatement preparedStatement = sessionWithHost.prepare(cql);
-                final BatchStatement batchStatement = new BatchStatement(BatchStatement.Type.UNLOGGED);
-                for (final List<Object> record : records) {
-                    batchStatement.add(preparedStatement.bind(record.toArray(new Object[record.size()])));
+                if (batchStatement == null) {
+                    batchStatement = batchStatement();
                 }
-                sessionWithHost.execute(batchStatement);
+                future = sessionWithHost.executeAsync(batchStatement);
             } catch (Exception e) {
-                LOG.error("[" + this + "] Exception occurred while trying to execute batch in cassandra: " +
-                        e.getMessage());
+                onFailure(e);
+                return;
+            }
+
+            Futures.addCallback(future, this);
+        }
+
+        private BatchStatement batchStatement() {
+            final PreparedStatement preparedStatement = PreparedStatementCache.prepare(sessionWithHost, cql);
+            final BatchStatement batch = new BatchStatement(
+                    counters ? BatchStatement.Type.COUNTER : BatchStatement.Type.UNLOGGED);
+            for (final List<Object> record : records) {
+                batch.add(preparedStatement.bind(record.toArray(new Object[record.size()])));
             }
+            return batch;
+        }
+
+        @Override
+        public void onSuccess(ResultSet result) {
+            inFlight.release();
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            CassandraDeepJobConfig config = (CassandraDeepJobConfig) writeConfig;
+
+            if (isRetryable(t) && retries < config.getWriteRetries()) {
+                long backoff = config.getWriteRetryBackoff() << retries;
+                retries++;
+                LOG.warn("[" + this + "] Batch write to cassandra failed, retry " + retries + " in " + backoff +
+                        " ms: " + t.getMessage());
+
+                try {
+                    retryExecutor.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            execute();
+                        }
+                    }, backoff, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (Exception e) {
+                    LOG.error("[" + this + "] Cannot schedule the retry of the batch: " + e.getMessage());
+                }
+            }
+
+            LOG.error("[" + this + "] Exception occurred while trying to execute batch in cassandra: " +
+                    t.getMessage());
+            failure.compareAndSet(null, t);
+            inFlight.release();
         }
     }
 }
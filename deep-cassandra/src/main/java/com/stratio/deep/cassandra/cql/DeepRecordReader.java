@@ -17,7 +17,6 @@
 package com.stratio.deep.cassandra.cql;
 
 import static com.stratio.deep.cassandra.cql.CassandraClientProvider.trySessionForLocation;
-import static com.stratio.deep.cassandra.util.CassandraUtils.isFilterdByKey;
 import static com.stratio.deep.cassandra.util.CassandraUtils.isTokenIncludedInRange;
 
 import java.io.Serializable;
@@ -32,6 +31,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.CompositeType;
@@ -42,8 +47,10 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.ColumnDefinitions;
 import com.datastax.driver.core.ColumnMetadata;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SimpleStatement;
@@ -53,10 +60,10 @@ import com.datastax.driver.core.exceptions.NoHostAvailableException;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
 import com.stratio.deep.cassandra.entity.CellValidator;
 import com.stratio.deep.cassandra.filter.value.EqualsInValue;
-import com.stratio.deep.cassandra.util.CassandraUtils;
 import com.stratio.deep.commons.config.DeepJobConfig;
 import com.stratio.deep.commons.exception.DeepGenericException;
 import com.stratio.deep.commons.exception.DeepIOException;
@@ -82,6 +89,11 @@ public class DeepRecordReader implements IDeepRecordReader {
      */
     private static final Logger LOG = LoggerFactory.getLogger(DeepRecordReader.class);
 
+    /**
+     * Milliseconds to wait on close for the sub-range workers to stop using the session.
+     */
+    private static final long WORKERS_SHUTDOWN_TIMEOUT = 30000;
+
     /**
      * The Split.
      */
@@ -89,7 +101,7 @@ public class DeepRecordReader implements IDeepRecordReader {
     /**
      * The Row iterator.
      */
-    private RowIterator rowIterator;
+    private AbstractIterator<ByteBuffer[]> rowIterator;
 
     /**
      * The Cf name.
@@ -120,6 +132,16 @@ public class DeepRecordReader implements IDeepRecordReader {
     // the number of cql rows per page
     private final int pageSize;
 
+    /**
+     * Number of pages worth of buffered rows below which the next page is fetched in the background.
+     */
+    private final int prefetchDepth;
+
+    /**
+     * Number of sub-ranges of the split read concurrently.
+     */
+    private final int subRangeConcurrency;
+
     /**
      * The Partitioner.
      */
@@ -140,8 +162,26 @@ public class DeepRecordReader implements IDeepRecordReader {
      */
     private Session session;
 
+    /**
+     * The table metadata, fetched once per reader.
+     */
+    private TableMetadata tableMetadata;
+
+    /**
+     * Names of the partition and clustering key columns returned for every row, in order.
+     */
+    private String[] keyColumnNames;
+
+    /**
+     * Names of the non key columns returned for every row, in order.
+     */
+    private String[] valueColumnNames;
+
+    /**
+     * How the filters of the job are evaluated.
+     */
+    private QueryPlan queryPlan;
 
-    private boolean filterByKey = false;
     /**
      * public constructor. Takes a list of filters to pass to the underlying data stores.
      *
@@ -152,6 +192,8 @@ public class DeepRecordReader implements IDeepRecordReader {
         this.config = (CassandraDeepJobConfig<?>) config;
         this.split = split;
         this.pageSize = ((CassandraDeepJobConfig<?>) config).getPageSize();
+        this.prefetchDepth = ((CassandraDeepJobConfig<?>) config).getPrefetchDepth();
+        this.subRangeConcurrency = ((CassandraDeepJobConfig<?>) config).getSubRangeConcurrency();
         initialize();
     }
 
@@ -173,12 +215,76 @@ public class DeepRecordReader implements IDeepRecordReader {
         try {
             session = createConnection();
 
+            tableMetadata = config.fetchTableMetadata();
             retrieveKeys();
         } catch (Exception e) {
             throw new DeepIOException(e);
         }
 
-        rowIterator = new RowIterator();
+        queryPlan = new QueryPlan(tableMetadata, config.getFilters(), config.getAdditionalFilters());
+        if (columns != null) {
+            // residual filters are evaluated on columns which may not be part of the projection
+            for (String column : queryPlan.getResidualColumns()) {
+                if (!ArrayUtils.contains(config.getInputColumns(), column)) {
+                    columns += "," + column;
+                }
+            }
+        }
+
+        initProjection();
+
+        rowIterator = readsSubRanges() ? newSubRangeIterator() : new RowIterator();
+    }
+
+    /**
+     * Divides the split in sub-ranges, read with the configured concurrency.
+     *
+     * @return the iterator over the rows of all the sub-ranges.
+     */
+    private SubRangeIterator newSubRangeIterator() {
+        int pieces = Integer.highestOneBit(subRangeConcurrency * 4 - 1) << 1;
+        List<DeepTokenRange> ranges = RangeUtils.bisect(split, partitioner, pieces);
+        return new SubRangeIterator(ranges, subRangeConcurrency, Math.max(pageSize, 1) * subRangeConcurrency) {
+            @Override
+            protected Iterator<ByteBuffer[]> read(DeepTokenRange range) {
+                return new RowIterator(range);
+            }
+        };
+    }
+
+    /**
+     * Sub-ranges are only read concurrently for token range queries, since EQUALS_IN queries and queries filtered by
+     * partition key do not restrict the token range.
+     *
+     * @return true if the split has to be read in concurrent sub-ranges.
+     */
+    private boolean readsSubRanges() {
+        return subRangeConcurrency > 1 && config.getEqualsInValue() == null && !queryPlan.isFilteredByKey();
+    }
+
+    /**
+     * Resolves the key and value columns returned for every row, so rows can be decoded by position.
+     */
+    private void initProjection() {
+        List<String> keyNames = new ArrayList<>();
+        for (BoundColumn column : Iterables.concat(partitionBoundColumns, clusterColumns)) {
+            keyNames.add(column.name);
+        }
+
+        Set<String> wantedColumns = ArrayUtils.isEmpty(config.getInputColumns()) ? null :
+                new HashSet<>(Arrays.asList(config.getInputColumns()));
+
+        List<String> valueNames = new ArrayList<>();
+        for (ColumnMetadata column : tableMetadata.getColumns()) {
+            String columnName = column.getName();
+            if (keyNames.contains(columnName) || (wantedColumns != null && !wantedColumns.contains(columnName))) {
+                continue;
+            }
+            valueNames.add(columnName);
+        }
+
+        keyColumnNames = keyNames.toArray(new String[keyNames.size()]);
+        valueColumnNames = valueNames.toArray(new String[valueNames.size()]);
     }
 
     /**
@@ -213,7 +319,17 @@ public class DeepRecordReader implements IDeepRecordReader {
      */
     @Override
     public void close() {
-        /* dummy close method, no need to close any resource here */
+        if (rowIterator instanceof SubRangeIterator) {
+            SubRangeIterator iterator = (SubRangeIterator) rowIterator;
+            iterator.shutdown();
+            // the session may be closed as soon as it is released, so the workers must be done with it
+            if (!iterator.awaitTermination(WORKERS_SHUTDOWN_TIMEOUT)) {
+                LOG.warn("Sub-range workers still running after {} ms, releasing their session",
+                        WORKERS_SHUTDOWN_TIMEOUT);
+            }
+        }
+        CassandraClientProvider.release(session);
+        session = null;
     }
 
     /**
@@ -228,11 +344,19 @@ public class DeepRecordReader implements IDeepRecordReader {
     /**
      * CQL row iterator
      */
-    class RowIterator extends AbstractIterator<Pair<Map<String, ByteBuffer>, Map<String, ByteBuffer>>> {
+    class RowIterator extends AbstractIterator<ByteBuffer[]> {
+        /**
+         * The result set being read.
+         */
+        private ResultSet resultSet;
         /**
          * The Rows.
          */
         private Iterator<Row> rows;
+        /**
+         * The column definitions of the result set.
+         */
+        private ColumnDefinitions columnDefinitions;
         /**
          * The Partition key string.
          */
@@ -242,74 +366,104 @@ public class DeepRecordReader implements IDeepRecordReader {
          */
         private String partitionKeyMarkers; // question marks in ? , ? , ? format which matches the number of keys
 
+        /**
+         * Positions in the result set of the key columns, matching keyColumnNames.
+         */
+        private int[] keyPositions;
+
+        /**
+         * Positions in the result set of the value columns, matching valueColumnNames.
+         */
+        private int[] valuePositions;
+
+        /**
+         * Positions in the result set of the columns of the residual filters.
+         */
+        private int[] residualPositions;
+
+        /**
+         * The token range being read.
+         */
+        private final DeepTokenRange range;
+
         /**
          * Default constructor.
          */
         public RowIterator() {
+            this(split);
+        }
+
+        /**
+         * Reads only the given token range of the split.
+         *
+         * @param range the token range to read.
+         */
+        public RowIterator(DeepTokenRange range) {
+            this.range = range;
             // initial page
             executeQuery();
         }
 
         /**
-         * Is column wanted.
+         * Binds the projection to the column positions of the result set.
          *
-         * @param columnName the column name
-         * @return the boolean
+         * @param columnDefinitions the result set column definitions
          */
-        private boolean isColumnWanted(String columnName) {
-            return ArrayUtils.isEmpty(config.getInputColumns()) ||
-                    ArrayUtils.contains(config.getInputColumns(), columnName);
+        private void bindPositions(ColumnDefinitions columnDefinitions) {
+            keyPositions = new int[keyColumnNames.length];
+            for (int i = 0; i < keyColumnNames.length; i++) {
+                keyPositions[i] = columnDefinitions.getIndexOf(keyColumnNames[i]);
+            }
+
+            valuePositions = new int[valueColumnNames.length];
+            for (int i = 0; i < valueColumnNames.length; i++) {
+                valuePositions[i] = columnDefinitions.getIndexOf(valueColumnNames[i]);
+            }
+
+            residualPositions = queryPlan.bind(columnDefinitions);
         }
 
         /**
-         * {@inheritDoc}
+         * Returns the raw values of the next row: the key columns first, followed by the value columns, in the order
+         * of {@link DeepRecordReader#getColumnNames()}.
          */
         @Override
-        protected Pair<Map<String, ByteBuffer>, Map<String, ByteBuffer>> computeNext() {
-            if (rows == null || !rows.hasNext()) {
-                return endOfData();
-            }
+        protected ByteBuffer[] computeNext() {
+            Row row;
+            do {
+                if (rows == null || !rows.hasNext()) {
+                    return endOfData();
+                }
 
-            Map<String, ByteBuffer> valueColumns = createEmptyMap();
-            Map<String, ByteBuffer> keyColumns = createEmptyMap();
+                prefetch();
 
-            initColumns(valueColumns, keyColumns);
+                row = rows.next();
 
-            return Pair.create(keyColumns, valueColumns);
+                if (keyPositions == null) {
+                    bindPositions(columnDefinitions);
+                }
+            } while (residualPositions.length > 0 && !queryPlan.accepts(row, residualPositions));
+
+            ByteBuffer[] values = new ByteBuffer[keyPositions.length + valuePositions.length];
+            for (int i = 0; i < keyPositions.length; i++) {
+                values[i] = row.getBytesUnsafe(keyPositions[i]);
+            }
+            for (int i = 0; i < valuePositions.length; i++) {
+                values[keyPositions.length + i] = row.getBytesUnsafe(valuePositions[i]);
+            }
+
+            return values;
         }
 
         /**
-         * Init columns.
-         *
-         * @param valueColumns the value columns
-         * @param keyColumns   the key columns
-         */
-        private void initColumns(Map<String, ByteBuffer> valueColumns, Map<String, ByteBuffer> keyColumns) {
-            Row row = rows.next();
-            TableMetadata tableMetadata = config.fetchTableMetadata();
-
-            List<ColumnMetadata> partitionKeys = tableMetadata.getPartitionKey();
-            List<ColumnMetadata> clusteringKeys = tableMetadata.getClusteringColumns();
-            List<ColumnMetadata> allColumns = tableMetadata.getColumns();
-
-            for (ColumnMetadata key : partitionKeys) {
-                String columnName = key.getName();
-                ByteBuffer bb = row.getBytesUnsafe(columnName);
-                keyColumns.put(columnName, bb);
-            }
-            for (ColumnMetadata key : clusteringKeys) {
-                String columnName = key.getName();
-                ByteBuffer bb = row.getBytesUnsafe(columnName);
-                keyColumns.put(columnName, bb);
-            }
-            for (ColumnMetadata key : allColumns) {
-                String columnName = key.getName();
-                if (keyColumns.containsKey(columnName) || !isColumnWanted(columnName)) {
-                    continue;
-                }
-
-                ByteBuffer bb = row.getBytesUnsafe(columnName);
-                valueColumns.put(columnName, bb);
+         * Asks the driver for the next page as soon as no more than {@code prefetchDepth * pageSize} rows are left
+         * buffered, so it is already in flight when they get exhausted. The driver only fetches one page at a time,
+         * calling it again while a fetch is in flight does not fetch any further page.
+         */
+        private void prefetch() {
+            if (prefetchDepth > 0 && resultSet != null && !resultSet.isFullyFetched()
+                    && resultSet.getAvailableWithoutFetching() <= prefetchDepth * pageSize) {
+                resultSet.fetchMoreResults();
             }
         }
 
@@ -341,8 +495,9 @@ public class DeepRecordReader implements IDeepRecordReader {
             // Checking whether the job is a EQUALS_IN special query or not
             if (equalsInValue == null) {
                 String whereClause = whereClause();
-                generatedQuery = String.format("SELECT %s FROM %s%s ALLOW FILTERING",
-                        generatedColumns, Utils.quote(cfName), whereClause);
+                generatedQuery = String.format("SELECT %s FROM %s%s%s",
+                        generatedColumns, Utils.quote(cfName), whereClause,
+                        queryPlan.isAllowFiltering() ? " ALLOW FILTERING" : "");
             } else {
                 // partitioner.getToken(getPartitionKey(equalsInValue));
                 String equalsInClause = equalsInWhereClause(equalsInValue);
@@ -370,13 +525,20 @@ public class DeepRecordReader implements IDeepRecordReader {
 
                 values = bindValues.toArray(new Object[bindValues.size()]);
                 LOG.debug("query: " + query + "; values: " + Arrays.toString(values));
+
+                // the token range query only differs in its bind values between splits
+                Statement stmt = PreparedStatementCache.prepare(session, query).bind(values);
+                stmt.setFetchSize(pageSize);
+
+                return stmt;
             } else {
                 values = new Object[equalsInValue.getEqualsList().size() + 1];
                 for (int i = 0; i < equalsInValue.getEqualsList().size(); i++) {
                     values[i] = equalsInValue.getEqualsList().get(i).right;
                 }
 
-                values[values.length - 1] = filterSplits(equalsInValue);
+                values[values.length - 1] = split instanceof EqualsInTokenRange ?
+                        ((EqualsInTokenRange) split).getInValues() : filterSplits(equalsInValue);
                 if (values[values.length - 1] == null) {
                     return null;
                 }
@@ -416,26 +578,6 @@ public class DeepRecordReader implements IDeepRecordReader {
             return filteredInValues;
         }
 
-        /**
-         * Retrieve the column name for the lucene indexes. Null if there is no lucene index.
-         *
-         * @return Lucene index; null, if doesn't exist.
-         */
-        private String getLuceneIndex() {
-            String indexName = "";
-
-            TableMetadata tableMetadata = config.fetchTableMetadata();
-            List<ColumnMetadata> columns = tableMetadata.getColumns();
-            for (ColumnMetadata column : columns) {
-                if (column.getIndex() != null) {
-                    if (column.getIndex().isCustomIndex()) {
-                        indexName = column.getName();
-                    }
-                }
-            }
-            return indexName;
-        }
-
         /**
          * remove key columns from the column string
          *
@@ -478,15 +620,12 @@ public class DeepRecordReader implements IDeepRecordReader {
             // initial
             // query token(k) >= start_token and token(k) <= end_token
 
-            filterByKey = isFilterdByKey(config.getFilters(), partitionKeyString);
-
-            String filterGenerator = CassandraUtils.additionalFilterGenerator(config.getAdditionalFilters(),
-                    config.getFilters(), getLuceneIndex());
+            String filterGenerator = queryPlan.whereRestrictions(config.getAdditionalFilters());
 
             StringBuffer sb = new StringBuffer();
 
             sb.append(" WHERE ");
-            if(filterByKey){
+            if(queryPlan.isFilteredByKey()){
                 filterGenerator = filterGenerator.substring(4);
             }else{
                 sb.append(String.format(" token(%s) > ? AND token(%s) <= ?", partitionKeyString,
@@ -552,9 +691,9 @@ public class DeepRecordReader implements IDeepRecordReader {
         private List<Object> preparedQueryBindValues() {
             List<Object> values = new LinkedList<>();
 
-            if(!filterByKey){
-                Object startToken = split.getStartToken();
-                Object endToken = split.getEndToken();
+            if(!queryPlan.isFilteredByKey()){
+                Object startToken = range.getStartToken();
+                Object endToken = range.getEndToken();
 
                 values.add(startToken);
                 values.add(endToken);
@@ -588,9 +727,11 @@ public class DeepRecordReader implements IDeepRecordReader {
                 // only try three times for TimedOutException and UnavailableException
                 while (retries < 3) {
                     try {
-                        ResultSet resultSet = session.execute(stmt);
+                        ResultSetFuture future = session.executeAsync(stmt);
+                        resultSet = future == null ? null : future.getUninterruptibly();
 
                         if (resultSet != null) {
+                            columnDefinitions = resultSet.getColumnDefinitions();
                             rows = resultSet.iterator();
                         }
                         return;
@@ -618,13 +759,185 @@ public class DeepRecordReader implements IDeepRecordReader {
         }
     }
 
+    /**
+     * Reads the split as a set of smaller token ranges. A fixed number of workers take the pending sub-ranges one at a
+     * time, so a worker stuck in a slow sub-range does not keep the others from reading the rest of the split. Rows are
+     * handed over through a bounded queue, so the workers never get more than a few pages ahead of the consumer.
+     */
+    abstract static class SubRangeIterator extends AbstractIterator<ByteBuffer[]> {
+        /**
+         * Marks the end of the rows of a worker.
+         */
+        private final Object endMarker = new Object();
+
+        /**
+         * Sub-ranges not yet taken by any worker.
+         */
+        private final ConcurrentLinkedQueue<DeepTokenRange> pending;
+
+        /**
+         * Rows read by the workers, followed by an end marker per worker.
+         */
+        private final BlockingQueue<Object> rows;
+
+        /**
+         * The workers.
+         */
+        private final ExecutorService executor;
+
+        /**
+         * The error which stopped a worker. The consumer checks it after every row it takes, so a worker stopped by
+         * an error may fail to post its end marker when the queue is full.
+         */
+        private volatile Throwable failure;
+
+        /**
+         * Number of workers still reading.
+         */
+        private int runningWorkers;
+
+        /**
+         * Whether the workers have been started.
+         */
+        private boolean started;
+
+        /**
+         * Creates the iterator, whose workers start reading when the first row is asked for.
+         *
+         * @param ranges      the sub-ranges to read.
+         * @param concurrency the maximum number of sub-ranges read at the same time.
+         * @param capacity    the maximum number of rows read ahead of the consumer.
+         */
+        SubRangeIterator(List<DeepTokenRange> ranges, int concurrency, int capacity) {
+            pending = new ConcurrentLinkedQueue<>(ranges);
+            rows = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+            runningWorkers = Math.min(concurrency, pending.size());
+            executor = Executors.newFixedThreadPool(Math.max(runningWorkers, 1),
+                    new ThreadFactoryBuilder().setNameFormat("deep-sub-range-%d").setDaemon(true).build());
+        }
+
+        /**
+         * Starts the workers. They are not started by the constructor, since they call {@link #read} which may use
+         * the state of a subclass not yet initialized at that point.
+         */
+        private void start() {
+            started = true;
+            for (int i = 0; i < runningWorkers; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        readSubRanges();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Returns an iterator over the rows of the given sub-range.
+         *
+         * @param range the sub-range.
+         * @return the rows of the sub-range.
+         */
+        protected abstract Iterator<ByteBuffer[]> read(DeepTokenRange range);
+
+        /**
+         * Body of a worker: reads pending sub-ranges until there are none left.
+         */
+        private void readSubRanges() {
+            try {
+                DeepTokenRange range;
+                while ((range = pending.poll()) != null) {
+                    Iterator<ByteBuffer[]> iterator = read(range);
+                    while (iterator.hasNext()) {
+                        rows.put(iterator.next());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = e;
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                postEndMarker();
+            }
+        }
+
+        private void postEndMarker() {
+            if (failure == null) {
+                try {
+                    rows.put(endMarker);
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = e;
+                }
+            }
+
+            // a failure is seen by the consumer even if the marker does not fit in the queue
+            rows.offer(endMarker);
+        }
+
+        @Override
+        protected ByteBuffer[] computeNext() {
+            if (!started) {
+                start();
+            }
+
+            while (runningWorkers > 0) {
+                Object next;
+                try {
+                    next = rows.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DeepIOException(e);
+                }
+
+                Throwable cause = failure;
+                if (cause != null) {
+                    shutdown();
+                    throw new DeepIOException(cause);
+                }
+
+                if (next == endMarker) {
+                    runningWorkers--;
+                } else {
+                    return (ByteBuffer[]) next;
+                }
+            }
+
+            executor.shutdown();
+            return endOfData();
+        }
+
+        /**
+         * Stops the workers.
+         */
+        void shutdown() {
+            pending.clear();
+            executor.shutdownNow();
+        }
+
+        /**
+         * Waits for the workers to stop after a {@link #shutdown()}.
+         *
+         * @param timeout the maximum time to wait in milliseconds.
+         * @return true if the workers have stopped.
+         */
+        boolean awaitTermination(long timeout) {
+            try {
+                return executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
     /**
      * retrieve the partition keys and cluster keys from system.schema_columnfamilies table
      */
     //TODO check this
     private void retrieveKeys() {
-        TableMetadata tableMetadata = config.fetchTableMetadata();
-
         List<ColumnMetadata> partitionKeys = tableMetadata.getPartitionKey();
         List<ColumnMetadata> clusteringKeys = tableMetadata.getClusteringColumns();
 
@@ -725,12 +1038,59 @@ public class DeepRecordReader implements IDeepRecordReader {
      */
     @Override
     public Pair<Map<String, ByteBuffer>, Map<String, ByteBuffer>> next() {
+        ByteBuffer[] values = nextRow();
+
+        Map<String, ByteBuffer> keyColumns = new LinkedHashMap<>(capacity(keyColumnNames.length));
+        for (int i = 0; i < keyColumnNames.length; i++) {
+            keyColumns.put(keyColumnNames[i], values[i]);
+        }
+
+        Map<String, ByteBuffer> valueColumns = new LinkedHashMap<>(capacity(valueColumnNames.length));
+        for (int i = 0; i < valueColumnNames.length; i++) {
+            valueColumns.put(valueColumnNames[i], values[keyColumnNames.length + i]);
+        }
+
+        return Pair.create(keyColumns, valueColumns);
+    }
+
+    /**
+     * Returns the raw values of the next row in the underlying rowIterator, without building any map: the key columns
+     * first, followed by the value columns, in the order of {@link #getColumnNames()}.
+     *
+     * @return the raw values of the next row.
+     */
+    public ByteBuffer[] nextRow() {
         if (!this.hasNext()) {
             throw new DeepIllegalAccessException("DeepRecordReader exhausted");
         }
         return rowIterator.next();
     }
 
+    /**
+     * Returns the names of the columns returned by {@link #nextRow()}, in order.
+     *
+     * @return the names of the columns of every row.
+     */
+    public String[] getColumnNames() {
+        return (String[]) ArrayUtils.addAll(keyColumnNames, valueColumnNames);
+    }
+
+    /**
+     * Returns the number of key columns at the beginning of every row returned by {@link #nextRow()}.
+     *
+     * @return the number of key columns.
+     */
+    public int getKeyColumnCount() {
+        return keyColumnNames.length;
+    }
+
+    /**
+     * Initial capacity of a hash map holding the given number of entries without rehashing.
+     */
+    private static int capacity(int entries) {
+        return (int) (entries / 0.75f) + 1;
+    }
+
     /**
      * Builds the partition key in {@link ByteBuffer} format for the given values.
      *
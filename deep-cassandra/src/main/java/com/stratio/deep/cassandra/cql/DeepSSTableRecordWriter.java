@@ -0,0 +1,253 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import static com.stratio.deep.commons.utils.Utils.quote;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.CQLSSTableWriter;
+import org.apache.cassandra.io.sstable.SSTableLoader;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.thrift.TokenRange;
+import org.apache.cassandra.utils.OutputHandler;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.TableMetadata;
+import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
+import com.stratio.deep.cassandra.thrift.ThriftClient;
+import com.stratio.deep.commons.entity.Cell;
+import com.stratio.deep.commons.entity.Cells;
+import com.stratio.deep.commons.exception.DeepIOException;
+
+/**
+ * Bulk loads a Spark partition into Cassandra.
+ * <p>
+ * Rows are written to local SSTables with Cassandra's {@link CQLSSTableWriter}, which are streamed to the replicas
+ * owning them with {@link SSTableLoader} when the writer is closed. Skipping the coordinators and the batch log makes
+ * large initial loads several times faster, and the loaded SSTables do not trigger the compactions flushing memtables
+ * full of batched writes would. The SSTables can also be left in the bulk load directory, to be loaded offline.
+ * </p>
+ * <p>
+ * Every row only inserts the columns it has, so the columns missing from a row are left untouched rather than deleted.
+ * Rows are written by one {@link CQLSSTableWriter} per list of columns, each of them buffering its own rows.
+ * </p>
+ */
+public final class DeepSSTableRecordWriter extends CassandraRecordWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeepSSTableRecordWriter.class);
+
+    private final CassandraDeepJobConfig<?> config;
+
+    /**
+     * The CREATE TABLE statement of the output table.
+     */
+    private final String schema;
+
+    /**
+     * The directory owned by this writer, deleted on close unless the SSTables are left for offline loading.
+     */
+    private final File writerDirectory;
+
+    /**
+     * The directory the SSTables are written to, named after the keyspace and the table as the loader expects.
+     */
+    private final File directory;
+
+    /**
+     * The SSTable writers, by the list of columns they insert.
+     */
+    private final Map<List<String>, CQLSSTableWriter> writers = new HashMap<>();
+
+    /**
+     * Bulk load writer constructor.
+     *
+     * @param config write configuration
+     */
+    public DeepSSTableRecordWriter(CassandraDeepJobConfig<?> config) {
+        this.config = config;
+
+        TableMetadata tableMetadata = config.fetchTableMetadata();
+        if (tableMetadata == null) {
+            throw new DeepIOException("Table " + config.getKeyspace() + "." + config.getTable() + " does not exist");
+        }
+        this.schema = tableMetadata.asCQLQuery();
+
+        String baseDirectory = StringUtils.isEmpty(config.getBulkLoadDirectory()) ?
+                System.getProperty("java.io.tmpdir") : config.getBulkLoadDirectory();
+        this.writerDirectory = new File(baseDirectory, "deep-" + UUID.randomUUID());
+        this.directory = new File(new File(writerDirectory, config.getKeyspace()), config.getTable());
+        if (!directory.mkdirs()) {
+            throw new DeepIOException("Cannot create bulk load directory " + directory);
+        }
+
+        // keeps Cassandra from looking for a cassandra.yaml
+        Config.setClientMode(true);
+    }
+
+    /**
+     * Creates the SSTable writer inserting the given columns.
+     */
+    private CQLSSTableWriter newWriter(List<String> columns) {
+        List<String> quotedNames = new ArrayList<>();
+        for (String name : columns) {
+            quotedNames.add(quote(name));
+        }
+        String insert = String.format("INSERT INTO %s.%s (%s) VALUES (%s)", quote(config.getKeyspace()),
+                quote(config.getTable()), StringUtils.join(quotedNames, ","),
+                StringUtils.repeat("?", ",", columns.size()));
+
+        return CQLSSTableWriter.builder()
+                .inDirectory(directory)
+                .forTable(schema)
+                .using(insert)
+                .withPartitioner(RangeUtils.getPartitioner(config))
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(Cells keys, Cells values) {
+        List<String> columns = new ArrayList<>(keys.size() + values.size());
+        List<Object> row = new ArrayList<>(keys.size() + values.size());
+        for (Cell cell : keys.getCells()) {
+            columns.add(cell.getCellName());
+            row.add(cell.getCellValue());
+        }
+        for (Cell cell : values.getCells()) {
+            columns.add(cell.getCellName());
+            row.add(cell.getCellValue());
+        }
+
+        CQLSSTableWriter writer = writers.get(columns);
+        if (writer == null) {
+            writer = newWriter(columns);
+            writers.put(columns, writer);
+        }
+
+        try {
+            writer.addRow(row);
+        } catch (Exception e) {
+            throw new DeepIOException("Cannot write row to SSTable in " + directory, e);
+        }
+    }
+
+    /**
+     * Flushes the SSTables and, unless they have to be left in the bulk load directory, streams them to the cluster.
+     * The SSTables are deleted whenever they are not left for offline loading, even if flushing or streaming fails.
+     */
+    @Override
+    public void close() {
+        boolean keep = false;
+        try {
+            if (writers.isEmpty()) {
+                return;
+            }
+
+            DeepIOException failure = null;
+            for (CQLSSTableWriter writer : writers.values()) {
+                try {
+                    writer.close();
+                } catch (Exception e) {
+                    if (failure == null) {
+                        failure = new DeepIOException("Cannot flush SSTables to " + directory, e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+
+            if (!config.isBulkLoadStream()) {
+                LOG.info("SSTables left in {} for offline loading", directory);
+                keep = true;
+                return;
+            }
+
+            try {
+                SSTableLoader loader = new SSTableLoader(directory, new LoaderClient(config, schema),
+                        new OutputHandler.LogOutput());
+                loader.stream().get();
+            } catch (Exception e) {
+                throw new DeepIOException("Cannot stream SSTables in " + directory + " to the cluster", e);
+            }
+        } finally {
+            if (!keep) {
+                FileUtils.deleteRecursive(writerDirectory);
+            }
+        }
+    }
+
+    /**
+     * Tells the loader the ring layout, through Thrift, and the metadata of the output table.
+     */
+    private static final class LoaderClient extends SSTableLoader.Client {
+
+        private final CassandraDeepJobConfig<?> config;
+        private final String schema;
+        private CFMetaData cfMetaData;
+
+        private LoaderClient(CassandraDeepJobConfig<?> config, String schema) {
+            this.config = config;
+            this.schema = schema;
+        }
+
+        @Override
+        public void init(String keyspace) {
+            try {
+                ThriftClient client = ThriftClient.build(config.getHost(), config.getRpcPort());
+                try {
+                    setPartitioner(client.describe_partitioner());
+                    Token.TokenFactory tokenFactory = getPartitioner().getTokenFactory();
+
+                    for (TokenRange tokenRange : client.describe_ring(keyspace)) {
+                        Range<Token> range = new Range<>(tokenFactory.fromString(tokenRange.getStart_token()),
+                                tokenFactory.fromString(tokenRange.getEnd_token()));
+                        for (String endpoint : tokenRange.getEndpoints()) {
+                            addRangeForEndpoint(range, InetAddress.getByName(endpoint));
+                        }
+                    }
+                } finally {
+                    client.close();
+                }
+
+                cfMetaData = CFMetaData.compile(schema, keyspace);
+            } catch (Exception e) {
+                throw new DeepIOException("Cannot fetch the ring of keyspace " + keyspace, e);
+            }
+        }
+
+        @Override
+        public CFMetaData getCFMetaData(String keyspace, String cfName) {
+            return cfMetaData;
+        }
+    }
+}
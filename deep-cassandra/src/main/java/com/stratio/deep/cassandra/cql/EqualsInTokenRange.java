@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import java.io.Serializable;
+import java.util.List;
+
+import com.stratio.deep.commons.rdd.DeepTokenRange;
+
+/**
+ * Token range of an EQUALS_IN query, holding the IN values whose partition key token falls in it.
+ */
+public class EqualsInTokenRange extends DeepTokenRange<Comparable, String> {
+
+    private static final long serialVersionUID = 5309134893157640219L;
+
+    private final List<Serializable> inValues;
+
+    /**
+     * Construct a new token range with replica information and the IN values it owns.
+     *
+     * @param range    the token range.
+     * @param inValues the IN values whose token falls in the range.
+     */
+    public EqualsInTokenRange(DeepTokenRange<Comparable, String> range, List<Serializable> inValues) {
+        super(range.getStartToken(), range.getEndToken(), range.getReplicas());
+        this.inValues = inValues;
+    }
+
+    public List<Serializable> getInValues() {
+        return inValues;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "EqualsInTokenRange{" +
+                "startToken=" + getStartToken() +
+                ", endToken=" + getEndToken() +
+                ", replicas=" + getReplicas() +
+                ", inValues=" + inValues.size() +
+                "}\n";
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.stratio.deep.commons.exception.DeepIOException;
+
+/**
+ * Caches the statements prepared on the sessions handed out by {@link CassandraClientProvider}, so a given CQL query
+ * is prepared only once per session instead of once per split or batch.
+ */
+final class PreparedStatementCache {
+
+    /**
+     * Maximum number of prepared statements cached for each session.
+     */
+    private static final int MAX_STATEMENTS_PER_SESSION = 100;
+
+    /**
+     * Prepared statements by CQL text, for each session. Sessions are compared by identity and released as soon as
+     * they are no longer referenced.
+     */
+    private static final LoadingCache<Session, Cache<String, PreparedStatement>> STATEMENTS = CacheBuilder
+            .newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<Session, Cache<String, PreparedStatement>>() {
+                @Override
+                public Cache<String, PreparedStatement> load(Session session) {
+                    return CacheBuilder.newBuilder().maximumSize(MAX_STATEMENTS_PER_SESSION).build();
+                }
+            });
+
+    private PreparedStatementCache() {
+    }
+
+    /**
+     * Returns the statement resulting of preparing the given query on the given session, preparing it only if it has
+     * not been prepared on that session before.
+     *
+     * @param session the session the statement will be executed on.
+     * @param cql     the CQL query.
+     * @return the prepared statement.
+     */
+    static PreparedStatement prepare(final Session session, final String cql) {
+        try {
+            return STATEMENTS.getUnchecked(session).get(cql, new Callable<PreparedStatement>() {
+                @Override
+                public PreparedStatement call() {
+                    return session.prepare(cql);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new DeepIOException("Cannot prepare query: " + cql, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import static com.stratio.deep.commons.utils.Utils.quote;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.collections.MapUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.TableMetadata;
+import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
+import com.stratio.deep.cassandra.util.CassandraUtils;
+import com.stratio.deep.commons.exception.DeepGenericException;
+import com.stratio.deep.commons.filter.Filter;
+import com.stratio.deep.commons.filter.FilterType;
+
+/**
+ * Decides how the filters of a job are evaluated against a table.
+ * <p>
+ * Every filter is classified by the cheapest way Cassandra can evaluate it: as a partition key lookup, as a
+ * restriction on a prefix of the clustering key, through a secondary index or through the Lucene index. Filters
+ * Cassandra could only evaluate by scanning, and secondary index filters beyond the first one, are left as residual
+ * filters, evaluated by the reader on the rows it gets. {@code ALLOW FILTERING} is only requested when the server side
+ * restrictions need it.
+ * </p>
+ */
+public final class QueryPlan {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryPlan.class);
+
+    /**
+     * How a filter is evaluated.
+     */
+    public enum AccessPath {
+        PARTITION_KEY, CLUSTERING_PREFIX, SECONDARY_INDEX, LUCENE_INDEX, RESIDUAL
+    }
+
+    private final Map<Filter, AccessPath> accessPaths;
+
+    private final String luceneIndex;
+
+    private final boolean filteredByKey;
+
+    private final boolean allowFiltering;
+
+    private final List<Filter> serverFilters = new ArrayList<>();
+
+    private final List<Filter> residualFilters = new ArrayList<>();
+
+    private final DataType[] residualTypes;
+
+    /**
+     * Plans the given filters against the given table.
+     *
+     * @param table             the table metadata.
+     * @param filters           the filters of the job, may be null.
+     * @param additionalFilters the secondary index equality filters of the job, may be null.
+     */
+    public QueryPlan(TableMetadata table, Filter[] filters, Map<String, Serializable> additionalFilters) {
+        this.luceneIndex = findLuceneIndex(table);
+        this.accessPaths = classify(table, filters, luceneIndex, !MapUtils.isEmpty(additionalFilters));
+
+        int indexRestrictions = MapUtils.isEmpty(additionalFilters) ? 0 : additionalFilters.size();
+        boolean filteredByKey = false;
+        boolean clusteringRestricted = false;
+
+        for (Map.Entry<Filter, AccessPath> entry : accessPaths.entrySet()) {
+            switch (entry.getValue()) {
+            case PARTITION_KEY:
+                filteredByKey = true;
+                break;
+            case CLUSTERING_PREFIX:
+                clusteringRestricted = true;
+                break;
+            case SECONDARY_INDEX:
+            case LUCENE_INDEX:
+                indexRestrictions++;
+                break;
+            default:
+                residualFilters.add(entry.getKey());
+                continue;
+            }
+            serverFilters.add(entry.getKey());
+        }
+
+        this.filteredByKey = filteredByKey;
+        // clustering slices across partitions, and intersections of indexes, are rejected without it
+        this.allowFiltering = (clusteringRestricted && !filteredByKey) || indexRestrictions > 1;
+
+        residualTypes = new DataType[residualFilters.size()];
+        for (int i = 0; i < residualTypes.length; i++) {
+            residualTypes[i] = table.getColumn(quote(residualFilters.get(i).getField())).getType();
+        }
+
+        LOG.debug("Query plan for {}: {}", table.getName(), accessPaths);
+    }
+
+    private static Map<Filter, AccessPath> classify(TableMetadata table, Filter[] filters, String luceneIndex,
+                                                    boolean hasAdditionalFilters) {
+        Map<Filter, AccessPath> result = new LinkedHashMap<>();
+        if (filters == null) {
+            return result;
+        }
+
+        List<ColumnMetadata> partitionKey = table.getPartitionKey();
+        List<ColumnMetadata> clusteringColumns = table.getClusteringColumns();
+
+        // the clustering columns are restricted in order: equalities, followed by at most one slice
+        boolean indexUsed = hasAdditionalFilters || luceneIndex != null && hasMatch(filters);
+
+        for (ColumnMetadata column : clusteringColumns) {
+            List<Filter> columnFilters = filtersOn(filters, column.getName());
+            if (columnFilters.isEmpty() || !isSlice(columnFilters)) {
+                break;
+            }
+            for (Filter filter : columnFilters) {
+                result.put(filter, AccessPath.CLUSTERING_PREFIX);
+            }
+            if (columnFilters.get(0).getFilterType() != FilterType.EQ) {
+                break;
+            }
+        }
+
+        for (Filter filter : filters) {
+            if (result.containsKey(filter)) {
+                continue;
+            }
+
+            FilterType type = filter.getFilterType();
+            ColumnMetadata column = table.getColumn(quote(filter.getField()));
+
+            if (type == FilterType.MATCH) {
+                if (luceneIndex == null) {
+                    throw new DeepGenericException("No Lucene index found on table " + table.getName() + " for " +
+                            "filter " + filter);
+                }
+                result.put(filter, AccessPath.LUCENE_INDEX);
+            } else if (type == FilterType.BETWEEN) {
+                // not supported, left out of the query as it has always been
+                LOG.warn("Ignoring unsupported filter {}", filter);
+            } else if (column == null) {
+                throw new DeepGenericException("No column with name " + filter.getField() + " has been found on " +
+                        "table " + table.getName());
+            } else if (partitionKey.size() == 1 && partitionKey.get(0).getName().equals(column.getName())
+                    && (type == FilterType.EQ || type == FilterType.IN)) {
+                result.put(filter, AccessPath.PARTITION_KEY);
+            } else if (type == FilterType.EQ && !indexUsed && column.getIndex() != null
+                    && !column.getIndex().isCustomIndex()) {
+                result.put(filter, AccessPath.SECONDARY_INDEX);
+                indexUsed = true;
+            } else {
+                result.put(filter, AccessPath.RESIDUAL);
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean hasMatch(Filter[] filters) {
+        for (Filter filter : filters) {
+            if (filter.getFilterType() == FilterType.MATCH) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Filter> filtersOn(Filter[] filters, String column) {
+        List<Filter> result = new ArrayList<>();
+        for (Filter filter : filters) {
+            if (quote(filter.getField()).equals(quote(column))) {
+                result.add(filter);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the given filters of a clustering column are a single equality, or bounds of a range.
+     */
+    private static boolean isSlice(List<Filter> filters) {
+        if (filters.size() == 1 && filters.get(0).getFilterType() == FilterType.EQ) {
+            return true;
+        }
+        for (Filter filter : filters) {
+            switch (filter.getFilterType()) {
+            case GT:
+            case GTE:
+            case LT:
+            case LTE:
+                break;
+            default:
+                return false;
+            }
+        }
+        return filters.size() <= 2;
+    }
+
+    /**
+     * Retrieve the column name for the lucene indexes. Null if there is no lucene index.
+     */
+    private static String findLuceneIndex(TableMetadata table) {
+        String indexName = null;
+        for (ColumnMetadata column : table.getColumns()) {
+            if (column.getIndex() != null && column.getIndex().isCustomIndex()) {
+                indexName = column.getName();
+            }
+        }
+        return indexName;
+    }
+
+    private static String unquote(String identifier) {
+        String trimmed = identifier.trim();
+        return trimmed.startsWith("\"") ? trimmed.substring(1, trimmed.length() - 1) : trimmed;
+    }
+
+    /**
+     * Returns how every filter of the job is evaluated.
+     */
+    public Map<Filter, AccessPath> getAccessPaths() {
+        return accessPaths;
+    }
+
+    /**
+     * Returns true if the rows are looked up by partition key instead of scanning a token range.
+     */
+    public boolean isFilteredByKey() {
+        return filteredByKey;
+    }
+
+    /**
+     * Returns true if the server side restrictions need {@code ALLOW FILTERING}.
+     */
+    public boolean isAllowFiltering() {
+        return allowFiltering;
+    }
+
+    /**
+     * Returns the filters evaluated by Cassandra.
+     */
+    public Filter[] getServerFilters() {
+        return serverFilters.toArray(new Filter[serverFilters.size()]);
+    }
+
+    /**
+     * Returns the filters evaluated by the reader.
+     */
+    public List<Filter> getResidualFilters() {
+        return residualFilters;
+    }
+
+    /**
+     * Returns the name of the column of the Lucene index, or null if the table has none.
+     */
+    public String getLuceneIndex() {
+        return luceneIndex;
+    }
+
+    /**
+     * Returns the columns the residual filters are evaluated on.
+     */
+    public Set<String> getResidualColumns() {
+        Set<String> columns = new LinkedHashSet<>();
+        for (Filter filter : residualFilters) {
+            columns.add(unquote(filter.getField()));
+        }
+        return columns;
+    }
+
+    /**
+     * Generates the restrictions of the where clause evaluated by Cassandra, each preceded by {@code AND}.
+     *
+     * @param additionalFilters the secondary index equality filters of the job.
+     * @return the restrictions of the where clause.
+     */
+    public String whereRestrictions(Map<String, Serializable> additionalFilters) {
+        return CassandraUtils.additionalFilterGenerator(additionalFilters, getServerFilters(), luceneIndex);
+    }
+
+    /**
+     * Resolves the positions of the columns of the residual filters in a result set.
+     *
+     * @param columnDefinitions the result set column definitions.
+     * @return the positions, in the order of the residual filters.
+     */
+    public int[] bind(ColumnDefinitions columnDefinitions) {
+        int[] positions = new int[residualFilters.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = columnDefinitions.getIndexOf(quote(residualFilters.get(i).getField()));
+        }
+        return positions;
+    }
+
+    /**
+     * Evaluates the residual filters on a row. Only the columns the filters are evaluated on are decoded, and
+     * evaluation stops at the first filter the row does not pass.
+     *
+     * @param row       the row.
+     * @param positions the positions returned by {@link #bind}.
+     * @return true if the row passes all the residual filters.
+     */
+    public boolean accepts(Row row, int[] positions) {
+        for (int i = 0; i < positions.length; i++) {
+            ByteBuffer bytes = row.getBytesUnsafe(positions[i]);
+            Object value = bytes == null ? null : residualTypes[i].deserialize(bytes,
+                    CassandraDeepJobConfig.PROTOCOL_VERSION);
+            if (!accepts(residualFilters.get(i), value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates a filter on a column value. Null values never pass.
+     */
+    static boolean accepts(Filter filter, Object value) {
+        if (value == null) {
+            return false;
+        }
+
+        switch (filter.getFilterType()) {
+        case EQ:
+            return compare(value, filter.getValue()) == 0;
+        case NEQ:
+            return compare(value, filter.getValue()) != 0;
+        case GT:
+            return compare(value, filter.getValue()) > 0;
+        case GTE:
+            return compare(value, filter.getValue()) >= 0;
+        case LT:
+            return compare(value, filter.getValue()) < 0;
+        case LTE:
+            return compare(value, filter.getValue()) <= 0;
+        case IN:
+            for (Object candidate : (Collection<?>) filter.getValue()) {
+                if (compare(value, candidate) == 0) {
+                    return true;
+                }
+            }
+            return false;
+        default:
+            throw new DeepGenericException("Filter " + filter + " cannot be evaluated by the reader");
+        }
+    }
+
+    /**
+     * Compares a column value with a filter value. Numbers are compared by value whatever their type: as doubles if
+     * any of them is a float or a double, NaN being greater than any other value as Cassandra orders them, and
+     * exactly otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare(Object value, Object filterValue) {
+        if (value instanceof Number && filterValue instanceof Number) {
+            if (isFloatingPoint(value) || isFloatingPoint(filterValue)) {
+                return Double.compare(((Number) value).doubleValue(), ((Number) filterValue).doubleValue());
+            }
+            return new BigDecimal(value.toString()).compareTo(new BigDecimal(filterValue.toString()));
+        }
+        if (value instanceof Comparable && filterValue != null && value.getClass().isInstance(filterValue)) {
+            return ((Comparable<Object>) value).compareTo(filterValue);
+        }
+        if (filterValue != null && value.toString().equals(filterValue.toString())) {
+            return 0;
+        }
+        throw new DeepGenericException("Cannot compare " + value + " with filter value " + filterValue);
+    }
+
+    private static boolean isFloatingPoint(Object number) {
+        return number instanceof Double || number instanceof Float;
+    }
+}
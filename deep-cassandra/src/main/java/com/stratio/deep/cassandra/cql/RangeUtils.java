@@ -21,11 +21,15 @@ import static com.google.common.collect.Iterables.indexOf;
 import static com.google.common.collect.Iterables.transform;
 import static com.stratio.deep.commons.utils.Utils.quote;
 
+import java.io.Serializable;
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -33,9 +37,13 @@ import java.util.Set;
 import javax.annotation.Nullable;
 
 import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.CompositeType;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.ColumnMetadata;
 import com.datastax.driver.core.Host;
 import com.datastax.driver.core.Metadata;
 import com.datastax.driver.core.ResultSet;
@@ -50,6 +58,9 @@ import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
 import com.stratio.deep.cassandra.config.ICassandraDeepJobConfig;
+import com.stratio.deep.cassandra.entity.CellValidator;
+import com.stratio.deep.cassandra.filter.value.EqualsInValue;
+import com.stratio.deep.cassandra.util.CassandraUtils;
 import com.stratio.deep.commons.exception.DeepGenericException;
 import com.stratio.deep.commons.rdd.DeepTokenRange;
 import com.stratio.deep.commons.utils.Pair;
@@ -61,6 +72,14 @@ import com.stratio.deep.commons.utils.Utils;
  * @author Luca Rosellini <luca@strat.io>
  */
 public class RangeUtils {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RangeUtils.class);
+
+    /**
+     * Maximum number of pieces a single token range is split to by size-aware splitting.
+     */
+    private static final int MAX_RANGE_PIECES = 1024;
+
     /**
      * private constructor.
      */
@@ -164,16 +183,151 @@ public class RangeUtils {
                 CassandraClientProvider.getSession(
                         config.getHost(), config, false);
 
-        String queryLocal = "select tokens from system.local";
-        tokens.putAll(fetchTokens(queryLocal, sessionWithHost, p));
+        List<DeepTokenRange> merged;
+        try {
+            String queryLocal = "select tokens from system.local";
+            tokens.putAll(fetchTokens(queryLocal, sessionWithHost, p));
+
+            String queryPeers = "select peer, tokens from system.peers";
+            tokens.putAll(fetchTokens(queryPeers, sessionWithHost, p));
+
+            merged = mergeTokenRanges(tokens, sessionWithHost.left, p);
+        } finally {
+            CassandraClientProvider.release(sessionWithHost.left);
+        }
 
-        String queryPeers = "select peer, tokens from system.peers";
-        tokens.putAll(fetchTokens(queryPeers, sessionWithHost, p));
+        if (config.getTargetPartitionSize() > 0) {
+            Map<DeepTokenRange, Long> sizes = fetchSizeEstimates(config, merged, p);
+            if (!sizes.isEmpty()) {
+                return resizeRanges(merged, sizes, p, config.getTargetPartitionSize());
+            }
+            LOG.warn("No size estimates found for {}.{}, falling back to bisect mode", config.getKeyspace(),
+                    config.getTable());
+        }
 
-        List<DeepTokenRange> merged = mergeTokenRanges(tokens, sessionWithHost.left, p);
         return splitRanges(merged, p, config.getBisectFactor());
     }
 
+    /**
+     * Fetches the estimated data size of each token range from the {@code system.size_estimates} table of every
+     * replica. Nodes record estimates only for their own ranges, so every replica is asked. Replicas which cannot be
+     * reached, or which do not have the table, are skipped.
+     *
+     * @param config the Deep configuration object.
+     * @param ranges the token ranges of the ring.
+     * @param p      the partitioner used in the cluster.
+     * @return the estimated size in bytes of each token range for which an estimate has been found.
+     */
+    static Map<DeepTokenRange, Long> fetchSizeEstimates(CassandraDeepJobConfig config, List<DeepTokenRange> ranges,
+                                                        IPartitioner p) {
+        final AbstractType tkValidator = p.getTokenValidator();
+
+        Set<String> hosts = new LinkedHashSet<>();
+        for (DeepTokenRange range : ranges) {
+            hosts.addAll(range.getReplicas());
+        }
+
+        Map<DeepTokenRange, Long> sizes = new HashMap<>();
+        for (String host : hosts) {
+            Session session = null;
+            try {
+                session = CassandraClientProvider.getSession(host, config, false).left;
+                ResultSet rSet = session.execute("SELECT range_start, range_end, mean_partition_size, " +
+                        "partitions_count FROM system.size_estimates WHERE keyspace_name = ? AND table_name = ?",
+                        config.getKeyspace(), config.getTable());
+
+                for (Row row : rSet.all()) {
+                    Comparable start = (Comparable) tkValidator.compose(tkValidator.fromString(row.getString
+                            ("range_start")));
+                    Comparable end = (Comparable) tkValidator.compose(tkValidator.fromString(row.getString
+                            ("range_end")));
+                    sizes.put(new DeepTokenRange(start, end),
+                            row.getLong("mean_partition_size") * row.getLong("partitions_count"));
+                }
+            } catch (Exception e) {
+                LOG.warn("Cannot fetch size estimates from {}: {}", host, e.getMessage());
+            } finally {
+                CassandraClientProvider.release(session);
+            }
+        }
+
+        return sizes;
+    }
+
+    /**
+     * Splits the token ranges bigger than the target size and merges the contiguous ranges smaller than it that share
+     * a replica, so that each resulting range holds about {@code targetSize} bytes. Ranges without a size estimate are
+     * left untouched.
+     *
+     * @param ranges     the token ranges of the ring, sorted by start token.
+     * @param sizes      the estimated size in bytes of the token ranges.
+     * @param p          the partitioner used in the cluster.
+     * @param targetSize the target size in bytes of each resulting range.
+     * @return the resized token ranges.
+     */
+    @SuppressWarnings("unchecked")
+    static List<DeepTokenRange> resizeRanges(List<DeepTokenRange> ranges, Map<DeepTokenRange, Long> sizes,
+                                             IPartitioner p, long targetSize) {
+        List<DeepTokenRange> result = new ArrayList<>();
+
+        DeepTokenRange current = null;
+        long currentSize = 0;
+
+        for (DeepTokenRange range : ranges) {
+            Long size = sizes.get(range);
+
+            if (size == null || size > targetSize) {
+                if (current != null) {
+                    result.add(current);
+                    current = null;
+                }
+
+                int pieces = size == null ? 1 : piecesFor(size, targetSize);
+                if (pieces > 1) {
+                    bisectTokeRange(range, p, pieces, result);
+                } else {
+                    result.add(range);
+                }
+                continue;
+            }
+
+            if (current != null && currentSize + size <= targetSize
+                    && current.getEndToken().equals(range.getStartToken())) {
+                List<String> replicas = new ArrayList<>(current.getReplicas());
+                replicas.retainAll(range.getReplicas());
+
+                if (!replicas.isEmpty()) {
+                    current = new DeepTokenRange(current.getStartToken(), range.getEndToken(), replicas);
+                    currentSize += size;
+                    continue;
+                }
+            }
+
+            if (current != null) {
+                result.add(current);
+            }
+            current = range;
+            currentSize = size;
+        }
+
+        if (current != null) {
+            result.add(current);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of pieces, a power of two, a range of the given size must be split to so that no piece is
+     * bigger than the target size.
+     */
+    private static int piecesFor(long size, long targetSize) {
+        long needed = Math.min((size + targetSize - 1) / targetSize, MAX_RANGE_PIECES);
+
+        int pieces = Integer.highestOneBit((int) needed);
+        return pieces < needed ? pieces << 1 : pieces;
+    }
+
     private static List<DeepTokenRange> splitRanges(
             final List<DeepTokenRange> ranges,
             final IPartitioner p,
@@ -198,6 +352,24 @@ public class RangeUtils {
         return Lists.newArrayList(bisectedRanges);
     }
 
+    /**
+     * Splits the given token range into the given number of contiguous token ranges, in token order.
+     *
+     * @param range       the token range to be splitted.
+     * @param partitioner the cassandra partitioner.
+     * @param pieces      the number of pieces, a power of two.
+     * @return the pieces of the token range.
+     */
+    public static List<DeepTokenRange> bisect(DeepTokenRange range, IPartitioner partitioner, int pieces) {
+        List<DeepTokenRange> result = new ArrayList<>();
+        if (pieces < 2) {
+            result.add(range);
+        } else {
+            bisectTokeRange(range, partitioner, pieces, result);
+        }
+        return result;
+    }
+
     /**
      * Recursive function that splits a given token range to a given number of token ranges.
      *
@@ -230,6 +402,111 @@ public class RangeUtils {
         }
     }
 
+    /**
+     * Assigns every IN value of the EQUALS_IN query of the configuration to the token range owning its partition key.
+     *
+     * @param splits the token ranges of the ring.
+     * @param config the Deep configuration object.
+     * @return the token ranges owning at least one IN value, in the order of {@code splits}.
+     */
+    public static List<DeepTokenRange> assignEqualsInValues(List<DeepTokenRange> splits,
+                                                            CassandraDeepJobConfig config) {
+        List<AbstractType<?>> keyTypes = new ArrayList<>();
+        for (ColumnMetadata key : config.fetchTableMetadata().getPartitionKey()) {
+            keyTypes.add(CellValidator.cellValidator(key.getType()).getAbstractType());
+        }
+
+        return assignEqualsInValues(splits, config.getEqualsInValue(), keyTypes, getPartitioner(config));
+    }
+
+    /**
+     * Assigns every IN value to the token range owning its partition key. The token of every value is computed
+     * once, and its owner is found by binary search on the start tokens.
+     *
+     * @param splits        the token ranges of the ring.
+     * @param equalsInValue the EQUALS_IN query: the equals values are the first components of the partition key, and
+     *                      the IN value is the last one.
+     * @param keyTypes      the types of the partition key components.
+     * @param p             the partitioner used in the cluster.
+     * @return the token ranges owning at least one IN value, in the order of {@code splits}.
+     */
+    static List<DeepTokenRange> assignEqualsInValues(List<DeepTokenRange> splits, EqualsInValue equalsInValue,
+                                                     List<AbstractType<?>> keyTypes, IPartitioner p) {
+        List<DeepTokenRange> sorted = new ArrayList<>(splits);
+        Collections.sort(sorted);
+
+        Map<DeepTokenRange, List<Serializable>> assigned = new LinkedHashMap<>();
+        for (DeepTokenRange split : splits) {
+            assigned.put(split, null);
+        }
+
+        List<Pair<String, Serializable>> equalsList = equalsInValue.getEqualsList();
+        ByteBuffer[] components = new ByteBuffer[equalsList.size() + 1];
+        for (int i = 0; i < equalsList.size(); i++) {
+            components[i] = ((AbstractType) keyTypes.get(i)).decompose(equalsList.get(i).right);
+        }
+
+        for (Serializable value : equalsInValue.getInValues()) {
+            components[components.length - 1] = ((AbstractType) keyTypes.get(components.length - 1)).decompose(value);
+            ByteBuffer partitionKey = components.length == 1 ? components[0] : CompositeType.build(components);
+
+            DeepTokenRange owner = findOwner(sorted, p.getToken(partitionKey));
+            if (owner == null) {
+                LOG.warn("No token range owns the IN value {}", value);
+                continue;
+            }
+
+            List<Serializable> values = assigned.get(owner);
+            if (values == null) {
+                values = new ArrayList<>();
+                assigned.put(owner, values);
+            }
+            values.add(value);
+        }
+
+        List<DeepTokenRange> result = new ArrayList<>();
+        for (Map.Entry<DeepTokenRange, List<Serializable>> entry : assigned.entrySet()) {
+            if (entry.getValue() != null) {
+                result.add(new EqualsInTokenRange(entry.getKey(), entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the token range including the given token: the one with the greatest start token lower than it, or the
+     * range wrapping around the ring if there is none.
+     *
+     * @param sorted the token ranges, sorted by start token.
+     * @param token  the token.
+     * @return the token range including the token, or null if none does.
+     */
+    private static DeepTokenRange findOwner(List<DeepTokenRange> sorted, Token<Comparable> token) {
+        int low = 0;
+        int high = sorted.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (token.token.compareTo(sorted.get(mid).getStartTokenAsComparable()) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        DeepTokenRange candidate = sorted.get(high >= 0 ? high : sorted.size() - 1);
+        if (CassandraUtils.isTokenIncludedInRange(candidate, token)) {
+            return candidate;
+        }
+
+        // the ranges do not cover the whole ring
+        for (DeepTokenRange range : sorted) {
+            if (CassandraUtils.isTokenIncludedInRange(range, token)) {
+                return range;
+            }
+        }
+        return null;
+    }
+
     /**
      * Creates a new instance of the cassandra partitioner configured in the configuration object.
      *
@@ -367,11 +644,16 @@ public class RangeUtils {
                 .append(config.getKeyspace()).append(".")
                 .append(config.getTable()).append(" ESTIMATING ")
                 .append(config.getSplitSize()).toString();
-        ResultSet rSet = sessionWithHost.left.execute(query);
+        List<Row> rows;
+        try {
+            rows = sessionWithHost.left.execute(query).all();
+        } finally {
+            CassandraClientProvider.release(sessionWithHost.left);
+        }
 
         List<DeepTokenRange> tokens = new ArrayList<>();
 
-        for (Row row : rSet.all()) {
+        for (Row row : rows) {
             Comparable startToken = (Comparable) tokenValidator.compose(row
                     .getBytesUnsafe("start_token"));
             Comparable endToken = (Comparable) tokenValidator.compose(row
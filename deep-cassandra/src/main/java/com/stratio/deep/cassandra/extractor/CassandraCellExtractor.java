@@ -15,14 +15,21 @@
 package com.stratio.deep.cassandra.extractor;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.spark.Partition;
+
+import com.datastax.driver.core.DataType;
 import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
 import com.stratio.deep.cassandra.config.CellDeepJobConfig;
 import com.stratio.deep.cassandra.functions.CellList2TupleFunction;
 import com.stratio.deep.cassandra.util.CassandraUtils;
 import com.stratio.deep.commons.entity.Cell;
 import com.stratio.deep.commons.entity.Cells;
+import com.stratio.deep.commons.entity.CellsSchema;
+import com.stratio.deep.commons.entity.ColumnarCells;
 import com.stratio.deep.commons.utils.Pair;
 
 /**
@@ -33,6 +40,21 @@ public class CassandraCellExtractor extends CassandraExtractor<Cells, CellDeepJo
 
     private static final long serialVersionUID = -738528971629963221L;
 
+    /**
+     * Column layout shared by all the rows read from the current partition.
+     */
+    private transient CellsSchema schema;
+
+    /**
+     * For every column of the schema, its position in the rows returned by the record reader.
+     */
+    private transient int[] rowPositions;
+
+    /**
+     * For every column of the schema, the type used to deserialize its values.
+     */
+    private transient DataType[] dataTypes;
+
     public CassandraCellExtractor() {
         this(Cells.class);
     }
@@ -43,6 +65,70 @@ public class CassandraCellExtractor extends CassandraExtractor<Cells, CellDeepJo
         this.transformer = new CellList2TupleFunction();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initIterator(Partition dp, CellDeepJobConfig config) {
+        super.initIterator(dp, config);
+        initSchema();
+    }
+
+    /**
+     * Builds a {@link ColumnarCells} row straight from the raw values returned by the record reader, sharing the
+     * column layout of the partition between all its rows.
+     */
+    @Override
+    public Cells next() {
+        ByteBuffer[] row = recordReader.nextRow();
+
+        Object[] values = new Object[rowPositions.length];
+        for (int i = 0; i < rowPositions.length; i++) {
+            ByteBuffer value = row[rowPositions[i]];
+            if (value != null) {
+                values[i] = dataTypes[i].deserialize(value, CassandraDeepJobConfig.PROTOCOL_VERSION);
+            }
+        }
+
+        return new ColumnarCells(cassandraJobConfig.getNameSpace(), schema, values);
+    }
+
+    /**
+     * Resolves the column layout of the rows returned by the record reader. Value columns with no known definition
+     * are left out, as in {@link #transformElement(Pair, CassandraDeepJobConfig)}.
+     */
+    private void initSchema() {
+        Map<String, Cell> columnDefinitions = cassandraJobConfig.columnDefinitions();
+        String[] columnNames = recordReader.getColumnNames();
+        int keyColumns = recordReader.getKeyColumnCount();
+
+        List<Integer> positions = new ArrayList<>(columnNames.length);
+        for (int i = 0; i < columnNames.length; i++) {
+            if (i < keyColumns || columnDefinitions.containsKey(columnNames[i])) {
+                positions.add(i);
+            }
+        }
+
+        String[] names = new String[positions.size()];
+        boolean[] key = new boolean[positions.size()];
+        boolean[] clusterKey = new boolean[positions.size()];
+        rowPositions = new int[positions.size()];
+        dataTypes = new DataType[positions.size()];
+
+        for (int i = 0; i < positions.size(); i++) {
+            int position = positions.get(i);
+            Cell cd = columnDefinitions.get(columnNames[position]);
+
+            names[i] = cd.getCellName();
+            key[i] = cd.isKey();
+            clusterKey[i] = cd.isClusterKey();
+            rowPositions[i] = position;
+            dataTypes[i] = (DataType) cd.getValue();
+        }
+
+        schema = new CellsSchema(names, key, clusterKey);
+    }
+
     /**
      * {@inheritDoc}
      */
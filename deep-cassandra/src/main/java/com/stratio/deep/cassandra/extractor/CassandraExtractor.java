@@ -14,7 +14,6 @@
 
 package com.stratio.deep.cassandra.extractor;
 
-import static com.stratio.deep.cassandra.util.CassandraUtils.isFilterdByKey;
 import static com.stratio.deep.commons.utils.Utils.initConfig;
 
 import java.nio.ByteBuffer;
@@ -26,8 +25,9 @@ import org.apache.spark.Partition;
 
 import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
 import com.stratio.deep.cassandra.config.ICassandraDeepJobConfig;
-import com.stratio.deep.cassandra.cql.DeepCqlRecordWriter;
+import com.stratio.deep.cassandra.cql.CassandraRecordWriter;
 import com.stratio.deep.cassandra.cql.DeepRecordReader;
+import com.stratio.deep.cassandra.cql.QueryPlan;
 import com.stratio.deep.cassandra.cql.RangeUtils;
 import com.stratio.deep.cassandra.querybuilder.CassandraUpdateQueryBuilder;
 import com.stratio.deep.cassandra.querybuilder.DefaultQueryBuilder;
@@ -55,7 +55,7 @@ public abstract class CassandraExtractor<T, S extends BaseConfig> implements IEx
 
     protected transient DeepRecordReader recordReader;
 
-    protected transient DeepCqlRecordWriter writer;
+    protected transient CassandraRecordWriter writer;
 
     protected CassandraDeepJobConfig<T> cassandraJobConfig;
 
@@ -114,8 +114,9 @@ public abstract class CassandraExtractor<T, S extends BaseConfig> implements IEx
         cassandraJobConfig = initConfig(config, cassandraJobConfig);
 
         List<DeepTokenRange> underlyingInputSplits = null;
-        if(isFilterdByKey(cassandraJobConfig.getFilters(), cassandraJobConfig.fetchTableMetadata().getPartitionKey()
-                .get(0).getName())) {
+        QueryPlan queryPlan = new QueryPlan(cassandraJobConfig.fetchTableMetadata(), cassandraJobConfig.getFilters(),
+                cassandraJobConfig.getAdditionalFilters());
+        if (queryPlan.isFilteredByKey()) {
 
             underlyingInputSplits = new ArrayList<>();
             underlyingInputSplits.add(new DeepTokenRange(Long.MIN_VALUE, Long.MAX_VALUE, cassandraJobConfig.getHostList()));
@@ -126,6 +127,11 @@ public abstract class CassandraExtractor<T, S extends BaseConfig> implements IEx
             } else {
                 underlyingInputSplits = ThriftRangeUtils.build(cassandraJobConfig).getSplits();
             }
+
+            if (cassandraJobConfig.getEqualsInValue() != null) {
+                // only the ranges owning some IN value are read
+                underlyingInputSplits = RangeUtils.assignEqualsInValues(underlyingInputSplits, cassandraJobConfig);
+            }
         }
             Partition[] partitions = new DeepPartition[underlyingInputSplits.size()];
 
@@ -176,11 +182,8 @@ public abstract class CassandraExtractor<T, S extends BaseConfig> implements IEx
         if (queryBuilder == null) {
             queryBuilder = new DefaultQueryBuilder();
         }
-        queryBuilder.setCatalogName(cassandraJobConfig.getCatalog());
-        queryBuilder.setTableName(cassandraJobConfig.getTable());
-
-        writer = new DeepCqlRecordWriter(cassandraJobConfig, (CassandraUpdateQueryBuilder) queryBuilder);
 
+        writer = CassandraRecordWriter.newWriter(cassandraJobConfig, (CassandraUpdateQueryBuilder) queryBuilder);
     }
 
     @Override
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.thrift;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.thrift.TException;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Pool of idle {@link ThriftClient}s shared by all the {@link ThriftRangeUtils}, so split discovery does not open a
+ * new connection for every token range. Clients are pooled by host, port and keyspace, and idle clients are closed
+ * by a background task once they have been idle for {@link #MAX_IDLE_MILLIS}.
+ */
+final class ThriftClientPool {
+
+    /**
+     * Maximum number of idle clients kept for each host, port and keyspace.
+     */
+    static final int MAX_IDLE_CLIENTS = 4;
+
+    /**
+     * Time after which an idle client is closed.
+     */
+    static final long MAX_IDLE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final Map<String, Deque<IdleClient>> IDLE_CLIENTS = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("deep-thrift-evictor-%d").setDaemon(true).build());
+
+    static {
+        EVICTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evict(System.currentTimeMillis());
+            }
+        }, MAX_IDLE_MILLIS, MAX_IDLE_MILLIS / 2, TimeUnit.MILLISECONDS);
+    }
+
+    private ThriftClientPool() {
+    }
+
+    /**
+     * Returns an idle client for the specified host and keyspace, or a new one if there is none.
+     *
+     * @param host     the Cassandra host address.
+     * @param port     the Cassandra host RPC port.
+     * @param keyspace the name of the Cassandra keyspace to set.
+     * @return a client for the specified host, with the specified keyspace set.
+     * @throws TException if a new client cannot be built.
+     */
+    static ThriftClient borrow(String host, int port, String keyspace) throws TException {
+        Deque<IdleClient> idleClients = idleClients(host, port, keyspace);
+
+        long now = System.currentTimeMillis();
+        while (true) {
+            IdleClient idle;
+            synchronized (idleClients) {
+                idle = idleClients.pollFirst();
+            }
+
+            if (idle == null) {
+                return ThriftClient.build(host, port, keyspace);
+            }
+
+            if (now - idle.releasedAt < MAX_IDLE_MILLIS) {
+                return idle.client;
+            }
+
+            idle.client.close();
+        }
+    }
+
+    /**
+     * Gives back a client which is still usable, so it can be reused.
+     *
+     * @param host     the Cassandra host address the client was borrowed for.
+     * @param port     the Cassandra host RPC port the client was borrowed for.
+     * @param keyspace the name of the Cassandra keyspace the client was borrowed for.
+     * @param client   the client.
+     */
+    static void release(String host, int port, String keyspace, ThriftClient client) {
+        Deque<IdleClient> idleClients = idleClients(host, port, keyspace);
+
+        synchronized (idleClients) {
+            if (idleClients.size() < MAX_IDLE_CLIENTS) {
+                idleClients.addFirst(new IdleClient(client, System.currentTimeMillis()));
+                return;
+            }
+        }
+
+        client.close();
+    }
+
+    /**
+     * Closes the clients which have been idle for {@link #MAX_IDLE_MILLIS} at the given time.
+     *
+     * @param now the current time in milliseconds.
+     */
+    static void evict(long now) {
+        List<ThriftClient> expired = new ArrayList<>();
+        for (Deque<IdleClient> idleClients : IDLE_CLIENTS.values()) {
+            synchronized (idleClients) {
+                // clients are released to the head, so the oldest ones are at the tail
+                while (!idleClients.isEmpty() && now - idleClients.peekLast().releasedAt >= MAX_IDLE_MILLIS) {
+                    expired.add(idleClients.pollLast().client);
+                }
+            }
+        }
+
+        for (ThriftClient client : expired) {
+            client.close();
+        }
+    }
+
+    private static Deque<IdleClient> idleClients(String host, int port, String keyspace) {
+        String key = host + ":" + port + ":" + keyspace;
+
+        Deque<IdleClient> idleClients = IDLE_CLIENTS.get(key);
+        if (idleClients == null) {
+            synchronized (IDLE_CLIENTS) {
+                idleClients = IDLE_CLIENTS.get(key);
+                if (idleClients == null) {
+                    idleClients = new LinkedList<>();
+                    IDLE_CLIENTS.put(key, idleClients);
+                }
+            }
+        }
+
+        return idleClients;
+    }
+
+    /**
+     * A pooled client and the time it was released.
+     */
+    private static class IdleClient {
+        private final ThriftClient client;
+        private final long releasedAt;
+
+        IdleClient(ThriftClient client, long releasedAt) {
+            this.client = client;
+            this.releasedAt = releasedAt;
+        }
+    }
+}
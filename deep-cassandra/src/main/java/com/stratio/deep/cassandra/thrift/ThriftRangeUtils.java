@@ -18,7 +18,16 @@ package com.stratio.deep.cassandra.thrift;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.dht.IPartitioner;
@@ -31,9 +40,11 @@ import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
 import com.stratio.deep.commons.exception.DeepGenericException;
 import com.stratio.deep.commons.rdd.DeepTokenRange;
+import com.stratio.deep.commons.utils.Constants;
 import com.stratio.deep.commons.utils.Utils;
 
 /**
@@ -45,6 +56,16 @@ public class ThriftRangeUtils {
 
     private static final Logger LOG = LoggerFactory.getLogger(ThriftRangeUtils.class);
 
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder()
+            .setNameFormat("deep-split-discovery-%d")
+            .setDaemon(true)
+            .build();
+
+    /**
+     * Splits computed by previous calls to {@link #getSplits()}, by host, keyspace, column family and split size.
+     */
+    private static final Map<String, CachedSplits> SPLITS_CACHE = new ConcurrentHashMap<>();
+
     private final String host; // The Cassandra contact host name
     private final int rpcPort; // The Cassandra contact host RPC port
     private final int splitSize; // The number of rows per split
@@ -53,6 +74,8 @@ public class ThriftRangeUtils {
     private final AbstractType tokenType; // The token validator
     private final TokenFactory tokenFactory; // The token factory
     private final Comparable minToken; // The partitioner's minimum token
+    private final int parallelism; // The maximum number of token ranges split concurrently
+    private final long cacheTtl; // The milliseconds during which computed splits are reused
 
     /**
      * Builds a new {@link ThriftRangeUtils}.
@@ -70,6 +93,30 @@ public class ThriftRangeUtils {
                             String keyspace,
                             String columnFamily,
                             int splitSize) {
+        this(partitioner, host, rpcPort, keyspace, columnFamily, splitSize,
+                Constants.DEFAULT_SPLIT_DISCOVERY_PARALLELISM, Constants.DEFAULT_SPLITS_CACHE_TTL);
+    }
+
+    /**
+     * Builds a new {@link ThriftRangeUtils}.
+     *
+     * @param partitioner  the partitioner.
+     * @param host         the host address.
+     * @param rpcPort      the host RPC port.
+     * @param keyspace     the keyspace name.
+     * @param columnFamily the column family name.
+     * @param splitSize    the number of rows per split.
+     * @param parallelism  the maximum number of token ranges split concurrently.
+     * @param cacheTtl     the milliseconds during which computed splits are reused, zero to disable caching.
+     */
+    public ThriftRangeUtils(IPartitioner partitioner,
+                            String host,
+                            int rpcPort,
+                            String keyspace,
+                            String columnFamily,
+                            int splitSize,
+                            int parallelism,
+                            long cacheTtl) {
         this.host = host;
         this.rpcPort = rpcPort;
         this.splitSize = splitSize;
@@ -78,6 +125,8 @@ public class ThriftRangeUtils {
         tokenType = partitioner.getTokenValidator();
         tokenFactory = partitioner.getTokenFactory();
         minToken = (Comparable) partitioner.getMinimumToken().token;
+        this.parallelism = parallelism;
+        this.cacheTtl = cacheTtl;
     }
 
     /**
@@ -93,29 +142,86 @@ public class ThriftRangeUtils {
         String columnFamily = config.getColumnFamily();
         String partitionerClassName = config.getPartitionerClassName();
         IPartitioner partitioner = Utils.newTypeInstance(partitionerClassName, IPartitioner.class);
-        return new ThriftRangeUtils(partitioner, host, rpcPort, keyspace, columnFamily, splitSize);
+        return new ThriftRangeUtils(partitioner, host, rpcPort, keyspace, columnFamily, splitSize,
+                config.getSplitDiscoveryParallelism(), config.getSplitsCacheTtl());
     }
 
     /**
      * Returns the token range splits of the Cassandra ring that will be mapped to Spark partitions.
+     * <p>
+     * The ring token ranges are split concurrently, and the result is reused during the configured cache time to
+     * live.
+     * </p>
      *
      * @return the list of computed token ranges.
      */
     public List<DeepTokenRange> getSplits() {
 
+        String cacheKey = host + ":" + rpcPort + "/" + keyspace + "/" + columnFamily + "/" + splitSize;
+
+        if (cacheTtl > 0) {
+            CachedSplits cached = SPLITS_CACHE.get(cacheKey);
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                LOG.debug("Reusing cached splits for {}", cacheKey);
+                return new ArrayList<>(cached.splits);
+            }
+        }
+
         // Get the cluster token ranges
         List<DeepTokenRange> tokenRanges = getRanges();
 
         // Get the cluster token ranges splits
-        List<DeepTokenRange> splits = new ArrayList<>();
-        for (DeepTokenRange tokenRange : tokenRanges) {
-            List<DeepTokenRange> nodeSplits = getSplits(tokenRange);
-            splits.addAll(nodeSplits);
+        List<DeepTokenRange> splits = getSplits(tokenRanges);
+
+        if (cacheTtl > 0) {
+            SPLITS_CACHE.put(cacheKey, new CachedSplits(Collections.unmodifiableList(new ArrayList<>(splits)),
+                    System.currentTimeMillis() + cacheTtl));
         }
 
         return splits;
     }
 
+    /**
+     * Splits the specified token ranges concurrently, with at most {@code parallelism} ranges being split at the same
+     * time.
+     *
+     * @param tokenRanges the token ranges to be splitted.
+     * @return the token range splits, in the order of the specified token ranges.
+     */
+    private List<DeepTokenRange> getSplits(List<DeepTokenRange> tokenRanges) {
+        int threads = Math.max(1, Math.min(parallelism, tokenRanges.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, THREAD_FACTORY);
+
+        try {
+            List<Future<List<DeepTokenRange>>> futures = new ArrayList<>(tokenRanges.size());
+            for (final DeepTokenRange tokenRange : tokenRanges) {
+                futures.add(executor.submit(new Callable<List<DeepTokenRange>>() {
+                    @Override
+                    public List<DeepTokenRange> call() {
+                        return getSplits(tokenRange);
+                    }
+                }));
+            }
+
+            List<DeepTokenRange> splits = new ArrayList<>();
+            for (Future<List<DeepTokenRange>> future : futures) {
+                splits.addAll(future.get());
+            }
+
+            return splits;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DeepGenericException) {
+                throw (DeepGenericException) e.getCause();
+            }
+            throw new DeepGenericException("Cannot split ring token ranges", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeepGenericException("Interrupted while splitting ring token ranges", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Returns the token ranges of the Cassandra ring that will be mapped to Spark partitions.
      * The returned ranges are the Cassandra's physical ones, without any splitting.
@@ -135,8 +241,9 @@ public class ThriftRangeUtils {
                 } else {
                     throw new DeepGenericException("Unknown server error", e);
                 }
+            } finally {
+                client.close();
             }
-            client.close();
 
             List<DeepTokenRange> deepTokenRanges = new ArrayList<>(tokenRanges.size());
             for (TokenRange tokenRange : tokenRanges) {
@@ -165,9 +272,18 @@ public class ThriftRangeUtils {
 
         for (String endpoint : endpoints) {
             try {
-                ThriftClient client = ThriftClient.build(endpoint, rpcPort, keyspace);
-                List<CfSplit> splits = client.describe_splits_ex(columnFamily, start, end, splitSize);
-                client.close();
+                ThriftClient client = ThriftClientPool.borrow(endpoint, rpcPort, keyspace);
+                List<CfSplit> splits = null;
+                try {
+                    splits = client.describe_splits_ex(columnFamily, start, end, splitSize);
+                } finally {
+                    // only a client which answered is known to be usable
+                    if (splits != null) {
+                        ThriftClientPool.release(endpoint, rpcPort, keyspace, client);
+                    } else {
+                        client.close();
+                    }
+                }
                 return deepTokenRanges(splits, endpoints);
             } catch (TException e) {
                 LOG.warn("Endpoint %s failed while splitting range %s", endpoint, deepTokenRange);
@@ -229,4 +345,16 @@ public class ThriftRangeUtils {
         return tokenFactory.toString(token);
     }
 
+    /**
+     * Token range splits computed for a keyspace and column family, and the time they stop being valid.
+     */
+    private static class CachedSplits {
+        private final List<DeepTokenRange> splits;
+        private final long expiresAt;
+
+        CachedSplits(List<DeepTokenRange> splits, long expiresAt) {
+            this.splits = splits;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
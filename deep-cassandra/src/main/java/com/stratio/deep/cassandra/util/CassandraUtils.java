@@ -53,7 +53,7 @@ import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
 import com.stratio.deep.cassandra.config.ICassandraDeepJobConfig;
 import com.stratio.deep.cassandra.config.OperatorCassandra;
-import com.stratio.deep.cassandra.cql.DeepCqlRecordWriter;
+import com.stratio.deep.cassandra.cql.CassandraRecordWriter;
 import com.stratio.deep.cassandra.querybuilder.DefaultQueryBuilder;
 import com.stratio.deep.commons.annotations.DeepField;
 import com.stratio.deep.commons.entity.Cell;
@@ -90,6 +90,11 @@ public class CassandraUtils {
         if (!writeConfig.getIsWriteConfig()) {
             throw new IllegalArgumentException("Provided configuration object is not suitable for writing");
         }
+        if (((CassandraDeepJobConfig) writeConfig).isBulkLoad()) {
+            // SSTables are written by the executors owning the rows, not by the driver
+            doSaveToCassandra(rdd, writeConfig, transformer);
+            return;
+        }
         Tuple2<Map<String, ByteBuffer>, Map<String, ByteBuffer>> tuple = new Tuple2<>(null, null);
 
         RDD<Tuple2<Cells, Cells>> mappedRDD = rdd.map(transformer,
@@ -151,8 +156,8 @@ public class CassandraUtils {
                     @Override
                     public Integer apply(TaskContext context, Iterator<Tuple2<Cells, Cells>> rows) {
 
-                        try (DeepCqlRecordWriter writer = new DeepCqlRecordWriter(writeConfig,
-                                new DefaultQueryBuilder())) {
+                        try (CassandraRecordWriter writer = CassandraRecordWriter.newWriter(
+                                (CassandraDeepJobConfig) writeConfig, new DefaultQueryBuilder())) {
                             while (rows.hasNext()) {
                                 Tuple2<Cells, Cells> row = rows.next();
                                 writer.write(row._1(), row._2());
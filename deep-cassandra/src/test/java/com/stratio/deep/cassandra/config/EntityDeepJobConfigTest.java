@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.config;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.powermock.reflect.Whitebox;
+import org.testng.annotations.Test;
+
+import com.stratio.deep.commons.annotations.DeepEntity;
+import com.stratio.deep.commons.annotations.DeepField;
+import com.stratio.deep.commons.entity.Cell;
+import com.stratio.deep.commons.entity.IDeepType;
+import com.stratio.deep.commons.utils.AnnotationUtils;
+
+/**
+ * Tests the column projection of entity read configurations.
+ */
+@Test
+public class EntityDeepJobConfigTest {
+
+    @Test
+    public void testReadConfigProjectsDeepFields() throws Exception {
+        EntityDeepJobConfig<ProjectionEntity> config = new EntityDeepJobConfig<>(ProjectionEntity.class, false);
+
+        initProjection(config);
+
+        assertEquals(config.getInputColumns(), new String[] { "id", "page_url" });
+    }
+
+    @Test
+    public void testExplicitInputColumnsAreKept() throws Exception {
+        EntityDeepJobConfig<ProjectionEntity> config = new EntityDeepJobConfig<>(ProjectionEntity.class, false);
+        config.inputColumns(new String[] { "id", "unmapped" });
+
+        initProjection(config);
+
+        assertEquals(config.getInputColumns(), new String[] { "id", "unmapped" });
+    }
+
+    @Test
+    public void testWriteConfigIsNotProjected() throws Exception {
+        EntityDeepJobConfig<ProjectionEntity> config = new EntityDeepJobConfig<>(ProjectionEntity.class, true);
+
+        initProjection(config);
+
+        assertNull(config.getInputColumns());
+    }
+
+    /**
+     * Runs the projection against a table made of the entity columns and an unmapped one, without fetching the
+     * table metadata.
+     */
+    private void initProjection(EntityDeepJobConfig<ProjectionEntity> config) throws Exception {
+        Map<String, Cell> columnDefinitions = new HashMap<>();
+        for (String column : new String[] { "id", "page_url", "unmapped" }) {
+            columnDefinitions.put(column, Cell.create(column, ""));
+        }
+        Whitebox.setInternalState(config, "columnDefinitionMap", columnDefinitions);
+
+        Field[] deepFields = AnnotationUtils.filterDeepFields(ProjectionEntity.class);
+        Whitebox.invokeMethod(config, "initProjection", new Object[] { deepFields });
+    }
+
+    @DeepEntity
+    public static class ProjectionEntity implements IDeepType {
+        private static final long serialVersionUID = 1L;
+
+        @DeepField(isPartOfPartitionKey = true)
+        private String id;
+
+        @DeepField(fieldName = "page_url")
+        private String url;
+
+        private String notMapped;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Session;
+import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
+
+/**
+ * Tests the reference counting of the sessions shared by {@link CassandraClientProvider}, with an idle timeout of 0
+ * so sessions are closed as soon as their last user releases them.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ CassandraClientProvider.class })
+public class CassandraClientProviderTest {
+
+    /**
+     * Sessions whose close has been requested.
+     */
+    private final Set<Session> closed = Collections.newSetFromMap(new ConcurrentHashMap<Session, Boolean>());
+
+    @Test
+    public void testSessionIsSharedUntilLastRelease() throws Exception {
+        Cluster cluster = stubCluster();
+        CassandraDeepJobConfig config = config("ks", "pwd");
+
+        Session first = CassandraClientProvider.getSession("shared", config, true).left;
+        Session second = CassandraClientProvider.getSession("shared", config, true).left;
+
+        assertSame(first, second);
+        verify(cluster, times(1)).connect(anyString());
+
+        CassandraClientProvider.release(first);
+        assertFalse(closed.contains(first));
+        verify(cluster, never()).closeAsync();
+
+        CassandraClientProvider.release(second);
+        assertTrue(closed.contains(first));
+        verify(cluster).closeAsync();
+
+        Session third = CassandraClientProvider.getSession("shared", config, true).left;
+        assertNotSame(first, third);
+        CassandraClientProvider.release(third);
+    }
+
+    @Test
+    public void testClusterIsClosedWithItsLastSession() throws Exception {
+        Cluster cluster = stubCluster();
+
+        Session ks1 = CassandraClientProvider.getSession("keyspaces", config("ks1", "pwd"), true).left;
+        Session ks2 = CassandraClientProvider.getSession("keyspaces", config("ks2", "pwd"), true).left;
+
+        assertNotSame(ks1, ks2);
+        PowerMockito.verifyPrivate(CassandraClientProvider.class, times(1))
+                .invoke("buildCluster", anyString(), any(CassandraDeepJobConfig.class), anyBoolean());
+
+        CassandraClientProvider.release(ks1);
+        assertTrue(closed.contains(ks1));
+        verify(cluster, never()).closeAsync();
+
+        CassandraClientProvider.release(ks2);
+        assertTrue(closed.contains(ks2));
+        verify(cluster).closeAsync();
+    }
+
+    @Test
+    public void testPasswordIsPartOfTheClusterKey() throws Exception {
+        stubCluster();
+
+        Session first = CassandraClientProvider.getSession("credentials", config("ks", "old"), true).left;
+        Session second = CassandraClientProvider.getSession("credentials", config("ks", "new"), true).left;
+
+        assertNotSame(first, second);
+        PowerMockito.verifyPrivate(CassandraClientProvider.class, times(2))
+                .invoke("buildCluster", anyString(), any(CassandraDeepJobConfig.class), anyBoolean());
+
+        CassandraClientProvider.release(first);
+        CassandraClientProvider.release(second);
+    }
+
+    @Test
+    public void testClosedSessionIsNeverHandedOut() throws Exception {
+        stubCluster();
+        final CassandraDeepJobConfig config = config("ks", "pwd");
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            Session session = CassandraClientProvider.getSession("race", config, true).left;
+                            // the session is retained, so it cannot be closed while it is checked
+                            assertFalse(closed.contains(session));
+                            CassandraClientProvider.release(session);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertFalse(closed.isEmpty());
+    }
+
+    /**
+     * Makes the provider build a mock cluster connecting new sessions that record their close.
+     */
+    private Cluster stubCluster() throws Exception {
+        Cluster cluster = mock(Cluster.class);
+        when(cluster.connect(anyString())).thenAnswer(new Answer<Session>() {
+            @Override
+            public Session answer(InvocationOnMock invocation) {
+                return newSession();
+            }
+        });
+
+        PowerMockito.spy(CassandraClientProvider.class);
+        PowerMockito.doReturn(cluster).when(CassandraClientProvider.class, "buildCluster", anyString(),
+                any(CassandraDeepJobConfig.class), anyBoolean());
+        return cluster;
+    }
+
+    private Session newSession() {
+        return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Session.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                        case "closeAsync":
+                            closed.add((Session) proxy);
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "session@" + System.identityHashCode(proxy);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+                });
+    }
+
+    private CassandraDeepJobConfig config(String keyspace, String password) {
+        CassandraDeepJobConfig config = mock(CassandraDeepJobConfig.class);
+        when(config.getKeyspace()).thenReturn(keyspace);
+        when(config.getPassword()).thenReturn(password);
+        when(config.getCqlPort()).thenReturn(9042);
+        when(config.getSessionIdleTimeout()).thenReturn(0L);
+        return config;
+    }
+}
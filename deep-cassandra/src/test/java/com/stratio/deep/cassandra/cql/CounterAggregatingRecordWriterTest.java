@@ -0,0 +1,142 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.stratio.deep.commons.entity.Cell;
+import com.stratio.deep.commons.entity.Cells;
+
+@Test
+public class CounterAggregatingRecordWriterTest {
+
+    /**
+     * Records the written counters, summed per key, and checks that the rows written between two flushes increment
+     * the same counter columns, as the rows of a batch must.
+     */
+    private static class RecordingWriter extends CassandraRecordWriter {
+        private final Map<String, Long> counters = new HashMap<>();
+        private Set<String> batchColumns;
+        private int writes;
+        private int flushes;
+        private boolean closed;
+
+        @Override
+        public void write(Cells keys, Cells values) {
+            writes++;
+            Set<String> columns = new HashSet<>();
+            for (Cell cell : values.getCells()) {
+                columns.add(cell.getCellName());
+            }
+            if (batchColumns == null) {
+                batchColumns = columns;
+            }
+            assertEquals(columns, batchColumns, "rows of different columns written without a flush");
+
+            for (Cell cell : values.getCells()) {
+                String key = keys.getCellByName("id").getCellValue() + ":" + cell.getCellName();
+                Long current = counters.get(key);
+                counters.put(key, (current == null ? 0 : current) + (Long) cell.getCellValue());
+            }
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+            batchColumns = null;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static Cells keys(String id) {
+        return new Cells(Cell.create("id", id, true, false));
+    }
+
+    private static Cells increments(String column, long increment) {
+        return new Cells(Cell.create(column, increment));
+    }
+
+    @Test
+    public void testIncrementsAreSummedPerKey() {
+        RecordingWriter recordingWriter = new RecordingWriter();
+        CounterAggregatingRecordWriter writer = new CounterAggregatingRecordWriter(recordingWriter, 100);
+
+        for (int i = 0; i < 50; i++) {
+            writer.write(keys("a"), increments("hits", 1));
+            writer.write(keys("b"), increments("hits", 2));
+        }
+        writer.write(keys("b"), increments("errors", 3));
+        writer.close();
+
+        assertEquals(recordingWriter.writes, 2);
+        assertEquals(recordingWriter.counters.get("a:hits"), Long.valueOf(50));
+        assertNull(recordingWriter.counters.get("a:errors"));
+        assertEquals(recordingWriter.counters.get("b:hits"), Long.valueOf(100));
+        assertEquals(recordingWriter.counters.get("b:errors"), Long.valueOf(3));
+        assertTrue(recordingWriter.closed);
+    }
+
+    @Test
+    public void testPartialSumsAreSpilled() {
+        RecordingWriter recordingWriter = new RecordingWriter();
+        CounterAggregatingRecordWriter writer = new CounterAggregatingRecordWriter(recordingWriter, 2);
+
+        for (int i = 0; i < 10; i++) {
+            writer.write(keys("k" + (i % 4)), increments("hits", 1));
+        }
+        writer.close();
+
+        assertEquals(recordingWriter.writes, 10);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(recordingWriter.counters.get("k" + i + ":hits"), Long.valueOf(i < 2 ? 3 : 2));
+        }
+    }
+
+    @Test
+    public void testNewColumnAfterSpillFlushesWriter() {
+        RecordingWriter recordingWriter = new RecordingWriter();
+        CounterAggregatingRecordWriter writer = new CounterAggregatingRecordWriter(recordingWriter, 2);
+
+        writer.write(keys("a"), increments("hits", 1));
+        writer.write(keys("b"), increments("hits", 2));
+        writer.write(keys("a"), increments("errors", 3));
+        writer.write(keys("c"), increments("hits", 4));
+        writer.close();
+
+        assertEquals(recordingWriter.writes, 4);
+        assertEquals(recordingWriter.flushes, 1);
+        assertEquals(recordingWriter.counters.get("a:hits"), Long.valueOf(1));
+        assertEquals(recordingWriter.counters.get("a:errors"), Long.valueOf(3));
+        assertEquals(recordingWriter.counters.get("b:hits"), Long.valueOf(2));
+        assertEquals(recordingWriter.counters.get("c:hits"), Long.valueOf(4));
+        assertNull(recordingWriter.counters.get("b:errors"));
+        assertNull(recordingWriter.counters.get("c:errors"));
+    }
+}
@@ -1,35 +1,57 @@
 package com.stratio.deep.cassandra.cql;
 
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import org.json.simple.JSONValue;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.WriteType;
+import com.datastax.driver.core.exceptions.UnavailableException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
 import com.stratio.deep.cassandra.querybuilder.DefaultQueryBuilder;
+import com.stratio.deep.cassandra.querybuilder.IncreaseCountersQueryBuilder;
 import com.stratio.deep.commons.entity.Cell;
 import com.stratio.deep.commons.entity.Cells;
+import com.stratio.deep.commons.exception.DeepIOException;
 import com.stratio.deep.commons.utils.CellsUtils;
 import com.stratio.deep.commons.utils.Pair;
 
@@ -54,6 +76,9 @@ public class DeepCqlRecordWriterTest {
     @Mock
     private Session session;
 
+    @Mock
+    private ResultSetFuture future;
+
     @Test
     public void testNumWritesBasedOnBatchSize()
             throws IllegalAccessException, InstantiationException, InvocationTargetException {
@@ -65,6 +90,8 @@ public class DeepCqlRecordWriterTest {
         int batchSize = rand.nextInt(MAX_BATCH_SIZE) + 1;
 
         when(config.getBatchSize()).thenReturn(batchSize);
+        when(config.getWriteConcurrency()).thenReturn(2);
+        stubExecuteAsync();
         when(CassandraClientProvider.trySessionForLocation(anyString(), any(CassandraDeepJobConfig.class),
                 anyBoolean())).thenReturn(Pair.create(session, LOCALHOST));
         when(session.prepare(anyString())).thenReturn(preparedStatement);
@@ -90,8 +117,171 @@ public class DeepCqlRecordWriterTest {
         writer.close();
 
         int roundUpBatchExecutions = (int) Math.ceil((double)DATA_SIZE/batchSize);
-        verify(session, Mockito.times(roundUpBatchExecutions)).execute(any(Statement.class));
+        verify(session, Mockito.times(roundUpBatchExecutions)).executeAsync(any(Statement.class));
+
+    }
+
+    @Test
+    public void testBatchesGroupedByReplica()
+            throws IllegalAccessException, InstantiationException, InvocationTargetException {
+        // Static stubs
+        PowerMockito.mockStatic(CassandraClientProvider.class);
+
+        // Stubbing
+        PreparedStatement preparedStatement = Mockito.mock(PreparedStatement.class);
+        TableMetadata tableMetadata = Mockito.mock(TableMetadata.class);
+        ColumnMetadata idColumn = Mockito.mock(ColumnMetadata.class);
+        Cluster cluster = Mockito.mock(Cluster.class);
+        Metadata metadata = Mockito.mock(Metadata.class);
+        final Host evenHost = Mockito.mock(Host.class);
+        final Host oddHost = Mockito.mock(Host.class);
+
+        when(config.getBatchSize()).thenReturn(MAX_BATCH_SIZE);
+        when(config.getWriteConcurrency()).thenReturn(2);
+        when(config.getKeyspace()).thenReturn(CATALOG_NAME);
+        stubExecuteAsync();
+        when(config.fetchTableMetadata()).thenReturn(tableMetadata);
+        when(tableMetadata.getPartitionKey()).thenReturn(Arrays.asList(idColumn));
+        when(idColumn.getName()).thenReturn("id");
+        when(idColumn.getType()).thenReturn(DataType.bigint());
+        when(CassandraClientProvider.trySessionForLocation(anyString(), any(CassandraDeepJobConfig.class),
+                anyBoolean())).thenReturn(Pair.create(session, LOCALHOST));
+        when(session.prepare(anyString())).thenReturn(preparedStatement);
+        when(session.getCluster()).thenReturn(cluster);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        when(metadata.getReplicas(anyString(), any(ByteBuffer.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                ByteBuffer partitionKey = (ByteBuffer) invocation.getArguments()[1];
+                long id = partitionKey.getLong(partitionKey.position());
+                return Collections.singleton(id % 2 == 0 ? evenHost : oddHost);
+            }
+        });
+
+        DefaultQueryBuilder queryBuilder = new DefaultQueryBuilder();
+        queryBuilder.setCatalogName(CATALOG_NAME);
+        queryBuilder.setTableName(TABLE_NAME);
+
+        DeepCqlRecordWriter writer = new DeepCqlRecordWriter(config, queryBuilder);
+
+        for (Cells cells : prepareData()) {
+            Cell key = Cell.create("id", cells.getCellByName("id").getCellValue(), true, false);
+            List<Cell> values = Lists.newArrayList(Iterables.filter(cells, new Predicate<Cell>() {
+                @Override
+                public boolean apply(Cell cell) {
+                    return !"id".equals(cell.getCellName());
+                }
+            }));
+
+            writer.write(new Cells(key), new Cells(values.toArray(new Cell[values.size()])));
+        }
+
+        writer.close();
+
+        // one batch for the even ids, one for the odd ones
+        verify(session, Mockito.times(2)).executeAsync(any(Statement.class));
+    }
+
+    @Test
+    public void testFailedWriteIsRetriedAndFailsTheWriter() throws Exception {
+        // Static stubs
+        PowerMockito.mockStatic(CassandraClientProvider.class);
+
+        // Stubbing
+        PreparedStatement preparedStatement = Mockito.mock(PreparedStatement.class);
+
+        when(config.getBatchSize()).thenReturn(MAX_BATCH_SIZE);
+        when(config.getWriteConcurrency()).thenReturn(2);
+        when(config.getWriteRetries()).thenReturn(2);
+        when(CassandraClientProvider.trySessionForLocation(anyString(), any(CassandraDeepJobConfig.class),
+                anyBoolean())).thenReturn(Pair.create(session, LOCALHOST));
+        when(session.prepare(anyString())).thenReturn(preparedStatement);
+        stubExecuteAsync();
+        when(future.get()).thenThrow(new ExecutionException(
+                new WriteTimeoutException(ConsistencyLevel.ONE, WriteType.UNLOGGED_BATCH, 0, 1)));
+
+        DefaultQueryBuilder queryBuilder = new DefaultQueryBuilder();
+        queryBuilder.setCatalogName(CATALOG_NAME);
+        queryBuilder.setTableName(TABLE_NAME);
+
+        DeepCqlRecordWriter writer = new DeepCqlRecordWriter(config, queryBuilder);
+
+        Cells cells = prepareData().get(0);
+        writer.write(new Cells(cells.getCellByName("id")), new Cells(cells.getCellByName("name")));
+
+        try {
+            writer.close();
+            fail("A failed batch must fail the writer");
+        } catch (DeepIOException e) {
+            // the first attempt and two retries
+            verify(session, Mockito.times(3)).executeAsync(any(Statement.class));
+        }
+    }
+
+    @Test
+    public void testTimedOutCounterBatchIsNotRetried() throws Exception {
+        DeepCqlRecordWriter writer = counterWriter(
+                new WriteTimeoutException(ConsistencyLevel.ONE, WriteType.COUNTER, 0, 1));
+        writer.write(new Cells(Cell.create("id", 1L, true, false)), new Cells(Cell.create("hits", 1L)));
+
+        try {
+            writer.close();
+            fail("A timed out counter batch must fail the writer");
+        } catch (DeepIOException e) {
+            verify(session, Mockito.times(1)).executeAsync(any(Statement.class));
+        }
+    }
+
+    @Test
+    public void testUnavailableCounterBatchIsRetried() throws Exception {
+        DeepCqlRecordWriter writer = counterWriter(new UnavailableException(ConsistencyLevel.ONE, 1, 0));
+        writer.write(new Cells(Cell.create("id", 1L, true, false)), new Cells(Cell.create("hits", 1L)));
+
+        try {
+            writer.close();
+            fail("A failed batch must fail the writer");
+        } catch (DeepIOException e) {
+            // the first attempt and two retries
+            verify(session, Mockito.times(3)).executeAsync(any(Statement.class));
+        }
+    }
+
+    /**
+     * Returns a counter writer whose batches fail with the given exception.
+     */
+    private DeepCqlRecordWriter counterWriter(Exception failure) throws Exception {
+        PowerMockito.mockStatic(CassandraClientProvider.class);
+
+        PreparedStatement preparedStatement = Mockito.mock(PreparedStatement.class);
+
+        when(config.getBatchSize()).thenReturn(MAX_BATCH_SIZE);
+        when(config.getWriteConcurrency()).thenReturn(2);
+        when(config.getWriteRetries()).thenReturn(2);
+        when(CassandraClientProvider.trySessionForLocation(anyString(), any(CassandraDeepJobConfig.class),
+                anyBoolean())).thenReturn(Pair.create(session, LOCALHOST));
+        when(session.prepare(anyString())).thenReturn(preparedStatement);
+        stubExecuteAsync();
+        when(future.get()).thenThrow(new ExecutionException(failure));
+
+        IncreaseCountersQueryBuilder queryBuilder = new IncreaseCountersQueryBuilder();
+        queryBuilder.setCatalogName(CATALOG_NAME);
+        queryBuilder.setTableName(TABLE_NAME);
+
+        return new DeepCqlRecordWriter(config, queryBuilder);
+    }
 
+    /**
+     * Makes every asynchronous execution complete immediately with the outcome of {@code future.get()}.
+     */
+    private void stubExecuteAsync() {
+        when(session.executeAsync(any(Statement.class))).thenReturn(future);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(future).addListener(any(Runnable.class), any(Executor.class));
     }
 
     private static List<Cells> prepareData() throws IllegalAccessException, InvocationTargetException,
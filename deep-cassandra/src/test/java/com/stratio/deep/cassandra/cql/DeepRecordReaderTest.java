@@ -4,6 +4,8 @@
 package com.stratio.deep.cassandra.cql;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -24,9 +26,12 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
+import com.datastax.driver.core.ColumnDefinitions;
 import com.datastax.driver.core.ColumnMetadata;
 import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SimpleStatement;
 import com.datastax.driver.core.Statement;
@@ -72,8 +77,82 @@ public class DeepRecordReaderTest {
     @Mock
     private ResultSet resultSet;
 
+    @Mock
+    private ResultSetFuture resultSetFuture;
+
+    @Mock
+    private ColumnDefinitions columnDefinitions;
+
+    @Mock
+    private Row row;
+
     @Test
     public void testEqualsInForDeepRecordReader() {
+        stubEqualsInQuery();
+
+        Object[] values = { 1L, Arrays.asList(1L, 4L) };
+        SimpleStatement stmt = new SimpleStatement(
+                "SELECT \"col1\",\"col2\",\"col3\" FROM \"TABLENAME\" WHERE col1 = ? AND col2 IN ?", values);
+
+        DeepRecordReader recordReader = new DeepRecordReader(config, tokenRange);
+
+        // TODO How do we check two statements are the same?
+        verify(session, times(1)).executeAsync(Matchers.argThat(new StatementMatcher(stmt)));
+    }
+
+    @Test
+    public void testNextPageIsFetchedBelowPrefetchThreshold() {
+        stubEqualsInQuery();
+        stubRows(3);
+        when(config.getPrefetchDepth()).thenReturn(2);
+        when(resultSet.isFullyFetched()).thenReturn(false);
+        // the threshold is prefetchDepth * pageSize buffered rows
+        when(resultSet.getAvailableWithoutFetching()).thenReturn(2 * PAGE_SIZE_CONSTANT + 1,
+                2 * PAGE_SIZE_CONSTANT + 1, 2 * PAGE_SIZE_CONSTANT);
+
+        DeepRecordReader recordReader = new DeepRecordReader(config, tokenRange);
+
+        recordReader.nextRow();
+        recordReader.nextRow();
+        verify(resultSet, never()).fetchMoreResults();
+
+        recordReader.nextRow();
+        verify(resultSet, times(1)).fetchMoreResults();
+    }
+
+    @Test
+    public void testFullyFetchedResultSetIsNotFetched() {
+        stubEqualsInQuery();
+        stubRows(3);
+        when(config.getPrefetchDepth()).thenReturn(2);
+        when(resultSet.isFullyFetched()).thenReturn(true);
+        when(resultSet.getAvailableWithoutFetching()).thenReturn(2, 1, 0);
+
+        DeepRecordReader recordReader = new DeepRecordReader(config, tokenRange);
+
+        for (int i = 0; i < 3; i++) {
+            recordReader.nextRow();
+        }
+        verify(resultSet, never()).fetchMoreResults();
+    }
+
+    /**
+     * Returns the given number of rows from the result set.
+     */
+    private void stubRows(int count) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(row);
+        }
+        when(resultSet.iterator()).thenReturn(rows.iterator());
+        when(resultSet.getColumnDefinitions()).thenReturn(columnDefinitions);
+        when(columnDefinitions.getIndexOf(anyString())).thenReturn(0);
+    }
+
+    /**
+     * Stubs a reader of an EQUALS_IN query returning the mocked result set.
+     */
+    private void stubEqualsInQuery() {
 
         // Static stubs
         PowerMockito.mockStatic(CassandraClientProvider.class);
@@ -107,15 +186,8 @@ public class DeepRecordReaderTest {
                 Arrays.asList((Serializable) 1L, (Serializable) 2L, (Serializable) 3L, (Serializable) 4L,
                         (Serializable) 5L));
 
-        Object[] values = { 1L, Arrays.asList(1L, 4L) };
-        SimpleStatement stmt = new SimpleStatement(
-                "SELECT \"col1\",\"col2\",\"col3\" FROM \"TABLENAME\" WHERE col1 = ? AND col2 IN ?", values);
-        when(session.execute(any(Statement.class))).thenReturn(resultSet);
-
-        DeepRecordReader recordReader = new DeepRecordReader(config, tokenRange);
-
-        // TODO How do we check two statements are the same?
-        verify(session, times(1)).execute(Matchers.argThat(new StatementMatcher(stmt)));
+        when(session.executeAsync(any(Statement.class))).thenReturn(resultSetFuture);
+        when(resultSetFuture.getUninterruptibly()).thenReturn(resultSet);
     }
 
     class StatementMatcher extends BaseMatcher<SimpleStatement> {
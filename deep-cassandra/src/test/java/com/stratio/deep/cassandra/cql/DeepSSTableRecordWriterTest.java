@@ -0,0 +1,227 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.Schema;
+import org.apache.cassandra.db.OnDiskAtom;
+import org.apache.cassandra.db.columniterator.OnDiskAtomIterator;
+import org.apache.cassandra.db.compaction.ICompactionScanner;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.SSTable;
+import org.apache.cassandra.io.sstable.SSTableReader;
+import org.apache.cassandra.io.util.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.TableMetadata;
+import com.stratio.deep.cassandra.config.CassandraDeepJobConfig;
+import com.stratio.deep.cassandra.querybuilder.IncreaseCountersQueryBuilder;
+import com.stratio.deep.commons.entity.Cell;
+import com.stratio.deep.commons.entity.Cells;
+import com.stratio.deep.commons.exception.DeepIOException;
+
+@Test
+public class DeepSSTableRecordWriterTest {
+
+    private static final String SCHEMA = "CREATE TABLE deep_ks.words (word text PRIMARY KEY, count int)";
+
+    private static final String BOOKS_SCHEMA =
+            "CREATE TABLE deep_books.books (title text PRIMARY KEY, author text, year int)";
+
+    private File bulkLoadDirectory;
+
+    @BeforeMethod
+    public void createBulkLoadDirectory() throws Exception {
+        bulkLoadDirectory = Files.createTempDirectory("deep-bulk-load-test").toFile();
+    }
+
+    @AfterMethod
+    public void deleteBulkLoadDirectory() {
+        FileUtils.deleteRecursive(bulkLoadDirectory);
+    }
+
+    @Test
+    public void testSSTablesAreLeftForOfflineLoading() {
+        DeepSSTableRecordWriter writer = new DeepSSTableRecordWriter(config(false));
+        for (int i = 0; i < 10; i++) {
+            writer.write(new Cells(Cell.create("word", "word" + i, true, false)), new Cells(Cell.create("count", i)));
+        }
+        writer.close();
+
+        assertTrue(dataFiles("deep_ks", "words").length > 0, "no SSTable written");
+    }
+
+    @Test
+    public void testRowsOnlyWriteTheirOwnColumns() throws Exception {
+        DeepSSTableRecordWriter writer = new DeepSSTableRecordWriter(config(BOOKS_SCHEMA, "deep_books", "books", false));
+        writer.write(new Cells(Cell.create("title", "Quijote", true, false)),
+                new Cells(Cell.create("author", "Cervantes")));
+        writer.write(new Cells(Cell.create("title", "Hamlet", true, false)),
+                new Cells(Cell.create("year", 1603)));
+        writer.write(new Cells(Cell.create("title", "Ulysses", true, false)),
+                new Cells(Cell.create("year", 1922), Cell.create("author", "Joyce")));
+        writer.write(new Cells(Cell.create("title", "Emma", true, false)),
+                new Cells(Cell.create("author", "Austen"), Cell.create("year", 1815)));
+        writer.close();
+
+        Map<String, Map<String, Object>> rows = readRows("deep_books", "books");
+
+        assertEquals(rows.size(), 4);
+        assertEquals(rows.get("Quijote"), columns("author", "Cervantes"));
+        assertEquals(rows.get("Hamlet"), columns("year", 1603));
+        assertEquals(rows.get("Ulysses"), columns("author", "Joyce", "year", 1922));
+        assertEquals(rows.get("Emma"), columns("author", "Austen", "year", 1815));
+    }
+
+    @Test
+    public void testSSTablesAreDeletedWhenStreamingFails() {
+        DeepSSTableRecordWriter writer = new DeepSSTableRecordWriter(config(true));
+        writer.write(new Cells(Cell.create("word", "word", true, false)), new Cells(Cell.create("count", 1)));
+
+        try {
+            writer.close();
+            fail("streaming to an unreachable cluster should fail");
+        } catch (DeepIOException e) {
+            // expected
+        }
+
+        assertEquals(bulkLoadDirectory.listFiles().length, 0);
+    }
+
+    @Test
+    public void testUnusedWriterDeletesItsDirectory() {
+        new DeepSSTableRecordWriter(config(false)).close();
+
+        assertEquals(bulkLoadDirectory.listFiles().length, 0);
+    }
+
+    @Test
+    public void testCountersCannotBeBulkLoaded() {
+        CassandraDeepJobConfig<?> config = config(true);
+        when(config.isBulkLoad()).thenReturn(true);
+
+        try {
+            CassandraRecordWriter.newWriter(config, new IncreaseCountersQueryBuilder());
+            fail("counters cannot be written to SSTables");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        assertEquals(bulkLoadDirectory.listFiles().length, 0);
+    }
+
+    /**
+     * Returns the SSTable data files written for the given table.
+     */
+    private File[] dataFiles(String keyspace, String table) {
+        File[] writerDirectories = bulkLoadDirectory.listFiles();
+        assertEquals(writerDirectories.length, 1);
+        File tableDirectory = new File(new File(writerDirectories[0], keyspace), table);
+        File[] dataFiles = tableDirectory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith("-Data.db");
+            }
+        });
+        assertTrue(dataFiles != null, "no SSTable written to " + tableDirectory);
+        return dataFiles;
+    }
+
+    /**
+     * Reads back the rows written for the given table, by partition key, failing on any deleted cell.
+     */
+    private Map<String, Map<String, Object>> readRows(String keyspace, String table) throws Exception {
+        CFMetaData metadata = Schema.instance.getCFMetaData(keyspace, table);
+        Map<String, Map<String, Object>> rows = new HashMap<>();
+
+        for (File dataFile : dataFiles(keyspace, table)) {
+            Descriptor descriptor = Descriptor.fromFilename(dataFile.getAbsolutePath());
+            SSTableReader reader = SSTableReader.openForBatch(descriptor, SSTable.componentsFor(descriptor), metadata,
+                    new Murmur3Partitioner());
+            try (ICompactionScanner scanner = reader.getScanner()) {
+                while (scanner.hasNext()) {
+                    OnDiskAtomIterator row = scanner.next();
+                    String key = UTF8Type.instance.compose(row.getKey().getKey());
+                    Map<String, Object> columns = new HashMap<>();
+                    while (row.hasNext()) {
+                        OnDiskAtom atom = row.next();
+                        assertTrue(atom instanceof org.apache.cassandra.db.Cell, "unexpected tombstone in " + key);
+                        org.apache.cassandra.db.Cell cell = (org.apache.cassandra.db.Cell) atom;
+                        assertTrue(cell.isLive(), "unexpected deleted cell in " + key);
+                        ColumnDefinition definition = metadata.getColumnDefinition(cell.name());
+                        if (definition != null) {
+                            columns.put(definition.name.toString(), definition.type.compose(cell.value()));
+                        }
+                    }
+                    assertTrue(rows.put(key, columns) == null, "duplicated row " + key);
+                }
+            } finally {
+                reader.releaseReference();
+            }
+        }
+        return rows;
+    }
+
+    private static Map<String, Object> columns(Object... namesAndValues) {
+        Map<String, Object> columns = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            columns.put((String) namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return columns;
+    }
+
+    private CassandraDeepJobConfig<?> config(boolean stream) {
+        return config(SCHEMA, "deep_ks", "words", stream);
+    }
+
+    /**
+     * Returns a configuration of a table with the given schema, in a cluster nobody listens to.
+     */
+    private CassandraDeepJobConfig<?> config(String schema, String keyspace, String table, boolean stream) {
+        TableMetadata tableMetadata = mock(TableMetadata.class);
+        when(tableMetadata.asCQLQuery()).thenReturn(schema);
+
+        CassandraDeepJobConfig<?> config = mock(CassandraDeepJobConfig.class);
+        when(config.fetchTableMetadata()).thenReturn(tableMetadata);
+        when(config.getKeyspace()).thenReturn(keyspace);
+        when(config.getCatalog()).thenReturn(keyspace);
+        when(config.getTable()).thenReturn(table);
+        when(config.getPartitionerClassName()).thenReturn("org.apache.cassandra.dht.Murmur3Partitioner");
+        when(config.getBulkLoadDirectory()).thenReturn(bulkLoadDirectory.getAbsolutePath());
+        when(config.isBulkLoadStream()).thenReturn(stream);
+        when(config.getHost()).thenReturn("127.0.0.1");
+        when(config.getRpcPort()).thenReturn(1);
+        return config;
+    }
+}
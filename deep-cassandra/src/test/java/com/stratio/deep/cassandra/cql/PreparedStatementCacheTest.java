@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.stratio.deep.commons.exception.DeepIOException;
+
+@Test
+public class PreparedStatementCacheTest {
+
+    private static final String QUERY = "SELECT * FROM ks.table WHERE id = ?";
+
+    /**
+     * Session preparing a new statement on each call, counting the calls. Proxies are used rather than mocks so no
+     * mocking framework keeps a reference to them.
+     */
+    private static final class CountingSession implements InvocationHandler {
+
+        private final AtomicInteger prepares = new AtomicInteger();
+
+        private final boolean failing;
+
+        private CountingSession(boolean failing) {
+            this.failing = failing;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+            case "prepare":
+                if (failing) {
+                    throw new IllegalStateException("Unknown table");
+                }
+                prepares.incrementAndGet();
+                return newProxy(PreparedStatement.class, new CountingSession(false));
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return method.getDeclaringClass().getSimpleName() + "@" + System.identityHashCode(proxy);
+            default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    public void testPreparesOncePerQueryAndSession() {
+        CountingSession first = new CountingSession(false);
+        CountingSession second = new CountingSession(false);
+        Session firstSession = newProxy(Session.class, first);
+        Session secondSession = newProxy(Session.class, second);
+
+        PreparedStatement statement = PreparedStatementCache.prepare(firstSession, QUERY);
+
+        assertSame(PreparedStatementCache.prepare(firstSession, QUERY), statement);
+        assertNotSame(PreparedStatementCache.prepare(firstSession, QUERY + " LIMIT 1"), statement);
+        assertNotSame(PreparedStatementCache.prepare(secondSession, QUERY), statement);
+        assertSame(PreparedStatementCache.prepare(secondSession, QUERY),
+                PreparedStatementCache.prepare(secondSession, QUERY));
+
+        assertEquals(first.prepares.get(), 2);
+        assertEquals(second.prepares.get(), 1);
+    }
+
+    public void testLimitsStatementsPerSession() {
+        CountingSession handler = new CountingSession(false);
+        Session session = newProxy(Session.class, handler);
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 200; i++) {
+                PreparedStatementCache.prepare(session, QUERY + " AND value = " + i);
+            }
+        }
+
+        // at most 100 statements are kept, so at least 100 of the second round had to be prepared again
+        assertTrue(handler.prepares.get() >= 300, "prepared " + handler.prepares.get() + " statements");
+    }
+
+    public void testDoesNotRetainClosedSessions() throws InterruptedException {
+        Session session = newProxy(Session.class, new CountingSession(false));
+        PreparedStatementCache.prepare(session, QUERY);
+
+        WeakReference<Session> reference = new WeakReference<>(session);
+        session = null;
+
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(reference.get());
+    }
+
+    public void testFailedPrepareIsReported() {
+        Session session = newProxy(Session.class, new CountingSession(true));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                PreparedStatementCache.prepare(session, QUERY);
+                fail("The query should not be prepared");
+            } catch (DeepIOException e) {
+                assertEquals(e.getCause().getMessage(), "Unknown table");
+            }
+        }
+    }
+}
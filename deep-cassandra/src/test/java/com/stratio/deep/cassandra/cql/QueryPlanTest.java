@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.TableMetadata;
+import com.stratio.deep.cassandra.cql.QueryPlan.AccessPath;
+import com.stratio.deep.commons.filter.Filter;
+
+@Test
+public class QueryPlanTest {
+
+    private TableMetadata table;
+
+    @BeforeMethod
+    public void setUp() {
+        ColumnMetadata id = column("id", null);
+        ColumnMetadata ts = column("ts", null);
+        ColumnMetadata name = column("name", index(false));
+        ColumnMetadata age = column("age", null);
+
+        table = mock(TableMetadata.class);
+        when(table.getName()).thenReturn("users");
+        when(table.getPartitionKey()).thenReturn(Arrays.asList(id));
+        when(table.getClusteringColumns()).thenReturn(Arrays.asList(ts));
+        when(table.getColumns()).thenReturn(Arrays.asList(id, ts, name, age));
+        when(table.getColumn("\"id\"")).thenReturn(id);
+        when(table.getColumn("\"ts\"")).thenReturn(ts);
+        when(table.getColumn("\"name\"")).thenReturn(name);
+        when(table.getColumn("\"age\"")).thenReturn(age);
+    }
+
+    @Test
+    public void testTokenRangeScan() {
+        Filter byName = new Filter("name").is("john");
+        Filter byAge = new Filter("age").greaterThan(18);
+        Filter byTs = new Filter("ts").greaterThanEquals(100L);
+
+        QueryPlan plan = new QueryPlan(table, new Filter[] { byName, byAge, byTs }, null);
+
+        assertEquals(plan.getAccessPaths().get(byName), AccessPath.SECONDARY_INDEX);
+        assertEquals(plan.getAccessPaths().get(byAge), AccessPath.RESIDUAL);
+        assertEquals(plan.getAccessPaths().get(byTs), AccessPath.CLUSTERING_PREFIX);
+        assertFalse(plan.isFilteredByKey());
+        // the clustering slice is applied to every partition of the range
+        assertTrue(plan.isAllowFiltering());
+        assertEquals(plan.getResidualColumns(), Collections.singleton("age"));
+        assertEquals(plan.getServerFilters().length, 2);
+    }
+
+    @Test
+    public void testSingleIndexNeedsNoFiltering() {
+        Filter byName = new Filter("name").is("john");
+        Filter byOtherName = new Filter("name").notEquals("jane");
+
+        QueryPlan plan = new QueryPlan(table, new Filter[] { byName, byOtherName }, null);
+
+        assertEquals(plan.getAccessPaths().get(byName), AccessPath.SECONDARY_INDEX);
+        assertEquals(plan.getAccessPaths().get(byOtherName), AccessPath.RESIDUAL);
+        assertFalse(plan.isAllowFiltering());
+    }
+
+    @Test
+    public void testPartitionKeyLookup() {
+        Filter byId = new Filter("id").is(1);
+        Filter byTs = new Filter("ts").lessThan(100L);
+
+        QueryPlan plan = new QueryPlan(table, new Filter[] { byId, byTs }, null);
+
+        assertEquals(plan.getAccessPaths().get(byId), AccessPath.PARTITION_KEY);
+        assertTrue(plan.isFilteredByKey());
+        assertFalse(plan.isAllowFiltering());
+        assertTrue(plan.getResidualFilters().isEmpty());
+    }
+
+    @Test
+    public void testAccepts() {
+        assertTrue(QueryPlan.accepts(new Filter("age").greaterThan(18), 19L));
+        assertFalse(QueryPlan.accepts(new Filter("age").greaterThan(18), 18));
+        assertTrue(QueryPlan.accepts(new Filter("age").is(18L), 18));
+        assertTrue(QueryPlan.accepts(new Filter("name").notEquals("john"), "jane"));
+        assertFalse(QueryPlan.accepts(new Filter("name").notEquals("john"), null));
+        assertTrue(QueryPlan.accepts(new Filter("age").in(new ArrayList<Serializable>(Arrays.asList(1, 2))), 2L));
+        assertFalse(QueryPlan.accepts(new Filter("age").in(new ArrayList<Serializable>(Arrays.asList(1, 2))), 3L));
+    }
+
+    @Test
+    public void testAcceptsNonFiniteFloatingPointValues() {
+        // NaN is greater than any other value, as Cassandra orders doubles
+        assertTrue(QueryPlan.accepts(new Filter("score").greaterThan(Double.POSITIVE_INFINITY), Double.NaN));
+        assertFalse(QueryPlan.accepts(new Filter("score").lessThan(1.5), Double.NaN));
+        assertTrue(QueryPlan.accepts(new Filter("score").notEquals(1.5), Double.NaN));
+        assertTrue(QueryPlan.accepts(new Filter("score").is(Double.NaN), Float.NaN));
+        assertTrue(QueryPlan.accepts(new Filter("score").greaterThan(1.5), Double.POSITIVE_INFINITY));
+        assertTrue(QueryPlan.accepts(new Filter("score").lessThan(1), Float.NEGATIVE_INFINITY));
+        assertFalse(QueryPlan.accepts(new Filter("score").is(Double.POSITIVE_INFINITY), Double.NEGATIVE_INFINITY));
+        assertTrue(QueryPlan.accepts(new Filter("score").lessThan(Double.POSITIVE_INFINITY), 10L));
+        assertTrue(QueryPlan.accepts(new Filter("score").is(2.5f), 2.5));
+    }
+
+    private static ColumnMetadata column(String name, ColumnMetadata.IndexMetadata index) {
+        ColumnMetadata column = mock(ColumnMetadata.class);
+        when(column.getName()).thenReturn(name);
+        when(column.getType()).thenReturn(DataType.bigint());
+        when(column.getIndex()).thenReturn(index);
+        return column;
+    }
+
+    private static ColumnMetadata.IndexMetadata index(boolean custom) {
+        ColumnMetadata.IndexMetadata index = mock(ColumnMetadata.IndexMetadata.class);
+        when(index.isCustomIndex()).thenReturn(custom);
+        return index;
+    }
+}
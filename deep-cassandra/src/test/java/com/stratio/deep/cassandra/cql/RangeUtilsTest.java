@@ -23,15 +23,21 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.Serializable;
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nullable;
 
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.Int32Type;
 import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Token;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
@@ -45,6 +51,9 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
+import com.stratio.deep.cassandra.filter.value.EqualsInValue;
+import com.stratio.deep.cassandra.util.CassandraUtils;
+import com.stratio.deep.commons.rdd.DeepTokenRange;
 import com.stratio.deep.commons.utils.Pair;
 
 @Test
@@ -382,4 +391,91 @@ public class RangeUtilsTest {
         assertTrue(elementsEquals);
     }
 
+    @Test
+    public void testResizeRanges() {
+        List<String> replicasA = Arrays.asList("hostA", "hostB");
+        List<String> replicasB = Arrays.asList("hostB", "hostC");
+        List<String> replicasC = Arrays.asList("hostC", "hostD");
+
+        DeepTokenRange small1 = new DeepTokenRange(-1000L, -500L, replicasA);
+        DeepTokenRange small2 = new DeepTokenRange(-500L, 0L, replicasB);
+        DeepTokenRange small3 = new DeepTokenRange(0L, 500L, replicasC);
+        DeepTokenRange big = new DeepTokenRange(500L, 1000L, replicasC);
+        DeepTokenRange unknown = new DeepTokenRange(1000L, 1500L, replicasC);
+
+        Map<DeepTokenRange, Long> sizes = new HashMap<>();
+        sizes.put(new DeepTokenRange(-1000L, -500L), 10L);
+        sizes.put(new DeepTokenRange(-500L, 0L), 20L);
+        sizes.put(new DeepTokenRange(0L, 500L), 30L);
+        sizes.put(new DeepTokenRange(500L, 1000L), 300L);
+
+        List<DeepTokenRange> resized = RangeUtils.resizeRanges(Arrays.asList(small1, small2, small3, big, unknown),
+                sizes, new Murmur3Partitioner(), 100L);
+
+        // small1 and small2 share hostB, small3 does not share any replica with them
+        assertEquals(resized.size(), 7);
+        assertEquals(resized.get(0), new DeepTokenRange(-1000L, 0L));
+        assertEquals(resized.get(0).getReplicas(), Arrays.asList("hostB"));
+        assertEquals(resized.get(1), small3);
+
+        // big is bisected to 4 pieces of at most 100 bytes
+        assertEquals(resized.get(2).getStartToken(), 500L);
+        assertEquals(resized.get(5).getEndToken(), 1000L);
+        for (int i = 2; i < 5; i++) {
+            assertEquals(resized.get(i).getEndToken(), resized.get(i + 1).getStartToken());
+        }
+
+        assertEquals(resized.get(6), unknown);
+    }
+
+    @Test
+    public void testBisect() {
+        DeepTokenRange range = new DeepTokenRange(-1000L, 1000L, Arrays.asList("hostA"));
+
+        assertEquals(RangeUtils.bisect(range, new Murmur3Partitioner(), 1), Arrays.asList(range));
+
+        List<DeepTokenRange> pieces = RangeUtils.bisect(range, new Murmur3Partitioner(), 8);
+        assertEquals(pieces.size(), 8);
+        assertEquals(pieces.get(0).getStartToken(), -1000L);
+        assertEquals(pieces.get(7).getEndToken(), 1000L);
+        for (int i = 0; i < 7; i++) {
+            assertEquals(pieces.get(i).getEndToken(), pieces.get(i + 1).getStartToken());
+        }
+    }
+
+    @Test
+    public void testAssignEqualsInValues() {
+        Murmur3Partitioner partitioner = new Murmur3Partitioner();
+        List<Serializable> inValues = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            inValues.add(i);
+        }
+
+        // the last range wraps around the ring, the second one owns no value
+        List<DeepTokenRange> splits = new ArrayList<>();
+        splits.add(new DeepTokenRange(-4000000000000000000L, 0L, Arrays.asList("hostA")));
+        splits.add(new DeepTokenRange(0L, 1L, Arrays.asList("hostB")));
+        splits.add(new DeepTokenRange(1L, -4000000000000000000L, Arrays.asList("hostC")));
+
+        List<AbstractType<?>> keyTypes = new ArrayList<>();
+        keyTypes.add(Int32Type.instance);
+
+        List<DeepTokenRange> assigned = RangeUtils.assignEqualsInValues(splits,
+                new EqualsInValue().inField("id").inValues(inValues), keyTypes, partitioner);
+
+        assertEquals(assigned.size(), 2);
+        assertEquals(assigned.get(0).getStartToken(), -4000000000000000000L);
+        assertEquals(assigned.get(1).getStartToken(), 1L);
+        assertEquals(assigned.get(1).getReplicas(), Arrays.asList("hostC"));
+
+        int total = 0;
+        for (DeepTokenRange range : assigned) {
+            for (Serializable value : ((EqualsInTokenRange) range).getInValues()) {
+                assertTrue(CassandraUtils.isTokenIncludedInRange(range,
+                        (Token) partitioner.getToken(Int32Type.instance.decompose((Integer) value))));
+                total++;
+            }
+        }
+        assertEquals(total, inValues.size());
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.cql;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.AbstractIterator;
+import com.stratio.deep.commons.exception.DeepIOException;
+import com.stratio.deep.commons.rdd.DeepTokenRange;
+
+@Test
+public class SubRangeIteratorTest {
+
+    /**
+     * Reads the given number of rows per sub-range, named after the range start token and the row position.
+     */
+    private static class CountingIterator extends DeepRecordReader.SubRangeIterator {
+        private final int rowsPerRange;
+
+        CountingIterator(List<DeepTokenRange> ranges, int concurrency, int capacity, int rowsPerRange) {
+            super(ranges, concurrency, capacity);
+            this.rowsPerRange = rowsPerRange;
+        }
+
+        @Override
+        protected Iterator<ByteBuffer[]> read(DeepTokenRange range) {
+            return rows(range.getStartToken() + "-", rowsPerRange, null);
+        }
+    }
+
+    private static List<DeepTokenRange> ranges(int count) {
+        List<DeepTokenRange> ranges = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            ranges.add(new DeepTokenRange(i * 10, i * 10 + 10, Arrays.asList("localhost")));
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns the given number of rows with the given prefix, counting down the latch once the second row is asked
+     * for.
+     */
+    private static Iterator<ByteBuffer[]> rows(final String prefix, final int count, final CountDownLatch second) {
+        return new AbstractIterator<ByteBuffer[]>() {
+            private int position;
+
+            @Override
+            protected ByteBuffer[] computeNext() {
+                if (position == count) {
+                    return endOfData();
+                }
+                if (++position == 2 && second != null) {
+                    second.countDown();
+                }
+                return new ByteBuffer[] { ByteBuffer.wrap((prefix + position).getBytes(StandardCharsets.UTF_8)) };
+            }
+        };
+    }
+
+    private static Set<String> names(Iterator<ByteBuffer[]> rows) {
+        Set<String> names = new HashSet<>();
+        while (rows.hasNext()) {
+            names.add(StandardCharsets.UTF_8.decode(rows.next()[0]).toString());
+        }
+        return names;
+    }
+
+    public void testReadsEverySubRange() {
+        CountingIterator iterator = new CountingIterator(ranges(8), 3, 2, 3);
+
+        Set<String> names = names(iterator);
+
+        assertEquals(names.size(), 24);
+        assertTrue(names.contains("0-1"));
+        assertTrue(names.contains("70-3"));
+    }
+
+    @Test(timeOut = 10000)
+    public void testFailureIsReportedWhenQueueIsFull() {
+        final CountDownLatch queueFull = new CountDownLatch(1);
+        final DeepTokenRange failing = new DeepTokenRange(100L, 110L, Arrays.asList("localhost"));
+
+        DeepRecordReader.SubRangeIterator iterator = new DeepRecordReader.SubRangeIterator(
+                Arrays.asList(new DeepTokenRange(0L, 10L, Arrays.asList("localhost")), failing), 2, 1) {
+            @Override
+            protected Iterator<ByteBuffer[]> read(DeepTokenRange range) {
+                if (range != failing) {
+                    return rows("0-", 100, queueFull);
+                }
+                try {
+                    // the other worker has filled the queue once it produces its second row
+                    queueFull.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("Read timeout");
+            }
+        };
+
+        try {
+            names(iterator);
+            fail("The failure of the sub-range should be reported");
+        } catch (DeepIOException e) {
+            assertEquals(e.getCause().getMessage(), "Read timeout");
+        }
+    }
+}
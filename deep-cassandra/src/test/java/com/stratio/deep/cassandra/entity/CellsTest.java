@@ -658,4 +658,35 @@ public class CellsTest {
         assertFalse(cells.replaceByName("secondTable", Cell.create("response_code", 48372)));
         assertFalse(cells.replaceByName("secondTable", Cell.create("no_existent", 48372)));
     }
+
+    @Test
+    public void testGetCellByNameAfterModification() {
+        Cells cells = new Cells("defaultTable",
+                Cell.create("domain_name", "abc.es"),
+                Cell.create("url", "http://abc"),
+                Cell.create("response_time", 432));
+
+        assertEquals(cells.getCellByName("url").getCellValue(), "http://abc");
+
+        cells.add(Cell.create("response_code", 200));
+        assertEquals(cells.getCellByName("response_code").getCellValue(), 200);
+
+        assertTrue(cells.replaceByName(Cell.create("url", "http://def")));
+        assertEquals(cells.getCellByName("url").getCellValue(), "http://def");
+        assertEquals(cells.getCellByName("defaultTable", "url").getCellValue(), "http://def");
+
+        assertTrue(cells.remove("domain_name"));
+        assertNull(cells.getCellByName("domain_name"));
+        assertEquals(cells.size(), 3);
+
+        cells.add("secondTable", Cell.create("domain_name", "def.es"));
+        assertEquals(cells.getCellByName("domain_name").getCellValue(), "def.es");
+        assertNull(cells.getCellByName("defaultTable", "domain_name"));
+
+        cells.add(Cell.create("url", "http://ghi"));
+        assertTrue(cells.remove("url"));
+        assertEquals(cells.getCellByName("url").getCellValue(), "http://ghi");
+        assertTrue(cells.remove("url"));
+        assertNull(cells.getCellByName("url"));
+    }
 }
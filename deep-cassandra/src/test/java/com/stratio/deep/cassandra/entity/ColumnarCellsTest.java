@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.stratio.deep.cassandra.entity;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.stratio.deep.commons.entity.Cell;
+import com.stratio.deep.commons.entity.Cells;
+import com.stratio.deep.commons.entity.CellsSchema;
+import com.stratio.deep.commons.entity.ColumnarCells;
+
+@Test
+public class ColumnarCellsTest {
+
+    private static final String TABLE = "defaultTable";
+
+    private final CellsSchema schema = new CellsSchema(new String[] { "id", "name", "age" },
+            new boolean[] { true, false, false }, new boolean[] { false, false, false });
+
+    private ColumnarCells row() {
+        return new ColumnarCells(TABLE, schema, new Object[] { "key1", "john", 42 });
+    }
+
+    private Cells plainRow() {
+        return new Cells(TABLE, Cell.create("id", "key1", true, false), Cell.create("name", "john"),
+                Cell.create("age", 42));
+    }
+
+    @Test
+    public void testGetCellByName() {
+        ColumnarCells cells = row();
+
+        assertEquals(cells.size(), 3);
+        assertEquals(cells.getString("name"), "john");
+        assertEquals(cells.getCellByName("age").getCellValue(), 42);
+        assertEquals(cells.getCellByName(TABLE, "id").getCellValue(), "key1");
+        assertTrue(cells.getCellByName("id").isKey());
+        assertNull(cells.getCellByName("notExistingCell"));
+        assertNull(cells.getCellByName("otherTable", "id"));
+        assertEquals(cells.getCellByIdx(1).getCellName(), "name");
+        assertEquals(cells.size("otherTable"), 0);
+    }
+
+    @Test
+    public void testEqualsPlainCells() {
+        ColumnarCells cells = row();
+        Cells plain = plainRow();
+
+        assertEquals(cells, plain);
+        assertEquals(plain, cells);
+        assertEquals(cells.hashCode(), plain.hashCode());
+        assertEquals(cells.toString(), plain.toString());
+    }
+
+    @Test
+    public void testSplitCells() {
+        ColumnarCells cells = row();
+
+        assertEquals(cells.getIndexCells(), plainRow().getIndexCells());
+        assertEquals(cells.getValueCells(), plainRow().getValueCells());
+        assertEquals(cells.getIndexCells().size(), 1);
+        assertEquals(cells.getValueCells().size(), 2);
+    }
+
+    @Test
+    public void testIterability() {
+        List<String> names = new ArrayList<>();
+        for (Cell cell : row()) {
+            names.add(cell.getCellName());
+        }
+
+        assertEquals(names.size(), 3);
+        assertEquals(names.get(0), "id");
+        assertEquals(names.get(2), "age");
+    }
+
+    @Test
+    public void testModification() {
+        ColumnarCells cells = row();
+
+        assertTrue(cells.replaceByName(Cell.create("name", "jane")));
+        assertEquals(cells.getString("name"), "jane");
+
+        assertTrue(cells.add(Cell.create("city", "madrid")));
+        assertEquals(cells.size(), 4);
+        assertEquals(cells.getString("city"), "madrid");
+
+        assertTrue(cells.remove("age"));
+        assertFalse(cells.remove("age"));
+        assertNull(cells.getCellByName("age"));
+        assertEquals(cells.size(), 3);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongNumberOfValues() {
+        new ColumnarCells(TABLE, schema, new Object[] { "key1" });
+    }
+}
@@ -1,10 +1,23 @@
 package com.stratio.deep.cassandra.thrift;
 
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.dht.ByteOrderedPartitioner;
@@ -14,6 +27,7 @@ import org.apache.cassandra.dht.OrderPreservingPartitioner;
 import org.apache.cassandra.dht.RandomPartitioner;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.thrift.CfSplit;
+import org.apache.thrift.TException;
 import org.testng.annotations.Test;
 
 import com.stratio.deep.commons.rdd.DeepTokenRange;
@@ -123,4 +137,166 @@ public class ThriftRangeUtilsTest {
         assertEquals(actualRanges, expectedRanges);
     }
 
+    @Test
+    public void testSplitsAreDiscoveredConcurrentlyInOrder() {
+        final CountDownLatch concurrent = new CountDownLatch(2);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<DeepTokenRange> ranges = new ArrayList<>();
+        for (long i = 0; i < 8; i++) {
+            ranges.add(new DeepTokenRange(i * 10, i * 10 + 10, Arrays.asList("host")));
+        }
+
+        ThriftRangeUtils utils = new ThriftRangeUtils(new Murmur3Partitioner(), "", 0, "ks", "parallel", 0, 3, 0) {
+            @Override
+            public List<DeepTokenRange> getRanges() {
+                return ranges;
+            }
+
+            @Override
+            public List<DeepTokenRange> getSplits(DeepTokenRange range) {
+                int current = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), current));
+                }
+                try {
+                    concurrent.countDown();
+                    concurrent.await(1, TimeUnit.SECONDS);
+                    return Arrays.asList(range, range);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+
+        List<DeepTokenRange> splits = utils.getSplits();
+
+        assertEquals(concurrent.getCount(), 0);
+        assertTrue(maxRunning.get() <= 3, "ran " + maxRunning.get() + " discoveries concurrently");
+        assertEquals(splits.size(), 16);
+        for (int i = 0; i < ranges.size(); i++) {
+            assertSame(splits.get(2 * i), ranges.get(i));
+            assertSame(splits.get(2 * i + 1), ranges.get(i));
+        }
+    }
+
+    @Test
+    public void testSplitsAreCachedDuringTtl() {
+        CountingRangeUtils cached = new CountingRangeUtils("cached", 60000);
+        List<DeepTokenRange> first = cached.getSplits();
+        List<DeepTokenRange> second = cached.getSplits();
+
+        assertEquals(cached.ranges, 1);
+        assertEquals(second, first);
+
+        // a different split size is another cache entry
+        CountingRangeUtils otherSize = new CountingRangeUtils("cached", 60000, 200);
+        otherSize.getSplits();
+        assertEquals(otherSize.ranges, 1);
+
+        CountingRangeUtils uncached = new CountingRangeUtils("uncached", 0);
+        uncached.getSplits();
+        uncached.getSplits();
+        assertEquals(uncached.ranges, 2);
+    }
+
+    @Test
+    public void testPoolReusesReleasedClients() {
+        ThriftClient client = mock(ThriftClient.class);
+        ThriftClientPool.release("reuse-host", 9160, "ks", client);
+
+        try {
+            assertSame(ThriftClientPool.borrow("reuse-host", 9160, "ks"), client);
+        } catch (TException e) {
+            fail("The released client should be reused", e);
+        }
+        verify(client, never()).close();
+    }
+
+    @Test
+    public void testPoolClosesClientsBeyondIdleLimit() {
+        List<ThriftClient> clients = new ArrayList<>();
+        for (int i = 0; i <= ThriftClientPool.MAX_IDLE_CLIENTS; i++) {
+            ThriftClient client = mock(ThriftClient.class);
+            clients.add(client);
+            ThriftClientPool.release("limit-host", 9160, "ks", client);
+        }
+
+        for (int i = 0; i < ThriftClientPool.MAX_IDLE_CLIENTS; i++) {
+            verify(clients.get(i), never()).close();
+        }
+        verify(clients.get(ThriftClientPool.MAX_IDLE_CLIENTS)).close();
+    }
+
+    @Test
+    public void testPoolEvictsIdleClients() {
+        ThriftClient client = mock(ThriftClient.class);
+        ThriftClientPool.release("evict-host", 9160, "ks", client);
+
+        ThriftClientPool.evict(System.currentTimeMillis());
+        verify(client, never()).close();
+
+        ThriftClientPool.evict(System.currentTimeMillis() + ThriftClientPool.MAX_IDLE_MILLIS);
+        verify(client).close();
+    }
+
+    @Test
+    public void testSplitReleasesAnsweringClient() throws TException {
+        ThriftClient client = mock(ThriftClient.class);
+        when(client.describe_splits_ex("cf", "10", "20", 100)).thenReturn(Arrays.asList(new CfSplit("10", "20", 0)));
+        ThriftClientPool.release("split-host", 9160, "ks", client);
+
+        ThriftRangeUtils utils = new ThriftRangeUtils(new Murmur3Partitioner(), "", 9160, "ks", "cf", 100);
+        List<String> endpoints = Arrays.asList("split-host");
+        List<DeepTokenRange> splits = utils.getSplits(new DeepTokenRange(10L, 20L, endpoints));
+
+        assertEquals(splits, Arrays.asList(new DeepTokenRange(10L, 20L, endpoints)));
+        verify(client, never()).close();
+        assertSame(ThriftClientPool.borrow("split-host", 9160, "ks"), client);
+    }
+
+    @Test
+    public void testSplitClosesClientOnRuntimeFailure() throws TException {
+        ThriftClient client = mock(ThriftClient.class);
+        when(client.describe_splits_ex(anyString(), anyString(), anyString(), anyInt()))
+                .thenThrow(new IllegalStateException("Unexpected answer"));
+        ThriftClientPool.release("failing-host", 9160, "ks", client);
+
+        ThriftRangeUtils utils = new ThriftRangeUtils(new Murmur3Partitioner(), "", 9160, "ks", "cf", 100);
+        try {
+            utils.getSplits(new DeepTokenRange(10L, 20L, Arrays.asList("failing-host")));
+            fail("The failure should be propagated");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "Unexpected answer");
+        }
+        verify(client).close();
+    }
+
+    /**
+     * Counts the ring descriptions, returning a single range split in itself.
+     */
+    private static class CountingRangeUtils extends ThriftRangeUtils {
+        private int ranges;
+
+        CountingRangeUtils(String columnFamily, long cacheTtl) {
+            this(columnFamily, cacheTtl, 100);
+        }
+
+        CountingRangeUtils(String columnFamily, long cacheTtl, int splitSize) {
+            super(new Murmur3Partitioner(), "counting-host", 9160, "ks", columnFamily, splitSize, 1, cacheTtl);
+        }
+
+        @Override
+        public List<DeepTokenRange> getRanges() {
+            ranges++;
+            return Arrays.asList(new DeepTokenRange(10L, 20L, Arrays.asList("counting-host")));
+        }
+
+        @Override
+        public List<DeepTokenRange> getSplits(DeepTokenRange range) {
+            return Arrays.asList(range);
+        }
+    }
 }
@@ -63,6 +63,12 @@ public class Cells implements Iterable<Cell>, Serializable {
      */
     private final Map<String, List<Cell>> cells = new HashMap<>();
 
+    /**
+     * Maps, for every table, the name of each Cell to the first Cell with that name. Built lazily on the first lookup
+     * by name and kept up to date by the methods modifying this object.
+     */
+    private transient Map<String, Map<String, Cell>> nameIndex;
+
     /**
      * Given the table name, returns the List of Cell object associated to that table.
      *
@@ -82,6 +88,42 @@ public class Cells implements Iterable<Cell>, Serializable {
         return res;
     }
 
+    /**
+     * Given the table name, returns the index of the Cell objects associated to that table by name.
+     *
+     * @param nameSpace the table name.
+     * @return the index of the Cell objects associated to that table.
+     */
+    private Map<String, Cell> getNameIndex(String nameSpace) {
+        String tName = StringUtils.isEmpty(nameSpace) ? this.nameSpace : nameSpace;
+
+        if (nameIndex == null) {
+            nameIndex = new HashMap<>();
+        }
+
+        Map<String, Cell> res = nameIndex.get(tName);
+
+        if (res == null) {
+            List<Cell> localCells = getCellsByTable(tName);
+            res = new HashMap<>((int) (localCells.size() / 0.75f) + 1);
+            for (Cell c : localCells) {
+                indexCell(res, c);
+            }
+            nameIndex.put(tName, res);
+        }
+
+        return res;
+    }
+
+    /**
+     * Adds the given Cell to the index unless a Cell with the same name precedes it.
+     */
+    private static void indexCell(Map<String, Cell> index, Cell c) {
+        if (!index.containsKey(c.getCellName())) {
+            index.put(c.getCellName(), c);
+        }
+    }
+
     /**
      * Constructs a new Cells object without a default table name.
      */
@@ -130,7 +172,7 @@ public class Cells implements Iterable<Cell>, Serializable {
             throw new DeepGenericException(new IllegalArgumentException("cell parameter cannot be null"));
         }
 
-        return getCellsByTable(nameSpace).add(c);
+        return addCell(nameSpace, c);
     }
 
     /**
@@ -149,7 +191,25 @@ public class Cells implements Iterable<Cell>, Serializable {
             throw new DeepGenericException(new IllegalArgumentException("cell parameter cannot be null"));
         }
 
-        return getCellsByTable(table).add(c);
+        return addCell(table, c);
+    }
+
+    /**
+     * Appends the given Cell to the list of cells of <i>table</i>, keeping the name index up to date.
+     */
+    private boolean addCell(String table, Cell c) {
+        if (!getCellsByTable(table).add(c)) {
+            return false;
+        }
+
+        if (nameIndex != null) {
+            Map<String, Cell> index = nameIndex.get(StringUtils.isEmpty(table) ? this.nameSpace : table);
+            if (index != null) {
+                indexCell(index, c);
+            }
+        }
+
+        return true;
     }
 
     /**
@@ -161,6 +221,7 @@ public class Cells implements Iterable<Cell>, Serializable {
     public void addAll(Map<String, List<Cell>> cells) {
 
         this.cells.putAll(cells);
+        this.nameIndex = null;
     }
 
     /**
@@ -174,29 +235,40 @@ public class Cells implements Iterable<Cell>, Serializable {
             throw new DeepGenericException(new IllegalArgumentException("cell parameter cannot be null"));
         }
 
-        boolean cellFound = false;
-        int position = 0;
+        Cell currentCell = getNameIndex(table).get(c.getCellName());
 
-        List<Cell> localCells = getCellsByTable(table);
+        if (currentCell == null) {
+            return false;
+        }
 
-        Iterator<Cell> cellsIt = localCells.iterator();
-        while (!cellFound && cellsIt.hasNext()) {
-            Cell currentCell = cellsIt.next();
+        removeCell(table, currentCell);
 
-            if (currentCell.getCellName().equals(c.getCellName())) {
-                cellFound = true;
-            } else {
-                position++;
-            }
-        }
+        return addCell(table, c);
+    }
 
-        if (cellFound) {
-            localCells.remove(position);
+    /**
+     * Removes the given Cell instance from the list of cells of <i>table</i>, keeping the name index up to date: the
+     * next Cell with the same name, if any, becomes the indexed one.
+     */
+    private void removeCell(String table, Cell cell) {
+        Map<String, Cell> index = getNameIndex(table);
+        index.remove(cell.getCellName());
 
-            return localCells.add(c);
-        }
+        boolean removed = false;
+        Iterator<Cell> cellsIt = getCellsByTable(table).iterator();
+        while (cellsIt.hasNext()) {
+            Cell currentCell = cellsIt.next();
 
-        return false;
+            if (!removed) {
+                if (currentCell == cell) {
+                    cellsIt.remove();
+                    removed = true;
+                }
+            } else if (currentCell.getCellName().equals(cell.getCellName())) {
+                index.put(currentCell.getCellName(), currentCell);
+                return;
+            }
+        }
     }
 
     /**
@@ -223,15 +295,15 @@ public class Cells implements Iterable<Cell>, Serializable {
                     "cell name parameter cannot be null"));
         }
 
-        List<Cell> localCells = getCellsByTable(table);
+        Cell currentCell = getNameIndex(table).get(cellName);
 
-        for (Cell currentCell : localCells) {
-            if (currentCell.getCellName().equals(cellName)) {
-                return localCells.remove(currentCell);
-            }
+        if (currentCell == null) {
+            return false;
         }
 
-        return false;
+        removeCell(table, currentCell);
+
+        return true;
     }
 
     /**
@@ -305,15 +377,11 @@ public class Cells implements Iterable<Cell>, Serializable {
      */
     public Cell getCellByName(String cellName) {
 
-        Set<String> keys = cells.keySet();
-        for (String key : keys) {
-            List<Cell> cellList = cells.get(key);
-            for (Cell c : cellList) {
-                if (c.getCellName().equals(cellName)) {
-                    return c;
-                }
+        for (String key : cells.keySet()) {
+            Cell c = getNameIndex(key).get(cellName);
+            if (c != null) {
+                return c;
             }
-
         }
         return null;
     }
@@ -328,12 +396,7 @@ public class Cells implements Iterable<Cell>, Serializable {
      */
     public Cell getCellByName(String table, String cellName) {
 
-        for (Cell c : getCellsByTable(table)) {
-            if (c.getCellName().equals(cellName)) {
-                return c;
-            }
-        }
-        return null;
+        return getNameIndex(table).get(cellName);
     }
 
     /**
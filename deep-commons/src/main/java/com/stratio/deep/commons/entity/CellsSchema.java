@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stratio.deep.commons.entity;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column layout shared by every {@link ColumnarCells} row read from the same partition: column names, key flags and a
+ * precomputed name to position index. Instances are immutable.
+ */
+public class CellsSchema implements Serializable {
+
+    private static final long serialVersionUID = -3190487716452397845L;
+
+    /**
+     * Column names, in row order.
+     */
+    private final String[] names;
+
+    /**
+     * True for the key columns, see {@link Cell#isKey()}.
+     */
+    private final boolean[] key;
+
+    /**
+     * True for the columns part of the clustering key.
+     */
+    private final boolean[] clusterKey;
+
+    /**
+     * Maps every column name to its position in the row.
+     */
+    private final Map<String, Integer> positions;
+
+    /**
+     * Builds a new schema.
+     *
+     * @param names      the column names, in row order.
+     * @param key        for every column, whether it is a key column.
+     * @param clusterKey for every column, whether it is part of the clustering key.
+     */
+    public CellsSchema(String[] names, boolean[] key, boolean[] clusterKey) {
+        if (names.length != key.length || names.length != clusterKey.length) {
+            throw new IllegalArgumentException("names and key flags must have the same length");
+        }
+
+        this.names = names.clone();
+        this.key = key.clone();
+        this.clusterKey = clusterKey.clone();
+        this.positions = new HashMap<>((int) (names.length / 0.75f) + 1);
+
+        for (int i = 0; i < names.length; i++) {
+            positions.put(names[i], i);
+        }
+    }
+
+    /**
+     * @return the number of columns of this schema.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns the position of the given column, or -1 if this schema has no such column.
+     *
+     * @param name the column name.
+     * @return the position of the column, or -1.
+     */
+    public int indexOf(String name) {
+        Integer position = positions.get(name);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * @param idx the column position.
+     * @return the name of the column at the given position.
+     */
+    public String getName(int idx) {
+        return names[idx];
+    }
+
+    /**
+     * @param idx the column position.
+     * @return true if the column at the given position is part of the clustering key.
+     */
+    public boolean isClusterKey(int idx) {
+        return clusterKey[idx];
+    }
+
+    /**
+     * @param idx the column position.
+     * @return true if the column at the given position is a key column.
+     */
+    public boolean isKey(int idx) {
+        return key[idx];
+    }
+
+    /**
+     * Builds the Cell for the column at the given position.
+     *
+     * @param idx   the column position.
+     * @param value the cell value.
+     * @return a new Cell carrying the column metadata and the given value.
+     */
+    public Cell createCell(int idx, Object value) {
+        return Cell.create(names[idx], value, key[idx], clusterKey[idx]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "CellsSchema{" + "names=" + Arrays.toString(names) + '}';
+    }
+}
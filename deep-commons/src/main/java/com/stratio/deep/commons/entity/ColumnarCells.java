@@ -0,0 +1,445 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stratio.deep.commons.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * <p>
+ * A {@link Cells} row backed by a {@link CellsSchema} shared by all the rows of a partition plus a flat array of
+ * values. Cell objects are only built when they are accessed, and name lookups go through the precomputed index of the
+ * schema instead of scanning the row.
+ * </p>
+ * <p>
+ * All the cells of a ColumnarCells belong to its default table. The first time the row is modified it is copied into
+ * the regular {@link Cells} representation and, from then on, behaves exactly like a plain Cells object.
+ * </p>
+ */
+public class ColumnarCells extends Cells {
+
+    private static final long serialVersionUID = -6183327395468427093L;
+
+    /**
+     * The column layout shared with the other rows of the partition.
+     */
+    private final CellsSchema schema;
+
+    /**
+     * The cell values, in schema order. Null once the row has been copied into the regular Cells representation.
+     */
+    private Object[] values;
+
+    /**
+     * The Cell objects already handed out, built on first access.
+     */
+    private Cell[] materialized;
+
+    /**
+     * Builds a new row.
+     *
+     * @param nameSpace the table name.
+     * @param schema    the column layout of the row.
+     * @param values    the cell values, in schema order. The array is not copied.
+     */
+    public ColumnarCells(String nameSpace, CellsSchema schema, Object[] values) {
+        super(nameSpace);
+
+        if (values.length != schema.size()) {
+            throw new IllegalArgumentException("expected " + schema.size() + " values but got " + values.length);
+        }
+
+        this.schema = schema;
+        this.values = values;
+    }
+
+    /**
+     * @return the column layout of this row.
+     */
+    public CellsSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Returns true if this row is still backed by the flat value array.
+     */
+    private boolean isColumnar() {
+        return values != null;
+    }
+
+    /**
+     * Returns true if the given table name refers to the default table of this row.
+     */
+    private boolean isOwnTable(String table) {
+        return StringUtils.isEmpty(table) || table.equals(getnameSpace());
+    }
+
+    /**
+     * Returns the Cell at the given position, building it on first access.
+     */
+    private Cell cell(int idx) {
+        if (materialized == null) {
+            materialized = new Cell[values.length];
+        }
+
+        Cell cell = materialized[idx];
+        if (cell == null) {
+            cell = schema.createCell(idx, values[idx]);
+            materialized[idx] = cell;
+        }
+
+        return cell;
+    }
+
+    /**
+     * Returns every Cell of this row, in schema order.
+     */
+    private List<Cell> cellList() {
+        Cell[] res = new Cell[values.length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = cell(i);
+        }
+
+        return Arrays.asList(res);
+    }
+
+    /**
+     * Copies this row into the regular Cells representation, before it gets modified.
+     */
+    private void inflate() {
+        if (!isColumnar()) {
+            return;
+        }
+
+        List<Cell> cells = cellList();
+        values = null;
+        materialized = null;
+
+        for (Cell cell : cells) {
+            super.add(cell);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(Cell c) {
+        inflate();
+        return super.add(c);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(String table, Cell c) {
+        inflate();
+        return super.add(table, c);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addAll(Map<String, List<Cell>> cells) {
+        inflate();
+        super.addAll(cells);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean replaceByName(String table, Cell c) {
+        inflate();
+        return super.replaceByName(table, c);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(String table, String cellName) {
+        inflate();
+        return super.remove(table, cellName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cell getCellByIdx(int idx) {
+        if (!isColumnar()) {
+            return super.getCellByIdx(idx);
+        }
+
+        if (idx < 0 || idx >= values.length) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + values.length);
+        }
+
+        return cell(idx);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cell getCellByIdx(String table, int idx) {
+        if (!isColumnar()) {
+            return super.getCellByIdx(table, idx);
+        }
+
+        if (!isOwnTable(table)) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: 0");
+        }
+
+        return getCellByIdx(idx);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cell getCellByName(String cellName) {
+        if (!isColumnar()) {
+            return super.getCellByName(cellName);
+        }
+
+        int idx = schema.indexOf(cellName);
+        return idx < 0 ? null : cell(idx);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cell getCellByName(String table, String cellName) {
+        if (!isColumnar()) {
+            return super.getCellByName(table, cellName);
+        }
+
+        return isOwnTable(table) ? getCellByName(cellName) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Cell> getCells() {
+        if (!isColumnar()) {
+            return super.getCells();
+        }
+
+        return Collections.unmodifiableList(cellList());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Cell> getCells(String nameSpace) {
+        if (!isColumnar()) {
+            return super.getCells(nameSpace);
+        }
+
+        return isOwnTable(nameSpace) ? getCells() : Collections.<Cell>emptyList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, List<Cell>> getInternalCells() {
+        if (!isColumnar()) {
+            return super.getInternalCells();
+        }
+
+        return Collections.singletonMap(getnameSpace(), cellList());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Object> getCellValues(String table) {
+        if (!isColumnar()) {
+            return super.getCellValues(table);
+        }
+
+        if (!isOwnTable(table)) {
+            return new ArrayList<>();
+        }
+
+        return new ArrayList<>(Arrays.asList(values));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cells getIndexCells(String table) {
+        if (!isColumnar()) {
+            return super.getIndexCells(table);
+        }
+
+        Cells res = new Cells(table);
+        if (isOwnTable(table)) {
+            for (int i = 0; i < values.length; i++) {
+                if (schema.isKey(i)) {
+                    res.add(table, cell(i));
+                }
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cells getIndexCells() {
+        if (!isColumnar()) {
+            return super.getIndexCells();
+        }
+
+        return getIndexCells(getnameSpace());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cells getValueCells(String table) {
+        if (!isColumnar()) {
+            return super.getValueCells(table);
+        }
+
+        Cells res = new Cells(table);
+        if (isOwnTable(table)) {
+            for (int i = 0; i < values.length; i++) {
+                if (!schema.isKey(i)) {
+                    res.add(table, cell(i));
+                }
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cells getValueCells() {
+        if (!isColumnar()) {
+            return super.getValueCells();
+        }
+
+        return getValueCells(getnameSpace());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return isColumnar() ? values.length : super.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size(String table) {
+        if (!isColumnar()) {
+            return super.size(table);
+        }
+
+        return isOwnTable(table) ? values.length : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return isColumnar() ? values.length == 0 : super.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!isColumnar()) {
+            return super.equals(obj);
+        }
+
+        if (!(obj instanceof Cells)) {
+            return false;
+        }
+
+        Cells o = (Cells) obj;
+
+        if (this.size() != o.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            Cell otherCell = o.getCellByName(getnameSpace(), schema.getName(i));
+
+            if (otherCell == null || !otherCell.equals(cell(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Computes the same hash code a plain {@link Cells} object holding the same cells would have.
+     */
+    @Override
+    public int hashCode() {
+        if (!isColumnar()) {
+            return super.hashCode();
+        }
+
+        return getInternalCells().hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        if (!isColumnar()) {
+            return super.toString();
+        }
+
+        return "Cells{" + "cells=" + getInternalCells() + '}';
+    }
+}
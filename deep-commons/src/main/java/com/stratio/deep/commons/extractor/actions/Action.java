@@ -14,6 +14,11 @@ public class Action implements Serializable {
 
     protected ActionType type;
 
+    /**
+     * Identifies the client session the message belongs to, so several sessions can share one connection.
+     */
+    protected int sessionId;
+
     protected Action() {
         super();
     }
@@ -26,4 +31,12 @@ public class Action implements Serializable {
     public ActionType getType() {
         return type;
     }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(int sessionId) {
+        this.sessionId = sessionId;
+    }
 }
@@ -9,7 +9,7 @@ package com.stratio.deep.commons.extractor.actions;
 public enum ActionType {
 
     CLOSE(1), GET_PARTITIONS(2), GET_PREFERRED(3), SAVE(4), EXTRACTOR_INSTANCE(5), HAS_NEXT(6), NEXT(7), INIT_ITERATOR(
-            8), INIT_SAVE(9);
+            8), INIT_SAVE(9), NEXT_BATCH(10);
 
     private final int actionId;
 
@@ -18,14 +18,30 @@ public class InitIteratorAction<T> extends Action {
 
     private Partition partition;
 
+    /**
+     * Number of records per pushed batch, a value lower than 1 disables the streaming mode.
+     */
+    private int batchSize;
+
+    /**
+     * Number of batches the server may push before waiting for new credits.
+     */
+    private int prefetch;
+
     public InitIteratorAction() {
         super();
     }
 
     public InitIteratorAction(Partition partition, ExtractorConfig<T> config) {
+        this(partition, config, 0, 0);
+    }
+
+    public InitIteratorAction(Partition partition, ExtractorConfig<T> config, int batchSize, int prefetch) {
         super(ActionType.INIT_ITERATOR);
         this.config = config;
         this.partition = partition;
+        this.batchSize = batchSize;
+        this.prefetch = prefetch;
     }
 
     public ExtractorConfig<T> getConfig() {
@@ -35,4 +51,16 @@ public class InitIteratorAction<T> extends Action {
     public Partition getPartition() {
         return partition;
     }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getPrefetch() {
+        return prefetch;
+    }
+
+    public boolean isStreaming() {
+        return batchSize > 0;
+    }
 }
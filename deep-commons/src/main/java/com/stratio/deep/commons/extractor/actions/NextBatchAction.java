@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.extractor.actions;
+
+/**
+ * Grants the server new credits to push record batches of a streaming iterator.
+ */
+public class NextBatchAction<T> extends Action {
+
+    private static final long serialVersionUID = 4379208471870383297L;
+
+    private int credits;
+
+    public NextBatchAction() {
+        super();
+    }
+
+    public NextBatchAction(int credits) {
+        super(ActionType.NEXT_BATCH);
+        this.credits = credits;
+    }
+
+    public int getCredits() {
+        return credits;
+    }
+}
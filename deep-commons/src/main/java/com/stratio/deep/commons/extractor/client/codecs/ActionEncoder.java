@@ -14,52 +14,11 @@
  */
 package com.stratio.deep.commons.extractor.client.codecs;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.stratio.deep.commons.extractor.actions.Action;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
-
-public class ActionEncoder extends MessageToByteEncoder<Action> {
-
-    private static final Logger LOG = LoggerFactory.getLogger(ActionEncoder.class);
-
-    protected void encode(ChannelHandlerContext ctx, Action action, ByteBuf out) {
-
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutput outObj = null;
-
-        try {
-            outObj = new ObjectOutputStream(bos);
-            outObj.writeObject(action);
-        } catch (IOException e) {
-            LOG.error(e.getMessage());
-        } finally {
-            try {
-                if (outObj != null) {
-                    outObj.close();
-                }
-            } catch (IOException ex) {
-                // ignore close exception
-            }
-            try {
-                bos.close();
-            } catch (IOException ex) {
-                // ignore close exception
-            }
-        }
+public class ActionEncoder extends MessageEncoder<Action> {
 
-        byte[] encodedObj = bos.toByteArray();
-        int dataLength = encodedObj.length;
-        out.writeInt(dataLength);
-        out.writeBytes(encodedObj);
+    public ActionEncoder() {
+        super(MessageCodecFactory.newCodec(), MessageCodecFactory.getCompressionThreshold());
     }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.extractor.client.codecs;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+/**
+ * {@link MessageCodec} based on Java serialization.
+ */
+public class JavaMessageCodec implements MessageCodec {
+
+    @Override
+    public void serialize(Object message, ByteBuf out) throws IOException {
+        try (ObjectOutputStream outObj = new ObjectOutputStream(new ByteBufOutputStream(out))) {
+            outObj.writeObject(message);
+        }
+    }
+
+    @Override
+    public Object deserialize(ByteBuf in) throws IOException {
+        try (ObjectInputStream inObj = new ObjectInputStream(new ByteBufInputStream(in))) {
+            return inObj.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.extractor.client.codecs;
+
+import java.io.IOException;
+
+import org.apache.spark.serializer.KryoRegistrator;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+/**
+ * {@link MessageCodec} based on Kryo. The Kryo instance and its buffers are reused for every message, so an
+ * instance must only be used by one channel handler.
+ */
+public class KryoMessageCodec implements MessageCodec {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KryoMessageCodec.class);
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final Kryo kryo;
+
+    private final Output output = new Output(BUFFER_SIZE, -1);
+
+    private final Input input = new Input(BUFFER_SIZE);
+
+    /**
+     * @param registratorClassName the {@link KryoRegistrator} applied to the Kryo instance, it is ignored when it is
+     *                             not in the classpath
+     */
+    public KryoMessageCodec(String registratorClassName) {
+        kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        // classes without a no-arg constructor are instantiated without calling any constructor
+        Kryo.DefaultInstantiatorStrategy instantiatorStrategy = new Kryo.DefaultInstantiatorStrategy();
+        instantiatorStrategy.setFallbackInstantiatorStrategy(new StdInstantiatorStrategy());
+        kryo.setInstantiatorStrategy(instantiatorStrategy);
+        registerClasses(registratorClassName);
+    }
+
+    private void registerClasses(String registratorClassName) {
+        if (registratorClassName == null) {
+            return;
+        }
+
+        try {
+            KryoRegistrator registrator = (KryoRegistrator) Class.forName(registratorClassName).newInstance();
+            registrator.registerClasses(kryo);
+        } catch (ClassNotFoundException e) {
+            LOG.warn("Kryo registrator " + registratorClassName + " not found, using default registrations");
+        } catch (InstantiationException | IllegalAccessException | ClassCastException e) {
+            LOG.error("Impossible to make a kryo registrator instance " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void serialize(Object message, ByteBuf out) throws IOException {
+        output.setOutputStream(new ByteBufOutputStream(out));
+        try {
+            kryo.writeClassAndObject(output, message);
+            output.flush();
+        } catch (KryoException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public Object deserialize(ByteBuf in) throws IOException {
+        input.setInputStream(new ByteBufInputStream(in));
+        try {
+            return kryo.readClassAndObject(input);
+        } catch (KryoException e) {
+            throw new IOException(e);
+        }
+    }
+}
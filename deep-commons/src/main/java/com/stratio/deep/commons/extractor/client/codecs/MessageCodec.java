@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.extractor.client.codecs;
+
+import java.io.IOException;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Serializes the actions and responses exchanged between extractor clients and servers. Implementations may keep
+ * state, every channel handler owns its own codec instance.
+ */
+public interface MessageCodec {
+
+    /**
+     * Writes the given message at the writer index of the buffer.
+     *
+     * @param message the message
+     * @param out     the buffer
+     * @throws IOException if the message cannot be serialized
+     */
+    void serialize(Object message, ByteBuf out) throws IOException;
+
+    /**
+     * Reads a message from a buffer holding exactly its serialized bytes.
+     *
+     * @param in the buffer
+     * @return the message
+     * @throws IOException if the message cannot be deserialized
+     */
+    Object deserialize(ByteBuf in) throws IOException;
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.extractor.client.codecs;
+
+/**
+ * Builds the {@link MessageCodec} used by the extractor client and server. Both sides must be started with the same
+ * <code>codec</code> system property: <code>java</code> (default) or <code>kryo</code>.
+ */
+public final class MessageCodecFactory {
+
+    static final String JAVA = "java";
+
+    static final String KRYO = "kryo";
+
+    static final String CODEC = System.getProperty("codec", JAVA);
+
+    static final String KRYO_REGISTRATOR = System.getProperty("kryo.registrator",
+            "com.stratio.deep.core.serializer.DeepKryoRegistrator");
+
+    /**
+     * Serialized messages of at least this number of bytes are LZ4 compressed, 0 disables compression.
+     */
+    static final int COMPRESSION_THRESHOLD = Integer.parseInt(System.getProperty("compression.threshold", "0"));
+
+    private MessageCodecFactory() {
+    }
+
+    /**
+     * @return a new codec instance of the configured type
+     */
+    public static MessageCodec newCodec() {
+        switch (CODEC) {
+        case KRYO:
+            return new KryoMessageCodec(KRYO_REGISTRATOR);
+        case JAVA:
+            return new JavaMessageCodec();
+        default:
+            throw new IllegalArgumentException("Unknown extractor codec " + CODEC);
+        }
+    }
+
+    /**
+     * @return the configured compression threshold in bytes
+     */
+    public static int getCompressionThreshold() {
+        return COMPRESSION_THRESHOLD;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.extractor.client.codecs;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Reads the frames written by {@link MessageEncoder}.
+ */
+public abstract class MessageDecoder extends ByteToMessageDecoder {
+
+    private final MessageCodec codec;
+
+    private LZ4FastDecompressor decompressor;
+
+    protected MessageDecoder(MessageCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+
+        // Wait until the length prefix is available.
+        if (in.readableBytes() < 4) {
+            return;
+        }
+
+        // Wait until the whole data is available.
+        in.markReaderIndex();
+        int dataLength = in.readInt();
+        if (in.readableBytes() < dataLength) {
+            in.resetReaderIndex();
+            return;
+        }
+
+        byte flags = in.readByte();
+        if (flags == MessageEncoder.LZ4) {
+            out.add(codec.deserialize(decompress(in, dataLength - 1)));
+        } else {
+            out.add(codec.deserialize(in.readSlice(dataLength - 1)));
+        }
+    }
+
+    private ByteBuf decompress(ByteBuf in, int length) {
+        if (decompressor == null) {
+            decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+        }
+
+        int originalLength = in.readInt();
+        byte[] src = new byte[length - 4];
+        in.readBytes(src);
+
+        byte[] dest = new byte[originalLength];
+        decompressor.decompress(src, 0, dest, 0, originalLength);
+        return Unpooled.wrappedBuffer(dest);
+    }
+}
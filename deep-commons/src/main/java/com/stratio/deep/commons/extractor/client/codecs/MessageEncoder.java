@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.extractor.client.codecs;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * Writes length-prefixed frames: frame length (int), flags (byte), the uncompressed length (int) only when the
+ * payload is compressed, and the payload produced by a {@link MessageCodec}. The payload is serialized straight into
+ * the outbound buffer and only compressed when it reaches the compression threshold.
+ *
+ * @param <T> the type of the encoded messages
+ */
+public abstract class MessageEncoder<T> extends MessageToByteEncoder<T> {
+
+    static final byte PLAIN = 0;
+
+    static final byte LZ4 = 1;
+
+    private final MessageCodec codec;
+
+    private final int compressionThreshold;
+
+    private LZ4Compressor compressor;
+
+    protected MessageEncoder(MessageCodec codec, int compressionThreshold) {
+        this.codec = codec;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, T msg, ByteBuf out) throws Exception {
+        int start = out.writerIndex();
+        out.writeInt(0);
+        out.writeByte(PLAIN);
+
+        int payloadIndex = out.writerIndex();
+        codec.serialize(msg, out);
+
+        int payloadLength = out.writerIndex() - payloadIndex;
+        if (compressionThreshold > 0 && payloadLength >= compressionThreshold) {
+            compress(out, payloadIndex, payloadLength);
+        }
+
+        out.setInt(start, out.writerIndex() - start - 4);
+    }
+
+    /**
+     * Replaces the serialized payload with its LZ4 compressed form, unless compression does not reduce its size.
+     */
+    private void compress(ByteBuf out, int payloadIndex, int payloadLength) {
+        if (compressor == null) {
+            compressor = LZ4Factory.fastestInstance().fastCompressor();
+        }
+
+        byte[] src = new byte[payloadLength];
+        out.getBytes(payloadIndex, src);
+
+        byte[] dest = new byte[compressor.maxCompressedLength(payloadLength)];
+        int compressedLength = compressor.compress(src, 0, payloadLength, dest, 0, dest.length);
+        if (compressedLength + 4 >= payloadLength) {
+            return;
+        }
+
+        out.setByte(payloadIndex - 1, LZ4);
+        out.writerIndex(payloadIndex);
+        out.writeInt(payloadLength);
+        out.writeBytes(dest, 0, compressedLength);
+    }
+}
@@ -14,61 +14,9 @@
  */
 package com.stratio.deep.commons.extractor.client.codecs;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.ObjectInput;
-import java.io.ObjectInputStream;
-import java.util.List;
+public class ResponseDecoder extends MessageDecoder {
 
-import com.stratio.deep.commons.extractor.response.Response;
-
-import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageDecoder;
-
-public class ResponseDecoder extends ByteToMessageDecoder {
-
-    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
-
-        // Wait until the length prefix is available.
-        if (in.readableBytes() < 5) {
-            return;
-        }
-
-        // Wait until the whole data is available.
-        int dataLength = in.readInt();
-        if (in.readableBytes() < dataLength) {
-            in.resetReaderIndex();
-            return;
-        }
-
-        // Convert the received data into a new BigInteger.
-        byte[] decoded = new byte[dataLength];
-        in.readBytes(decoded);
-
-        ByteArrayInputStream bis = new ByteArrayInputStream(decoded);
-        ObjectInput inObj = null;
-        Response response = null;
-        try {
-            inObj = new ObjectInputStream(bis);
-            response = (Response) inObj.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                bis.close();
-            } catch (IOException ex) {
-                // ignore close exception
-            }
-            try {
-                if (inObj != null) {
-                    inObj.close();
-                }
-            } catch (IOException ex) {
-                // ignore close exception
-            }
-        }
-
-        out.add(response);
+    public ResponseDecoder() {
+        super(MessageCodecFactory.newCodec());
     }
 }
@@ -14,52 +14,11 @@
  */
 package com.stratio.deep.commons.extractor.client.codecs;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.stratio.deep.commons.extractor.response.Response;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
-
-public class ResponseEncoder extends MessageToByteEncoder<Response> {
-
-    private static final Logger LOG = LoggerFactory.getLogger(ResponseEncoder.class);
-
-    protected void encode(ChannelHandlerContext ctx, Response response, ByteBuf out) {
-
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutput outObj = null;
-
-        try {
-            outObj = new ObjectOutputStream(bos);
-            outObj.writeObject(response);
-        } catch (IOException e) {
-            LOG.error(e.getMessage());
-        } finally {
-            try {
-                if (outObj != null) {
-                    outObj.close();
-                }
-            } catch (IOException ex) {
-                // ignore close exception
-            }
-            try {
-                bos.close();
-            } catch (IOException ex) {
-                // ignore close exception
-            }
-        }
+public class ResponseEncoder extends MessageEncoder<Response> {
 
-        byte[] encodedObj = bos.toByteArray();
-        int dataLength = encodedObj.length;
-        out.writeInt(dataLength);
-        out.writeBytes(encodedObj);
+    public ResponseEncoder() {
+        super(MessageCodecFactory.newCodec(), MessageCodecFactory.getCompressionThreshold());
     }
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.extractor.response;
+
+import com.stratio.deep.commons.extractor.actions.ActionType;
+
+/**
+ * Answers an action the server could not perform, in place of the response the action expects.
+ */
+public class ErrorResponse extends Response {
+
+    private static final long serialVersionUID = 4625014741262127946L;
+
+    private String message;
+
+    public ErrorResponse() {
+        super();
+    }
+
+    /**
+     * @param type    the type of the failed action
+     * @param message the cause of the failure
+     */
+    public ErrorResponse(ActionType type, String message) {
+        super(type);
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.extractor.response;
+
+import java.util.List;
+
+import com.stratio.deep.commons.extractor.actions.ActionType;
+
+/**
+ * Batch of records pushed by the server while streaming a partition.
+ */
+public class NextBatchResponse<T> extends Response {
+
+    private static final long serialVersionUID = -1867402135842337451L;
+
+    private List<T> data;
+
+    private boolean last;
+
+    public NextBatchResponse() {
+        super();
+    }
+
+    public NextBatchResponse(List<T> data, boolean last) {
+        super(ActionType.NEXT_BATCH);
+        this.data = data;
+        this.last = last;
+    }
+
+    public List<T> getData() {
+        return data;
+    }
+
+    /**
+     * @return true if the partition has no more records after this batch.
+     */
+    public boolean isLast() {
+        return last;
+    }
+}
@@ -16,6 +16,11 @@ public abstract class Response implements Serializable {
 
     protected ActionType type;
 
+    /**
+     * Identifies the client session the message belongs to, so several sessions can share one connection.
+     */
+    protected int sessionId;
+
     protected Response() {
         super();
     }
@@ -28,4 +33,12 @@ public abstract class Response implements Serializable {
     public ActionType getType() {
         return type;
     }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(int sessionId) {
+        this.sessionId = sessionId;
+    }
 }
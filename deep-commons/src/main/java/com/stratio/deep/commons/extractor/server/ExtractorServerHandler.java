@@ -16,25 +16,40 @@ package com.stratio.deep.commons.extractor.server;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.log4j.Logger;
 import org.apache.spark.Partition;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.stratio.deep.commons.config.ExtractorConfig;
 import com.stratio.deep.commons.entity.Cells;
 import com.stratio.deep.commons.exception.DeepInstantiationException;
 import com.stratio.deep.commons.extractor.actions.Action;
+import com.stratio.deep.commons.extractor.actions.ActionType;
 import com.stratio.deep.commons.extractor.actions.GetPartitionsAction;
 import com.stratio.deep.commons.extractor.actions.HasNextAction;
 import com.stratio.deep.commons.extractor.actions.InitIteratorAction;
 import com.stratio.deep.commons.extractor.actions.InitSaveAction;
 import com.stratio.deep.commons.extractor.actions.NextAction;
+import com.stratio.deep.commons.extractor.actions.NextBatchAction;
 import com.stratio.deep.commons.extractor.actions.SaveAction;
 import com.stratio.deep.commons.extractor.response.CloseResponse;
+import com.stratio.deep.commons.extractor.response.ErrorResponse;
 import com.stratio.deep.commons.extractor.response.GetPartitionsResponse;
 import com.stratio.deep.commons.extractor.response.HasNextResponse;
 import com.stratio.deep.commons.extractor.response.InitIteratorResponse;
 import com.stratio.deep.commons.extractor.response.InitSaveResponse;
+import com.stratio.deep.commons.extractor.response.NextBatchResponse;
 import com.stratio.deep.commons.extractor.response.NextResponse;
 import com.stratio.deep.commons.extractor.response.Response;
 import com.stratio.deep.commons.extractor.response.SaveResponse;
@@ -43,59 +58,237 @@ import com.stratio.deep.commons.rdd.IExtractor;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
+/**
+ * Serves the extractor sessions multiplexed on one client connection.
+ * <p>
+ * Sessions are opened by the actions initializing an extractor (GET_PARTITIONS, INIT_ITERATOR and INIT_SAVE) and
+ * closed by CLOSE; any other action addressed to an unknown session is answered with an {@link ErrorResponse}. The
+ * extractor calls of every session run on a worker pool, in the order their actions were received, so slow
+ * extractors neither block the event loop nor the other sessions of the connection. A failed action is answered
+ * with an {@link ErrorResponse} and leaves the connection open.
+ * </p>
+ */
 public class ExtractorServerHandler<T> extends SimpleChannelInboundHandler<Action> {
 
     private static final Logger LOG = Logger.getLogger(ExtractorServerHandler.class);
 
-    private IExtractor<T, ExtractorConfig<T>> extractor;
+    /**
+     * Worker pool shared by the handlers of all the connections.
+     */
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("deep-extractor-worker-%d").setDaemon(true).build());
+
+    /**
+     * Sessions opened by the client on this channel. Sessions are only opened and removed from the channel event
+     * loop.
+     */
+    private final Map<Integer, Session<T>> sessions = new ConcurrentHashMap<>();
+
+    private final Executor workers;
+
+    /**
+     * State of one client session: a partition iterator or a save.
+     */
+    protected static class Session<T> {
+
+        private final int id;
+
+        private final Executor workers;
+
+        /**
+         * Tasks of the session waiting to be run, guarded by itself.
+         */
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        /**
+         * True while a worker is running the tasks of the session, guarded by {@link #tasks}.
+         */
+        private boolean running;
+
+        private IExtractor<T, ExtractorConfig<T>> extractor;
+
+        /**
+         * True if the current iterator pushes its records as batches.
+         */
+        private boolean streaming;
+
+        /**
+         * Records per pushed batch of the current streaming iterator, 0 when not streaming or exhausted.
+         */
+        private int batchSize;
+
+        Session(int id, Executor workers) {
+            this.id = id;
+            this.workers = workers;
+        }
+
+        /**
+         * Runs the given task on a worker once the previous tasks of the session have completed.
+         */
+        void execute(Runnable task) {
+            synchronized (tasks) {
+                tasks.add(task);
+                if (running) {
+                    return;
+                }
+                running = true;
+            }
+
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runTasks();
+                }
+            });
+        }
+
+        private void runTasks() {
+            for (; ; ) {
+                Runnable task;
+                synchronized (tasks) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        running = false;
+                        return;
+                    }
+                }
+
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOG.error("Error in extractor session " + id + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public ExtractorServerHandler() {
+        this(WORKERS);
+    }
+
+    /**
+     * @param workers the executor running the extractor calls
+     */
+    public ExtractorServerHandler(Executor workers) {
+        this.workers = workers;
+    }
 
     @Override
-    public void channelRead0(ChannelHandlerContext ctx, Action action) throws Exception {
+    public void channelRead0(final ChannelHandlerContext ctx, final Action action) throws Exception {
+
+        Session<T> session = sessions.get(action.getSessionId());
+        if (session == null) {
+            switch (action.getType()) {
+            case GET_PARTITIONS:
+            case INIT_ITERATOR:
+            case INIT_SAVE:
+                session = new Session<>(action.getSessionId(), workers);
+                sessions.put(session.id, session);
+                break;
+            case CLOSE:
+                ctx.writeAndFlush(withSession(action.getSessionId(), new CloseResponse()));
+                return;
+            default:
+                ctx.writeAndFlush(withSession(action.getSessionId(), new ErrorResponse(action.getType(),
+                        "Unknown extractor session " + action.getSessionId())));
+                return;
+            }
+        }
 
-        Response response = null;
+        if (action.getType() == ActionType.CLOSE) {
+            sessions.remove(session.id);
+        }
+
+        final Session<T> target = session;
+        session.execute(new Runnable() {
+            @Override
+            public void run() {
+                Response response;
+                try {
+                    response = perform(ctx, target, action);
+                } catch (RuntimeException e) {
+                    LOG.error("Error performing " + action.getType() + " in extractor session " + target.id + ": " +
+                            e.getMessage());
+                    response = new ErrorResponse(action.getType(), String.valueOf(e.getMessage()));
+                }
+
+                if (response != null) {
+                    ctx.writeAndFlush(withSession(target.id, response));
+                }
+            }
+        });
+    }
 
+    /**
+     * Performs the given action of the session.
+     *
+     * @return the response to send, or null if the action already sent its responses
+     */
+    private Response perform(ChannelHandlerContext ctx, Session<T> session, Action action) {
         switch (action.getType()) {
         case GET_PARTITIONS:
             GetPartitionsAction<T> partitionsAction = (GetPartitionsAction<T>) action;
-            response = new GetPartitionsResponse(this.getPartitions(partitionsAction));
-            break;
+            return new GetPartitionsResponse(this.getPartitions(session, partitionsAction));
         case CLOSE:
-            this.close();
-            response = new CloseResponse();
-            break;
+            this.close(session);
+            return new CloseResponse();
         case HAS_NEXT:
             HasNextAction<T> hasNextAction = (HasNextAction<T>) action;
-            response = new HasNextResponse(this.hastNext(hasNextAction));
-            break;
+            return new HasNextResponse(this.hastNext(session, hasNextAction));
         case NEXT:
             NextAction<T> nextAction = (NextAction<T>) action;
-            response = new NextResponse<T>(this.next(nextAction));
-            break;
+            return new NextResponse<T>(this.next(session, nextAction));
         case INIT_ITERATOR:
             InitIteratorAction<T> initIteratorAction = (InitIteratorAction<T>) action;
-            this.initIterator(initIteratorAction);
-            response = new InitIteratorResponse();
-            break;
+            this.initIterator(session, initIteratorAction);
+            ctx.write(withSession(session.id, new InitIteratorResponse()));
+            if (initIteratorAction.isStreaming()) {
+                this.pushBatches(ctx, session, initIteratorAction.getPrefetch());
+            } else {
+                ctx.flush();
+            }
+            return null;
+        case NEXT_BATCH:
+            if (!session.streaming) {
+                return this.nextRecord(session);
+            }
+            NextBatchAction<T> nextBatchAction = (NextBatchAction<T>) action;
+            this.pushBatches(ctx, session, nextBatchAction.getCredits());
+            return null;
         case SAVE:
             SaveAction<T> SaveAction = (SaveAction<T>) action;
-            this.save(SaveAction);
-            response = new SaveResponse();
-            break;
+            this.save(session, SaveAction);
+            return new SaveResponse();
         case INIT_SAVE:
             InitSaveAction<T> initSave = (InitSaveAction<T>) action;
-            this.initSave(initSave);
-            response = new InitSaveResponse();
-            break;
+            this.initSave(session, initSave);
+            return new InitSaveResponse();
         default:
-            break;
+            return new ErrorResponse(action.getType(), "Unsupported action " + action.getType());
         }
+    }
 
-        ctx.write(response);
+    private Response withSession(int sessionId, Response response) {
+        response.setSessionId(sessionId);
+        return response;
     }
 
     @Override
-    public void channelReadComplete(ChannelHandlerContext ctx) {
-        ctx.flush();
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (final Session<T> session : new ArrayList<>(sessions.values())) {
+            sessions.remove(session.id);
+            session.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        close(session);
+                    } catch (RuntimeException e) {
+                        LOG.error("Error closing extractor session " + session.id + ": " + e.getMessage());
+                    }
+                }
+            });
+        }
+        super.channelInactive(ctx);
     }
 
     @Override
@@ -104,48 +297,103 @@ public class ExtractorServerHandler<T> extends SimpleChannelInboundHandler<Actio
         ctx.close();
     }
 
-    protected boolean hastNext(HasNextAction hasNextAction) {
+    protected boolean hastNext(Session<T> session, HasNextAction hasNextAction) {
 
-        return extractor.hasNext();
+        return session.extractor.hasNext();
 
     }
 
-    protected T next(NextAction<T> nextAction) {
+    protected T next(Session<T> session, NextAction<T> nextAction) {
 
-        return extractor.next();
+        return session.extractor.next();
 
     }
 
-    protected void close() {
-        extractor.close();
+    protected void close(Session<T> session) {
+        session.streaming = false;
+        session.batchSize = 0;
+        if (session.extractor != null) {
+            session.extractor.close();
+        }
         return;
 
     }
 
-    protected void initIterator(InitIteratorAction<T> initIteratorAction) {
-        if (extractor == null) {
-            this.initExtractor(initIteratorAction.getConfig());
+    protected void initIterator(Session<T> session, InitIteratorAction<T> initIteratorAction) {
+        if (session.extractor == null) {
+            this.initExtractor(session, initIteratorAction.getConfig());
         }
 
-        extractor.initIterator(initIteratorAction.getPartition(), initIteratorAction.getConfig());
+        session.extractor.initIterator(initIteratorAction.getPartition(), initIteratorAction.getConfig());
+        session.streaming = initIteratorAction.isStreaming();
+        session.batchSize = initIteratorAction.getBatchSize();
         return;
 
     }
 
-    protected Partition[] getPartitions(GetPartitionsAction<T> getPartitionsAction) {
+    /**
+     * Pushes up to the given number of record batches of the session's streaming iterator. Each batch is flushed as
+     * soon as it is read so the client can consume it while the next one is being built. A failure while reading
+     * is answered to the pending batch with an {@link ErrorResponse} and ends the iterator.
+     *
+     * @param ctx     the channel context
+     * @param session the session
+     * @param credits the number of batches the client is willing to receive
+     */
+    protected void pushBatches(ChannelHandlerContext ctx, Session<T> session, int credits) {
+        for (int i = 0; i < credits && session.batchSize > 0; i++) {
+            List<T> batch = new ArrayList<>(session.batchSize);
+            boolean last;
+            try {
+                while (batch.size() < session.batchSize && session.extractor.hasNext()) {
+                    batch.add(session.extractor.next());
+                }
+                last = batch.size() < session.batchSize || !session.extractor.hasNext();
+            } catch (RuntimeException e) {
+                LOG.error("Error reading a batch in extractor session " + session.id + ": " + e.getMessage());
+                session.batchSize = 0;
+                ctx.writeAndFlush(withSession(session.id, new ErrorResponse(ActionType.NEXT_BATCH,
+                        String.valueOf(e.getMessage()))));
+                return;
+            }
+
+            if (last) {
+                session.batchSize = 0;
+            }
+
+            ctx.writeAndFlush(withSession(session.id, new NextBatchResponse<>(batch, last)));
+        }
+    }
+
+    /**
+     * Reads the next record of a session iterating without streaming, answering HAS_NEXT and NEXT in one round trip.
+     *
+     * @param session the session
+     * @return a batch with the next record, flagged as last when the iterator has no more records
+     */
+    protected NextBatchResponse<T> nextRecord(Session<T> session) {
+        if (!session.extractor.hasNext()) {
+            return new NextBatchResponse<>(Collections.<T>emptyList(), true);
+        }
+        T record = session.extractor.next();
+        return new NextBatchResponse<>(Collections.singletonList(record), !session.extractor.hasNext());
+    }
+
+    protected Partition[] getPartitions(Session<T> session, GetPartitionsAction<T> getPartitionsAction) {
 
-        if (extractor == null) {
-            this.initExtractor(getPartitionsAction.getConfig());
+        if (session.extractor == null) {
+            this.initExtractor(session, getPartitionsAction.getConfig());
         }
 
-        return extractor.getPartitions(getPartitionsAction.getConfig());
+        return session.extractor.getPartitions(getPartitionsAction.getConfig());
     }
 
     /**
+     * @param session
      * @param config
      */
     @SuppressWarnings("unchecked")
-    private void initExtractor(ExtractorConfig<T> config) {
+    private void initExtractor(Session<T> session, ExtractorConfig<T> config) {
 
         try {
             Class<T> rdd = config.getExtractorImplClass();
@@ -155,10 +403,10 @@ public class ExtractorServerHandler<T> extends SimpleChannelInboundHandler<Actio
             Constructor<T> c = null;
             if (config.getEntityClass().isAssignableFrom(Cells.class)) {
                 c = rdd.getConstructor();
-                this.extractor = (IExtractor<T, ExtractorConfig<T>>) c.newInstance();
+                session.extractor = (IExtractor<T, ExtractorConfig<T>>) c.newInstance();
             } else {
                 c = rdd.getConstructor(Class.class);
-                this.extractor = (IExtractor<T, ExtractorConfig<T>>) c.newInstance(config.getEntityClass());
+                session.extractor = (IExtractor<T, ExtractorConfig<T>>) c.newInstance(config.getEntityClass());
             }
 
         } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | IllegalArgumentException
@@ -169,18 +417,19 @@ public class ExtractorServerHandler<T> extends SimpleChannelInboundHandler<Actio
         }
     }
 
-    protected void initSave(InitSaveAction<T> initSaveAction) {
-        if (extractor == null) {
-            this.initExtractor(initSaveAction.getConfig());
+    protected void initSave(Session<T> session, InitSaveAction<T> initSaveAction) {
+        if (session.extractor == null) {
+            this.initExtractor(session, initSaveAction.getConfig());
         }
 
-        extractor.initSave(initSaveAction.getConfig(), initSaveAction.getFirst(), initSaveAction.getQueryBuilder());
+        session.extractor.initSave(initSaveAction.getConfig(), initSaveAction.getFirst(),
+                initSaveAction.getQueryBuilder());
         return;
 
     }
 
-    protected void save(SaveAction<T> saveAction) {
-        extractor.saveRDD(saveAction.getRecord());
+    protected void save(Session<T> session, SaveAction<T> saveAction) {
+        session.extractor.saveRDD(saveAction.getRecord());
         return;
 
     }
@@ -66,6 +66,66 @@ public interface ExtractorConstants {
      * The PAGE _ sIZE.
      */
     String PAGE_SIZE = "page";
+    /**
+     * Number of pages fetched ahead of the one being read.
+     */
+    String PREFETCH_DEPTH = "prefetchDepth";
+    /**
+     * Maximum number of token ranges split concurrently when computing the partitions.
+     */
+    String SPLIT_DISCOVERY_PARALLELISM = "splitDiscoveryParallelism";
+    /**
+     * Milliseconds during which computed token range splits are reused.
+     */
+    String SPLITS_CACHE_TTL = "splitsCacheTtl";
+    /**
+     * Approximate number of bytes of data read by every partition.
+     */
+    String TARGET_PARTITION_SIZE = "targetPartitionSize";
+    /**
+     * Number of sub-ranges of a partition read concurrently.
+     */
+    String SUB_RANGE_CONCURRENCY = "subRangeConcurrency";
+    /**
+     * Maximum number of batches being written at the same time.
+     */
+    String WRITE_CONCURRENCY = "writeConcurrency";
+    /**
+     * Number of times a failed batch is retried.
+     */
+    String WRITE_RETRIES = "writeRetries";
+    /**
+     * Milliseconds to wait before the first retry of a failed batch.
+     */
+    String WRITE_RETRY_BACKOFF = "writeRetryBackoff";
+    /**
+     * Connections opened to every host of the cluster.
+     */
+    String CONNECTIONS_PER_HOST = "connectionsPerHost";
+    /**
+     * Maximum simultaneous requests on a connection before opening another one.
+     */
+    String MAX_REQUESTS_PER_CONNECTION = "maxRequestsPerConnection";
+    /**
+     * Milliseconds an unused session is kept open.
+     */
+    String SESSION_IDLE_TIMEOUT = "sessionIdleTimeout";
+    /**
+     * Whether to save by writing SSTables instead of CQL batches.
+     */
+    String BULK_LOAD = "bulkLoad";
+    /**
+     * Local directory where SSTables are written when bulk loading.
+     */
+    String BULK_LOAD_DIRECTORY = "bulkLoadDirectory";
+    /**
+     * Whether written SSTables are streamed to the cluster when bulk loading.
+     */
+    String BULK_LOAD_STREAM = "bulkLoadStream";
+    /**
+     * Number of primary keys whose counter increments are summed before writing them.
+     */
+    String COUNTER_AGGREGATION_SIZE = "counterAggregationSize";
     /**
      * The SESSION.
      */
@@ -199,6 +259,16 @@ public interface ExtractorConstants {
      */
     String SPLIT_SIZE = "splitSize";
 
+    /**
+     * The aggregation pipeline run on every partition, as a JSON array of stages.
+     */
+    String PIPELINE = "pipeline";
+
+    /**
+     * The number of documents per batch fetched by the cursors.
+     */
+    String CURSOR_BATCH_SIZE = "cursorBatchSize";
+
     /**
      * The EQUALS _ IN _ FILTER.
      */
@@ -304,4 +374,14 @@ public interface ExtractorConstants {
 
 
     String WRITE_MODE = "writeMode";
+
+    /**
+     * The number of records per batch pushed by a remote extractor.
+     */
+    String EXTRACTOR_BATCH_SIZE = "extractorBatchSize";
+
+    /**
+     * The number of batches a remote extractor may push ahead of the client.
+     */
+    String EXTRACTOR_PREFETCH = "extractorPrefetch";
 }
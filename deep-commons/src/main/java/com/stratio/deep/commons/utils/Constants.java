@@ -35,10 +35,42 @@ public final class Constants {
     public static final int DEFAULT_PAGE_SIZE = 1000;
     public static final int DEFAULT_MAX_PAGE_SIZE = 10000;
 
+    public static final int DEFAULT_PREFETCH_DEPTH = 1;
+
     public static final int DEFAULT_BISECT_FACTOR = 1;
 
     public static final int DEFAULT_SPLIT_SIZE = 100000;
 
+    public static final int DEFAULT_SPLIT_DISCOVERY_PARALLELISM = 8;
+
+    public static final long DEFAULT_SPLITS_CACHE_TTL = 0;
+
+    public static final long DEFAULT_TARGET_PARTITION_SIZE = 0;
+
+    public static final int DEFAULT_SUB_RANGE_CONCURRENCY = 1;
+
+    public static final int DEFAULT_WRITE_CONCURRENCY = 4;
+
+    public static final int DEFAULT_WRITE_RETRIES = 3;
+
+    public static final long DEFAULT_WRITE_RETRY_BACKOFF = 100;
+
+    public static final int DEFAULT_CONNECTIONS_PER_HOST = 0;
+
+    public static final int DEFAULT_MAX_REQUESTS_PER_CONNECTION = 0;
+
+    public static final long DEFAULT_SESSION_IDLE_TIMEOUT = 60000;
+
+    public static final boolean DEFAULT_BULK_LOAD = false;
+
+    public static final boolean DEFAULT_BULK_LOAD_STREAM = true;
+
+    public static final int DEFAULT_COUNTER_AGGREGATION_SIZE = 10000;
+
+    public static final int DEFAULT_EXTRACTOR_BATCH_SIZE = 1000;
+
+    public static final int DEFAULT_EXTRACTOR_PREFETCH = 2;
+
     public static final String SPARK_PARTITION_ID = "spark.partition.id";
 
     public static final String SPARK_RDD_ID = "spark.rdd.id";
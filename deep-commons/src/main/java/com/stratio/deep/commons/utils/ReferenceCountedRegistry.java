@@ -0,0 +1,269 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Executor wide registry of resources which are expensive to open and can be shared, such as clients and sessions.
+ * <p>
+ * Resources are reference counted: every {@link #retain} must be paired with a {@link #release}. Resources nobody is
+ * using are closed once they have been idle for the timeout they were opened with, in the background or, if the
+ * timeout is 0, as soon as they are released. Looking up an open resource does not take any lock, while resources
+ * are opened and closed under the lock of the registry. The resources still open are closed when the JVM exits.
+ * </p>
+ *
+ * @param <K> the type of the keys identifying the resources.
+ * @param <V> the type of the resources.
+ */
+public final class ReferenceCountedRegistry<K, V> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReferenceCountedRegistry.class);
+
+    /**
+     * Milliseconds between two runs of the idle resource eviction.
+     */
+    private static final long EVICTION_PERIOD = 5000;
+
+    /**
+     * Opens and closes the resources of a registry, always under the lock of the registry.
+     *
+     * @param <K> the type of the keys identifying the resources.
+     * @param <V> the type of the resources.
+     */
+    public interface Handler<K, V> {
+
+        /**
+         * Opens the resource identified by the given key.
+         *
+         * @param key the key.
+         * @return the resource.
+         */
+        V open(K key);
+
+        /**
+         * Closes a resource nobody is using anymore.
+         *
+         * @param key      the key of the resource.
+         * @param resource the resource.
+         */
+        void close(K key, V resource);
+    }
+
+    private final String name;
+
+    private final Handler<K, V> handler;
+
+    private final ConcurrentMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<V, Entry<K, V>> resources = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a registry and starts the eviction of its idle resources.
+     *
+     * @param name    the name of the resources, used in logs and thread names.
+     * @param handler the handler opening and closing the resources.
+     */
+    public ReferenceCountedRegistry(String name, Handler<K, V> handler) {
+        this.name = name;
+        this.handler = handler;
+
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("deep-" + name + "-evictor-%d").setDaemon(true).build());
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdle(System.currentTimeMillis());
+            }
+        }, EVICTION_PERIOD, EVICTION_PERIOD, TimeUnit.MILLISECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                closeAll();
+            }
+        });
+    }
+
+    /**
+     * Returns the resource identified by the given key, opening it if it is not open yet. The resource must be handed
+     * back with {@link #release} once it is no longer used.
+     *
+     * @param key         the key of the resource.
+     * @param idleTimeout the milliseconds the resource is kept open once nobody uses it, if it has to be opened.
+     * @return the resource.
+     */
+    public V retain(K key, long idleTimeout) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry != null && entry.retain()) {
+            LOG.trace("Found open {} for key {{}}", name, key);
+            return entry.resource;
+        }
+
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.retain()) {
+                return entry.resource;
+            }
+
+            LOG.debug("No open {} found for key {{}}", name, key);
+            V resource = handler.open(key);
+
+            entry = new Entry<>(key, resource, idleTimeout);
+            resources.put(resource, entry);
+            entries.put(key, entry);
+            return resource;
+        }
+    }
+
+    /**
+     * Hands back a resource obtained from {@link #retain}. Resources not opened by this registry are ignored.
+     *
+     * @param resource the resource no longer used.
+     */
+    public void release(V resource) {
+        if (resource == null) {
+            return;
+        }
+
+        Entry<K, V> entry = resources.get(resource);
+        if (entry == null) {
+            return;
+        }
+
+        if (!entry.release()) {
+            LOG.warn("The {} for key {{}} has been released more times than retained", name, entry.key);
+            return;
+        }
+
+        if (entry.idleTimeout == 0) {
+            evict(entry, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Closes the resources nobody has used for their idle timeout.
+     *
+     * @param now the current time in milliseconds.
+     */
+    void evictIdle(long now) {
+        for (Entry<K, V> entry : entries.values()) {
+            evict(entry, now);
+        }
+    }
+
+    /**
+     * Closes the given resource if nobody has used it for its idle timeout.
+     */
+    private void evict(Entry<K, V> entry, long now) {
+        synchronized (entries) {
+            if (!entry.tryClose(now)) {
+                return;
+            }
+
+            LOG.debug("Closing idle {} for key {{}}", name, entry.key);
+            close(entry);
+        }
+    }
+
+    /**
+     * Closes all the open resources, whether they are used or not.
+     */
+    private void closeAll() {
+        synchronized (entries) {
+            for (Entry<K, V> entry : entries.values()) {
+                entry.references.set(-1);
+                close(entry);
+            }
+        }
+    }
+
+    private void close(Entry<K, V> entry) {
+        entries.remove(entry.key, entry);
+        resources.remove(entry.resource, entry);
+        try {
+            handler.close(entry.key, entry.resource);
+        } catch (RuntimeException e) {
+            LOG.warn("Cannot close " + name + " for key {" + entry.key + "}", e);
+        }
+    }
+
+    /**
+     * A shared resource and its reference count, which is -1 once the resource has been closed.
+     */
+    private static final class Entry<K, V> {
+        private final K key;
+        private final V resource;
+        private final long idleTimeout;
+        private final AtomicInteger references = new AtomicInteger(1);
+        private volatile long idleSince;
+
+        private Entry(K key, V resource, long idleTimeout) {
+            this.key = key;
+            this.resource = resource;
+            this.idleTimeout = idleTimeout;
+        }
+
+        /**
+         * Takes a reference to the resource, unless it has already been closed.
+         */
+        private boolean retain() {
+            for (; ; ) {
+                int current = references.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Gives back a reference to the resource, unless nobody holds one.
+         */
+        private boolean release() {
+            for (; ; ) {
+                int current = references.get();
+                if (current <= 0) {
+                    return false;
+                }
+                idleSince = System.currentTimeMillis();
+                if (references.compareAndSet(current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Marks the resource as closed if nobody has used it for its idle timeout.
+         */
+        private boolean tryClose(long now) {
+            return references.get() == 0 && now - idleSince >= idleTimeout && references.compareAndSet(0, -1);
+        }
+    }
+}
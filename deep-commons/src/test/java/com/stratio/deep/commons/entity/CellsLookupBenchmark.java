@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.entity;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Micro-benchmark of {@link Cells#getCellByName(String)} on 100 column rows, comparing the name index with the
+ * linear scan over the cell lists it replaced.
+ * <p>
+ * It is not run by the test phase; run it with
+ * {@code mvn -pl deep-commons test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.stratio.deep.commons.entity.CellsLookupBenchmark}.
+ * </p>
+ */
+public final class CellsLookupBenchmark {
+
+    private static final int COLUMNS = 100;
+
+    private static final int ROWS = 1000;
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int ROUNDS = 10;
+
+    /**
+     * Prevents the JIT from discarding the lookups.
+     */
+    private static int sink;
+
+    private CellsLookupBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        String[] names = new String[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            names[i] = "column" + i;
+        }
+
+        Cells[] rows = new Cells[ROWS];
+        for (int r = 0; r < ROWS; r++) {
+            rows[r] = new Cells("table");
+            for (int i = 0; i < COLUMNS; i++) {
+                rows[r].add(Cell.create(names[i], i));
+            }
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            scan(rows, names);
+            index(rows, names, true);
+            index(rows, names, false);
+        }
+
+        long scan = 0;
+        long coldIndex = 0;
+        long warmIndex = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            scan += scan(rows, names);
+            coldIndex += index(rows, names, true);
+            warmIndex += index(rows, names, false);
+        }
+
+        long lookups = (long) ROUNDS * ROWS * COLUMNS;
+        System.out.printf("linear scan:               %.1f ns/lookup%n", (double) scan / lookups);
+        System.out.printf("name index, built:         %.1f ns/lookup%n", (double) coldIndex / lookups);
+        System.out.printf("name index, already built: %.1f ns/lookup%n", (double) warmIndex / lookups);
+        System.out.println(sink);
+    }
+
+    /**
+     * Looks up every column of every row through the name index. When <i>rebuild</i> is true the index of each row
+     * is dropped first, so its cost is included as it is for the rows read by an extractor.
+     */
+    private static long index(Cells[] rows, String[] names, boolean rebuild) {
+        if (rebuild) {
+            for (Cells row : rows) {
+                row.addAll(Collections.<String, List<Cell>>emptyMap());
+            }
+        }
+
+        long start = System.nanoTime();
+        for (Cells row : rows) {
+            for (String name : names) {
+                sink += row.getCellByName(name).getCellName().length();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Looks up every column of every row the way {@link Cells#getCellByName(String)} did before the name index.
+     */
+    private static long scan(Cells[] rows, String[] names) {
+        long start = System.nanoTime();
+        for (Cells row : rows) {
+            for (String name : names) {
+                sink += scan(row, name).getCellName().length();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static Cell scan(Cells row, String cellName) {
+        for (Map.Entry<String, List<Cell>> entry : row.getInternalCells().entrySet()) {
+            for (Cell c : entry.getValue()) {
+                if (c.getCellName().equals(cellName)) {
+                    return c;
+                }
+            }
+        }
+        return null;
+    }
+}
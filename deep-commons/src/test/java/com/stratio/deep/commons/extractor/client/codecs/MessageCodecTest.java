@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.extractor.client.codecs;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.stratio.deep.commons.extractor.actions.ActionType;
+import com.stratio.deep.commons.extractor.response.NextBatchResponse;
+import com.stratio.deep.commons.extractor.response.Response;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+@Test
+public class MessageCodecTest {
+
+    public void testJavaRoundTrip() {
+        checkRoundTrip(new JavaMessageCodec(), new JavaMessageCodec(), 0);
+    }
+
+    public void testKryoRoundTrip() {
+        checkRoundTrip(new KryoMessageCodec(null), new KryoMessageCodec(null), 0);
+    }
+
+    public void testKryoCompressedRoundTrip() {
+        ByteBuf frame = checkRoundTrip(new KryoMessageCodec(null), new KryoMessageCodec(null), 64);
+
+        assertEquals(frame.getByte(4), MessageEncoder.LZ4);
+    }
+
+    private ByteBuf checkRoundTrip(MessageCodec encoderCodec, MessageCodec decoderCodec, int compressionThreshold) {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            records.add("record");
+        }
+
+        EmbeddedChannel out = new EmbeddedChannel(new MessageEncoder<Response>(encoderCodec, compressionThreshold) {
+        });
+        EmbeddedChannel in = new EmbeddedChannel(new MessageDecoder(decoderCodec) {
+        });
+
+        out.writeOutbound(new NextBatchResponse<>(records, true), new NextBatchResponse<>(records, false));
+
+        ByteBuf first = (ByteBuf) out.readOutbound();
+        ByteBuf second = (ByteBuf) out.readOutbound();
+        ByteBuf frame = first.copy();
+
+        // the second frame arrives split in two reads
+        in.writeInbound(first, second.readSlice(3).retain());
+        in.writeInbound(second);
+
+        NextBatchResponse<String> firstResponse = (NextBatchResponse<String>) in.readInbound();
+        NextBatchResponse<String> secondResponse = (NextBatchResponse<String>) in.readInbound();
+
+        assertEquals(firstResponse.getType(), ActionType.NEXT_BATCH);
+        assertEquals(firstResponse.getData(), records);
+        assertTrue(firstResponse.isLast());
+        assertEquals(secondResponse.getData(), records);
+
+        return frame;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.extractor.server;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.apache.spark.Partition;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.stratio.deep.commons.config.ExtractorConfig;
+import com.stratio.deep.commons.entity.Cells;
+import com.stratio.deep.commons.extractor.actions.Action;
+import com.stratio.deep.commons.extractor.actions.ActionType;
+import com.stratio.deep.commons.extractor.actions.CloseAction;
+import com.stratio.deep.commons.extractor.actions.HasNextAction;
+import com.stratio.deep.commons.extractor.actions.InitIteratorAction;
+import com.stratio.deep.commons.extractor.actions.NextAction;
+import com.stratio.deep.commons.extractor.actions.NextBatchAction;
+import com.stratio.deep.commons.extractor.actions.SaveAction;
+import com.stratio.deep.commons.extractor.response.CloseResponse;
+import com.stratio.deep.commons.extractor.response.ErrorResponse;
+import com.stratio.deep.commons.extractor.response.HasNextResponse;
+import com.stratio.deep.commons.extractor.response.InitIteratorResponse;
+import com.stratio.deep.commons.extractor.response.NextBatchResponse;
+import com.stratio.deep.commons.extractor.response.NextResponse;
+import com.stratio.deep.commons.extractor.response.Response;
+import com.stratio.deep.commons.querybuilder.UpdateQueryBuilder;
+import com.stratio.deep.commons.rdd.IExtractor;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+
+@Test
+public class ExtractorServerHandlerTest {
+
+    static final String RECORDS = "records";
+
+    static final String FAIL = "fail";
+
+    public void testActionOfUnknownSessionIsRejected() {
+        EmbeddedChannel channel = newChannel(MoreExecutors.sameThreadExecutor());
+
+        channel.writeInbound(withSession(7, new HasNextAction<Cells>()));
+        channel.writeInbound(withSession(7, new SaveAction<>(new Cells())));
+
+        assertError(channel, 7, ActionType.HAS_NEXT);
+        assertError(channel, 7, ActionType.SAVE);
+        assertTrue(channel.isActive());
+    }
+
+    public void testCloseOfUnknownSession() {
+        EmbeddedChannel channel = newChannel(MoreExecutors.sameThreadExecutor());
+
+        channel.writeInbound(withSession(3, new CloseAction()));
+
+        Response response = (Response) channel.readOutbound();
+        assertTrue(response instanceof CloseResponse);
+        assertEquals(response.getSessionId(), 3);
+
+        // the close did not open the session
+        channel.writeInbound(withSession(3, new HasNextAction<Cells>()));
+        assertError(channel, 3, ActionType.HAS_NEXT);
+    }
+
+    public void testSessionLifecycle() {
+        EmbeddedChannel channel = newChannel(MoreExecutors.sameThreadExecutor());
+
+        channel.writeInbound(withSession(1, new InitIteratorAction<>(null, config(1))));
+        channel.writeInbound(withSession(1, new HasNextAction<Cells>()));
+        channel.writeInbound(withSession(1, new NextAction<Cells>()));
+        channel.writeInbound(withSession(1, new HasNextAction<Cells>()));
+        channel.writeInbound(withSession(1, new CloseAction()));
+
+        assertTrue(channel.readOutbound() instanceof InitIteratorResponse);
+        assertTrue(((HasNextResponse) channel.readOutbound()).getData());
+        assertEquals(((NextResponse<Cells>) channel.readOutbound()).getData(), new Cells());
+        assertFalse(((HasNextResponse) channel.readOutbound()).getData());
+        assertTrue(channel.readOutbound() instanceof CloseResponse);
+
+        // a message arriving after the close does not reopen the session
+        channel.writeInbound(withSession(1, new NextAction<Cells>()));
+        assertError(channel, 1, ActionType.NEXT);
+    }
+
+    public void testFailedActionAnswersError() {
+        EmbeddedChannel channel = newChannel(MoreExecutors.sameThreadExecutor());
+
+        ExtractorConfig<Cells> config = config(1);
+        config.putValue(FAIL, true);
+        channel.writeInbound(withSession(2, new InitIteratorAction<>(null, config)));
+
+        assertError(channel, 2, ActionType.INIT_ITERATOR);
+        assertTrue(channel.isActive());
+
+        // the other sessions of the connection keep working
+        channel.writeInbound(withSession(4, new InitIteratorAction<>(null, config(0))));
+        channel.writeInbound(withSession(4, new HasNextAction<Cells>()));
+
+        assertTrue(channel.readOutbound() instanceof InitIteratorResponse);
+        assertFalse(((HasNextResponse) channel.readOutbound()).getData());
+    }
+
+    public void testExtractorCallsRunOnWorkers() {
+        QueueExecutor workers = new QueueExecutor();
+        EmbeddedChannel channel = newChannel(workers);
+
+        channel.writeInbound(withSession(1, new InitIteratorAction<>(null, config(1))));
+        channel.writeInbound(withSession(1, new HasNextAction<Cells>()));
+        channel.writeInbound(withSession(2, new InitIteratorAction<>(null, config(0))));
+
+        // nothing runs on the event loop, and the actions of a session are run by a single task
+        assertNull(channel.readOutbound());
+        assertEquals(workers.tasks.size(), 2);
+
+        workers.runAll();
+
+        Response response = (Response) channel.readOutbound();
+        assertTrue(response instanceof InitIteratorResponse);
+        assertEquals(response.getSessionId(), 1);
+        assertTrue(((HasNextResponse) channel.readOutbound()).getData());
+        response = (Response) channel.readOutbound();
+        assertTrue(response instanceof InitIteratorResponse);
+        assertEquals(response.getSessionId(), 2);
+    }
+
+    public void testNextBatchWithoutStreaming() {
+        EmbeddedChannel channel = newChannel(MoreExecutors.sameThreadExecutor());
+
+        channel.writeInbound(withSession(1, new InitIteratorAction<>(null, config(2))));
+        channel.writeInbound(withSession(1, new NextBatchAction<Cells>(1)));
+        channel.writeInbound(withSession(1, new NextBatchAction<Cells>(1)));
+
+        assertTrue(channel.readOutbound() instanceof InitIteratorResponse);
+        assertBatch(channel, 1, false);
+        assertBatch(channel, 1, true);
+        assertNull(channel.readOutbound());
+    }
+
+    public void testStreamingHonoursBatchSizeAndCredits() {
+        EmbeddedChannel channel = newChannel(MoreExecutors.sameThreadExecutor());
+
+        channel.writeInbound(withSession(1, new InitIteratorAction<>(null, config(5), 2, 1)));
+
+        assertTrue(channel.readOutbound() instanceof InitIteratorResponse);
+        assertBatch(channel, 2, false);
+        // a single batch is pushed for the single prefetch credit
+        assertNull(channel.readOutbound());
+
+        channel.writeInbound(withSession(1, new NextBatchAction<Cells>(2)));
+
+        assertBatch(channel, 2, false);
+        assertBatch(channel, 1, true);
+        assertNull(channel.readOutbound());
+
+        // credits granted after the last batch push nothing
+        channel.writeInbound(withSession(1, new NextBatchAction<Cells>(1)));
+        assertNull(channel.readOutbound());
+    }
+
+    public void testStreamingEndsOnExactBatch() {
+        EmbeddedChannel channel = newChannel(MoreExecutors.sameThreadExecutor());
+
+        channel.writeInbound(withSession(1, new InitIteratorAction<>(null, config(4), 2, 3)));
+
+        assertTrue(channel.readOutbound() instanceof InitIteratorResponse);
+        assertBatch(channel, 2, false);
+        assertBatch(channel, 2, true);
+        assertNull(channel.readOutbound());
+    }
+
+    public void testStreamingEmptyIterator() {
+        EmbeddedChannel channel = newChannel(MoreExecutors.sameThreadExecutor());
+
+        channel.writeInbound(withSession(1, new InitIteratorAction<>(null, config(0), 2, 2)));
+
+        assertTrue(channel.readOutbound() instanceof InitIteratorResponse);
+        assertBatch(channel, 0, true);
+        assertNull(channel.readOutbound());
+    }
+
+    public void testStreamingRestartsWithNewIterator() {
+        EmbeddedChannel channel = newChannel(MoreExecutors.sameThreadExecutor());
+
+        channel.writeInbound(withSession(1, new InitIteratorAction<>(null, config(1), 2, 1)));
+        channel.writeInbound(withSession(1, new InitIteratorAction<>(null, config(3), 2, 1)));
+
+        assertTrue(channel.readOutbound() instanceof InitIteratorResponse);
+        assertBatch(channel, 1, true);
+        assertTrue(channel.readOutbound() instanceof InitIteratorResponse);
+        assertBatch(channel, 2, false);
+        assertNull(channel.readOutbound());
+    }
+
+    static EmbeddedChannel newChannel(Executor workers) {
+        return new EmbeddedChannel(new ExtractorServerHandler<Cells>(workers));
+    }
+
+    static ExtractorConfig<Cells> config(int records) {
+        ExtractorConfig<Cells> config = new ExtractorConfig<>(Cells.class);
+        config.setExtractorImplClass(TestExtractor.class);
+        config.putValue(RECORDS, records);
+        return config;
+    }
+
+    static Action withSession(int sessionId, Action action) {
+        action.setSessionId(sessionId);
+        return action;
+    }
+
+    private static void assertError(EmbeddedChannel channel, int sessionId, ActionType type) {
+        Response response = (Response) channel.readOutbound();
+        assertTrue(response instanceof ErrorResponse);
+        assertEquals(response.getSessionId(), sessionId);
+        assertEquals(response.getType(), type);
+    }
+
+    private static void assertBatch(EmbeddedChannel channel, int size, boolean last) {
+        NextBatchResponse<Cells> batch = (NextBatchResponse<Cells>) channel.readOutbound();
+        assertEquals(batch.getSessionId(), 1);
+        assertEquals(batch.getData().size(), size);
+        assertEquals(batch.isLast(), last);
+    }
+
+    /**
+     * Runs the submitted tasks when asked to.
+     */
+    static class QueueExecutor implements Executor {
+
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * Iterates over the number of empty rows given by the {@link #RECORDS} config value.
+     */
+    public static class TestExtractor implements IExtractor<Cells, ExtractorConfig<Cells>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private int remaining;
+
+        @Override
+        public Partition[] getPartitions(ExtractorConfig<Cells> config) {
+            return new Partition[0];
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Cells next() {
+            remaining--;
+            return new Cells();
+        }
+
+        @Override
+        public void close() {
+            remaining = 0;
+        }
+
+        @Override
+        public void initIterator(Partition dp, ExtractorConfig<Cells> config) {
+            if (Boolean.TRUE.equals(config.getBoolean(FAIL))) {
+                throw new IllegalStateException("Unreachable data store");
+            }
+            remaining = config.getInteger(RECORDS);
+        }
+
+        @Override
+        public void saveRDD(Cells cells) {
+        }
+
+        @Override
+        public List<String> getPreferredLocations(Partition split) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void initSave(ExtractorConfig<Cells> config, Cells first, UpdateQueryBuilder queryBuilder) {
+        }
+    }
+}
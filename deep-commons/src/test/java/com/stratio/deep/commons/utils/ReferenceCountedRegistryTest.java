@@ -0,0 +1,196 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.commons.utils;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+@Test
+public class ReferenceCountedRegistryTest {
+
+    /**
+     * A resource recording whether it has been closed.
+     */
+    private static final class Resource {
+        private final String key;
+        private volatile boolean closed;
+
+        private Resource(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Opens resources, failing for the key "fail", and counts the opened and closed ones.
+     */
+    private static final class RecordingHandler implements ReferenceCountedRegistry.Handler<String, Resource> {
+        private final AtomicInteger opened = new AtomicInteger();
+        private final AtomicInteger closed = new AtomicInteger();
+
+        @Override
+        public Resource open(String key) {
+            if ("fail".equals(key)) {
+                throw new IllegalStateException("cannot open " + key);
+            }
+            opened.incrementAndGet();
+            return new Resource(key);
+        }
+
+        @Override
+        public void close(String key, Resource resource) {
+            assertEquals(resource.key, key);
+            resource.closed = true;
+            closed.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testResourceIsSharedUntilLastRelease() {
+        RecordingHandler handler = new RecordingHandler();
+        ReferenceCountedRegistry<String, Resource> registry = new ReferenceCountedRegistry<>("test", handler);
+
+        Resource first = registry.retain("a", 0);
+        Resource second = registry.retain("a", 0);
+        assertSame(first, second);
+        assertEquals(handler.opened.get(), 1);
+
+        registry.release(first);
+        assertFalse(first.closed);
+
+        registry.release(second);
+        assertTrue(first.closed);
+
+        Resource third = registry.retain("a", 0);
+        assertNotSame(third, first);
+        assertEquals(handler.opened.get(), 2);
+        registry.release(third);
+    }
+
+    @Test
+    public void testIdleResourceIsClosedAfterItsTimeout() {
+        RecordingHandler handler = new RecordingHandler();
+        ReferenceCountedRegistry<String, Resource> registry = new ReferenceCountedRegistry<>("test", handler);
+
+        Resource resource = registry.retain("a", 1000);
+        registry.release(resource);
+        long released = System.currentTimeMillis();
+
+        registry.evictIdle(released - 1);
+        assertFalse(resource.closed);
+        assertSame(registry.retain("a", 1000), resource);
+
+        registry.evictIdle(released + 10000);
+        assertFalse(resource.closed, "a used resource must not be closed");
+
+        registry.release(resource);
+        registry.evictIdle(System.currentTimeMillis() + 10000);
+        assertTrue(resource.closed);
+    }
+
+    @Test
+    public void testExtraReleaseIsIgnored() {
+        RecordingHandler handler = new RecordingHandler();
+        ReferenceCountedRegistry<String, Resource> registry = new ReferenceCountedRegistry<>("test", handler);
+
+        Resource resource = registry.retain("a", 1000);
+        registry.release(resource);
+        registry.release(resource);
+
+        // the count did not go below 0, so the next user holds the only reference
+        assertSame(registry.retain("a", 1000), resource);
+        registry.evictIdle(System.currentTimeMillis() + 10000);
+        assertFalse(resource.closed);
+
+        registry.release(resource);
+        registry.evictIdle(System.currentTimeMillis() + 10000);
+        assertTrue(resource.closed);
+        assertEquals(handler.closed.get(), 1);
+    }
+
+    @Test
+    public void testUnknownResourceIsIgnored() {
+        ReferenceCountedRegistry<String, Resource> registry =
+                new ReferenceCountedRegistry<>("test", new RecordingHandler());
+
+        registry.release(null);
+        registry.release(new Resource("unknown"));
+    }
+
+    @Test
+    public void testFailedOpenIsNotRegistered() {
+        RecordingHandler handler = new RecordingHandler();
+        ReferenceCountedRegistry<String, Resource> registry = new ReferenceCountedRegistry<>("test", handler);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                registry.retain("fail", 0);
+                fail("opening the resource should fail");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        assertEquals(handler.opened.get(), 0);
+    }
+
+    @Test
+    public void testClosedResourceIsNeverHandedOut() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        final ReferenceCountedRegistry<String, Resource> registry = new ReferenceCountedRegistry<>("test", handler);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 1000; j++) {
+                            Resource resource = registry.retain("a", 0);
+                            // the resource is retained, so it cannot be closed while it is checked
+                            assertFalse(resource.closed);
+                            registry.release(resource);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(handler.closed.get(), handler.opened.get());
+    }
+}
@@ -15,6 +15,7 @@
 package com.stratio.deep.core.context;
 
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.activation.UnsupportedDataTypeException;
@@ -191,6 +192,22 @@ public class DeepSparkContext extends JavaSparkContext implements Serializable {
         }
     }
 
+    /**
+     * Creates a JavaSchemaRDD from a DeepJobConfig and a JavaSQLContext, reading only the given columns from the
+     * data store. Use it to read only the columns referenced by the SparkSQL queries to be run on the result.
+     * @param config Specific Deep ExtractorConfig.
+     * @param columns Columns to read. Key columns are always read.
+     * @return A JavaSchemaRDD built from Cells.
+     * @throws UnsupportedDataTypeException
+     */
+    public JavaSchemaRDD createJavaSchemaRDD(ExtractorConfig<Cells> config, String... columns)
+            throws UnsupportedDataTypeException, UnsupportedOperationException {
+        ExtractorConfig<Cells> projected = config.clone();
+        projected.setValues(new HashMap<>(config.getValues()));
+        projected.putValue(ExtractorConstants.INPUT_COLUMNS, columns);
+        return createJavaSchemaRDD(projected);
+    }
+
     /**
      * Executes a SparkSQL query over the configured JavaSQLContext.
      * @param query SparkSQL query.
@@ -20,21 +20,19 @@ import javax.net.ssl.SSLException;
 
 import org.apache.spark.Partition;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.stratio.deep.commons.config.ExtractorConfig;
 import com.stratio.deep.commons.exception.DeepExtractorInitializationException;
+import com.stratio.deep.commons.extractor.response.NextBatchResponse;
+import com.stratio.deep.commons.extractor.response.Response;
 import com.stratio.deep.commons.querybuilder.UpdateQueryBuilder;
 import com.stratio.deep.commons.rdd.IExtractor;
 
-import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.ssl.SslContext;
-import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 
 /**
- * Sends a list of continent/city pairs to a {@link } to get the local times of the specified cities.
+ * Extractor that delegates to a remote extractor server through a session opened on one of the shared
+ * connections of the {@link ExtractorConnectionPool}.
  */
 public class ExtractorClient<T> implements IExtractor<T, ExtractorConfig<T>> {
 
@@ -42,34 +40,45 @@ public class ExtractorClient<T> implements IExtractor<T, ExtractorConfig<T>> {
 
     static final String HOST = System.getProperty("host", "127.0.0.1");
     static final int PORT = Integer.parseInt(System.getProperty("port", "8463"));
-    private static final long serialVersionUID = -7076154908311072669L;
+    /**
+     * The system property setting the maximum time in milliseconds the blocking methods wait for an answer of the
+     * server, two minutes by default.
+     */
+    static final String TIMEOUT_PROPERTY = "deep.extractor.timeout";
 
-    private transient EventLoopGroup group = new NioEventLoopGroup();
+    /**
+     * Maximum time in milliseconds the blocking methods wait for an answer of the server.
+     */
+    static final long TIMEOUT = timeout(System.getProperty(TIMEOUT_PROPERTY, "120000"));
+    private static final long serialVersionUID = -7076154908311072669L;
 
     private transient Channel ch;
 
     private ExtractorClientHandler<T> handler;
 
-    public ExtractorClient initialize() throws DeepExtractorInitializationException {
+    /**
+     * @return the timeout in milliseconds set by the given property value
+     * @throws IllegalArgumentException if the value is not a number greater than zero
+     */
+    static long timeout(String value) {
+        long timeout;
         try {
-            // Configure SSL.
-            final SslContext sslCtx;
-            if (SSL) {
-
-                sslCtx = SslContext.newClientContext(InsecureTrustManagerFactory.INSTANCE);
-
-            } else {
-                sslCtx = null;
-            }
-
-            Bootstrap b = new Bootstrap();
-            b.group(group).channel(NioSocketChannel.class).handler(new ExtractorClientInitializer<T>(sslCtx));
+            timeout = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(TIMEOUT_PROPERTY + " must be a number, got '" + value + "'", e);
+        }
+        if (timeout < 1) {
+            throw new IllegalArgumentException(TIMEOUT_PROPERTY + " must be at least 1, got " + timeout);
+        }
+        return timeout;
+    }
 
-            // Make a new connection.
-            this.ch = b.connect(HOST, PORT).sync().channel();
+    public ExtractorClient initialize() throws DeepExtractorInitializationException {
+        try {
+            this.ch = ExtractorConnectionPool.acquire();
 
-            // Get the handler instance to initiate the request.
-            this.handler = ch.pipeline().get(ExtractorClientHandler.class);
+            // Open the session used to initiate the requests.
+            this.handler = ch.pipeline().get(ExtractorClientDispatcher.class).openSession();
         } catch (SSLException | InterruptedException e) {
             throw new DeepExtractorInitializationException(e);
 
@@ -77,9 +86,42 @@ public class ExtractorClient<T> implements IExtractor<T, ExtractorConfig<T>> {
         return this;
     }
 
+    /**
+     * Releases the session, the connection stays open for other clients.
+     */
     public void finish() {
-        ch.close();
-        group.shutdownGracefully();
+        ch.pipeline().get(ExtractorClientDispatcher.class).closeSession(handler);
+    }
+
+    /**
+     * @see ExtractorClientHandler#await(ListenableFuture)
+     */
+    public <R> R await(ListenableFuture<R> future) {
+        return handler.await(future);
+    }
+
+    public ListenableFuture<Partition[]> getPartitionsAsync(ExtractorConfig<T> config) {
+        return handler.getPartitionsAsync(config);
+    }
+
+    public ListenableFuture<Response> initIteratorAsync(Partition dp, ExtractorConfig<T> config) {
+        return handler.initIteratorAsync(dp, config);
+    }
+
+    /**
+     * @see ExtractorClientHandler#nextBatchAsync()
+     */
+    public ListenableFuture<NextBatchResponse<T>> nextBatchAsync() {
+        return handler.nextBatchAsync();
+    }
+
+    public ListenableFuture<Response> initSaveAsync(ExtractorConfig<T> config, T first,
+                                                    UpdateQueryBuilder queryBuilder) {
+        return handler.initSaveAsync(config, first, queryBuilder);
+    }
+
+    public ListenableFuture<Response> saveRDDAsync(T t) {
+        return handler.saveRDDAsync(t);
     }
 
     @Override
@@ -115,6 +157,7 @@ public class ExtractorClient<T> implements IExtractor<T, ExtractorConfig<T>> {
     @Override
     public void close() {
         handler.close();
+        finish();
         return;
     }
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.core.extractor.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.stratio.deep.commons.exception.DeepIOException;
+import com.stratio.deep.commons.extractor.response.Response;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+
+/**
+ * Routes the responses received on a shared connection to the {@link ExtractorClientHandler} of their session.
+ */
+public class ExtractorClientDispatcher extends SimpleChannelInboundHandler<Response> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExtractorClientDispatcher.class);
+
+    private final ConcurrentMap<Integer, ExtractorClientHandler<?>> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicInteger sessionIds = new AtomicInteger();
+
+    private volatile Channel channel;
+
+    public ExtractorClientDispatcher() {
+        super(true);
+    }
+
+    @Override
+    public void channelRegistered(ChannelHandlerContext ctx) {
+        channel = ctx.channel();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        DeepIOException cause = new DeepIOException("Connection to the extractor server closed");
+        for (ExtractorClientHandler<?> handler : sessions.values()) {
+            handler.fail(cause);
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        cause.printStackTrace();
+        ctx.close();
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, Response msg) throws Exception {
+        ExtractorClientHandler<?> handler = sessions.get(msg.getSessionId());
+        if (handler == null) {
+            LOG.warn("Discarding response " + msg.getType() + " of unknown session " + msg.getSessionId());
+            return;
+        }
+
+        handler.receive(msg);
+    }
+
+    /**
+     * Opens a new session on this connection.
+     *
+     * @return the handler of the new session
+     */
+    public <T> ExtractorClientHandler<T> openSession() {
+        ExtractorClientHandler<T> handler = new ExtractorClientHandler<>(channel, sessionIds.incrementAndGet());
+        sessions.put(handler.getSessionId(), handler);
+        return handler;
+    }
+
+    /**
+     * Releases a session, responses still in flight for it are discarded.
+     *
+     * @param handler the handler of the session
+     */
+    public void closeSession(ExtractorClientHandler<?> handler) {
+        sessions.remove(handler.getSessionId());
+    }
+}
@@ -14,188 +14,431 @@
  */
 package com.stratio.deep.core.extractor.client;
 
+import static com.stratio.deep.commons.utils.Constants.DEFAULT_EXTRACTOR_BATCH_SIZE;
+import static com.stratio.deep.commons.utils.Constants.DEFAULT_EXTRACTOR_PREFETCH;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.spark.Partition;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.stratio.deep.commons.config.ExtractorConfig;
+import com.stratio.deep.commons.exception.DeepIOException;
+import com.stratio.deep.commons.extractor.actions.Action;
+import com.stratio.deep.commons.extractor.actions.ActionType;
 import com.stratio.deep.commons.extractor.actions.CloseAction;
 import com.stratio.deep.commons.extractor.actions.GetPartitionsAction;
 import com.stratio.deep.commons.extractor.actions.HasNextAction;
 import com.stratio.deep.commons.extractor.actions.InitIteratorAction;
 import com.stratio.deep.commons.extractor.actions.InitSaveAction;
 import com.stratio.deep.commons.extractor.actions.NextAction;
+import com.stratio.deep.commons.extractor.actions.NextBatchAction;
 import com.stratio.deep.commons.extractor.actions.SaveAction;
+import com.stratio.deep.commons.extractor.response.ErrorResponse;
 import com.stratio.deep.commons.extractor.response.GetPartitionsResponse;
 import com.stratio.deep.commons.extractor.response.HasNextResponse;
+import com.stratio.deep.commons.extractor.response.NextBatchResponse;
 import com.stratio.deep.commons.extractor.response.NextResponse;
 import com.stratio.deep.commons.extractor.response.Response;
+import com.stratio.deep.commons.extractor.utils.ExtractorConstants;
 import com.stratio.deep.commons.querybuilder.UpdateQueryBuilder;
 import com.stratio.deep.commons.rdd.IExtractor;
 
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.SimpleChannelInboundHandler;
-
-public class ExtractorClientHandler<T> extends SimpleChannelInboundHandler<Response> implements
-        IExtractor<T, ExtractorConfig<T>> {
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+
+/**
+ * Client side of one extractor session. Several sessions share the same connection, the
+ * {@link ExtractorClientDispatcher} hands each of them the responses carrying its session id.
+ * <p>
+ * Every request has a non-blocking variant returning a future. The server answers the requests of a session in
+ * order, so each sent action registers the future of its response at the end of a queue. The blocking variants wait
+ * for those futures at most {@link ExtractorClient#TIMEOUT} milliseconds.
+ * </p>
+ */
+public class ExtractorClientHandler<T> implements IExtractor<T, ExtractorConfig<T>> {
 
     private static final long serialVersionUID = -5313035259708180308L;
     // Stateful properties
-    private volatile Channel channel;
+    private final transient Channel channel;
+
+    private final int sessionId;
+
+    /**
+     * Responses expected from the server, in the order the actions were sent. Guarded by itself.
+     */
+    private final transient Queue<PendingResponse> pending = new ArrayDeque<>();
+
+    /**
+     * Futures of the batches the server has been granted credits for, in the order they will be pushed.
+     */
+    private final transient Queue<ListenableFuture<Response>> batches = new ArrayDeque<>();
+
+    /**
+     * True if the current iterator receives its records as batches pushed by the server.
+     */
+    private boolean streaming;
+
+    /**
+     * True once the server has pushed the last batch of the current iterator. Guarded by {@link #pending}.
+     */
+    private boolean lastBatchPushed;
+
+    /**
+     * True once the last batch of the current iterator has been consumed by the blocking iterator methods.
+     */
+    private boolean lastBatchConsumed;
+
+    private Iterator<T> currentBatch;
+
+    private static final class PendingResponse {
+
+        private final ActionType type;
 
-    private final BlockingQueue<Response> answer = new LinkedBlockingQueue<Response>();
+        private final SettableFuture<Response> future = SettableFuture.create();
 
-    public ExtractorClientHandler() {
-        super(true);
+        private Response response;
+
+        private Throwable failure;
+
+        private PendingResponse(ActionType type) {
+            this.type = type;
+        }
+
+        private PendingResponse answer(Response response) {
+            this.response = response;
+            return this;
+        }
+
+        private PendingResponse fail(Throwable failure) {
+            this.failure = failure;
+            return this;
+        }
+
+        /**
+         * Completes the future with the recorded outcome. It is called without holding the lock on
+         * {@link #pending}, so the future callbacks never run under it.
+         */
+        private void complete() {
+            if (failure != null) {
+                future.setException(failure);
+            } else {
+                future.set(response);
+            }
+        }
     }
 
-    @Override
-    public void channelRegistered(ChannelHandlerContext ctx) {
-        channel = ctx.channel();
+    ExtractorClientHandler(Channel channel, int sessionId) {
+        this.channel = channel;
+        this.sessionId = sessionId;
     }
 
-    @Override
-    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        cause.printStackTrace();
-        ctx.close();
+    public int getSessionId() {
+        return sessionId;
     }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see io.netty.channel.SimpleChannelInboundHandler#channelRead0(io.netty.channel.ChannelHandlerContext ,
-     * java.lang.Object)
+    /**
+     * Receives a response addressed to this session. Batches the server did not need to push, because the iterator
+     * was exhausted, are completed as empty last batches. An {@link ErrorResponse} fails the request it answers, and
+     * also the pending batches when it answers the iterator initialization or a batch.
+     *
+     * @param msg the response
      */
-    @Override
-    protected void channelRead0(ChannelHandlerContext ctx, Response msg) throws Exception {
-        answer.add(msg);
+    void receive(Response msg) {
+        List<PendingResponse> completed = new ArrayList<>();
+
+        synchronized (pending) {
+            PendingResponse head;
+            while ((head = pending.poll()) != null) {
+                if (head.type == msg.getType()) {
+                    if (msg instanceof ErrorResponse) {
+                        DeepIOException cause = new DeepIOException(((ErrorResponse) msg).getMessage());
+                        completed.add(head.fail(cause));
+                        if (head.type == ActionType.INIT_ITERATOR || head.type == ActionType.NEXT_BATCH) {
+                            lastBatchPushed = true;
+                            pollUnusedBatches(completed, null, cause);
+                        }
+                    } else {
+                        completed.add(head.answer(msg));
+                        if (msg instanceof NextBatchResponse && ((NextBatchResponse<T>) msg).isLast()) {
+                            lastBatchPushed = true;
+                            pollUnusedBatches(completed, emptyLastBatch(), null);
+                        }
+                    }
+                    break;
+                }
+                if (head.type == ActionType.NEXT_BATCH) {
+                    completed.add(head.answer(emptyLastBatch()));
+                } else {
+                    completed.add(head.fail(new DeepIOException("No " + head.type + " response received")));
+                }
+            }
+        }
+
+        for (PendingResponse response : completed) {
+            response.complete();
+        }
     }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see com.stratio.deep.rdd.IDeepRDD#getPartitions(org.apache.spark.broadcast.Broadcast, int)
+    /**
+     * Polls the batches pending at the head of the queue, which the server will never push.
      */
-    @Override
-    public Partition[] getPartitions(ExtractorConfig<T> config) {
+    private void pollUnusedBatches(List<PendingResponse> completed, Response response, Throwable failure) {
+        PendingResponse head;
+        while ((head = pending.peek()) != null && head.type == ActionType.NEXT_BATCH) {
+            completed.add(pending.poll().answer(response).fail(failure));
+        }
+    }
 
-        GetPartitionsAction<T> getPartitionsAction = new GetPartitionsAction<>(config);
+    private NextBatchResponse<T> emptyLastBatch() {
+        return new NextBatchResponse<>(Collections.<T>emptyList(), true);
+    }
+
+    /**
+     * Fails every pending request of this session.
+     *
+     * @param cause the failure cause
+     */
+    void fail(Throwable cause) {
+        List<PendingResponse> failed;
+        synchronized (pending) {
+            failed = new ArrayList<>(pending);
+            pending.clear();
+        }
 
-        channel.writeAndFlush(getPartitionsAction);
+        for (PendingResponse response : failed) {
+            response.fail(cause).complete();
+        }
+    }
 
-        Response response;
-        boolean interrupted = false;
-        for (; ; ) {
-            try {
-                response = answer.take();
-                break;
-            } catch (InterruptedException ignore) {
-                interrupted = true;
-            }
+    /**
+     * Sends the given action and registers the future of its response.
+     *
+     * @param action   the action
+     * @param expected the type of the expected response
+     * @return the future response
+     */
+    private ListenableFuture<Response> send(Action action, ActionType expected) {
+        action.setSessionId(sessionId);
+        PendingResponse response = new PendingResponse(expected);
+
+        synchronized (pending) {
+            pending.add(response);
+            channel.writeAndFlush(action).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (!future.isSuccess()) {
+                        fail(future.cause());
+                    }
+                }
+            });
         }
 
-        if (interrupted) {
+        return response.future;
+    }
+
+    /**
+     * Waits for the given future at most {@link ExtractorClient#TIMEOUT} milliseconds.
+     *
+     * @param future the future
+     * @return the future value
+     * @throws DeepIOException if the future fails, times out or the current thread is interrupted
+     */
+    public <R> R await(ListenableFuture<R> future) {
+        return await(future, ExtractorClient.TIMEOUT);
+    }
+
+    /**
+     * Waits for the given future at most the given time, cancelling it on timeout.
+     *
+     * @param future  the future
+     * @param timeout the maximum time to wait in milliseconds
+     * @return the future value
+     * @throws DeepIOException if the future fails, times out or the current thread is interrupted
+     */
+    <R> R await(ListenableFuture<R> future, long timeout) {
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(false);
             Thread.currentThread().interrupt();
+            throw new DeepIOException("Interrupted while waiting for the extractor server", e);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new DeepIOException("The extractor server did not answer in " + timeout + " ms", e);
+        } catch (ExecutionException e) {
+            throw new DeepIOException(e.getCause());
+        } catch (CancellationException e) {
+            throw new DeepIOException(e);
         }
+    }
+
+    private static <R extends Response> Function<Response, R> cast() {
+        return new Function<Response, R>() {
+            @Override
+            public R apply(Response response) {
+                return (R) response;
+            }
+        };
+    }
+
+    public ListenableFuture<Partition[]> getPartitionsAsync(ExtractorConfig<T> config) {
+        GetPartitionsAction<T> getPartitionsAction = new GetPartitionsAction<>(config);
 
-        return ((GetPartitionsResponse) response).getPartitions();
+        return Futures.transform(send(getPartitionsAction, ActionType.GET_PARTITIONS),
+                new Function<Response, Partition[]>() {
+                    @Override
+                    public Partition[] apply(Response response) {
+                        return ((GetPartitionsResponse) response).getPartitions();
+                    }
+                });
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.stratio.deep.rdd.IDeepRDD#getPartitions(org.apache.spark.broadcast.Broadcast, int)
+     */
     @Override
-    public void close() {
-        CloseAction closeAction = new CloseAction();
-
-        channel.writeAndFlush(closeAction);
-
-        Response response;
-        boolean interrupted = false;
-        for (; ; ) {
-            try {
-                response = answer.take();
-                break;
-            } catch (InterruptedException ignore) {
-                interrupted = true;
-            }
-        }
+    public Partition[] getPartitions(ExtractorConfig<T> config) {
+        return await(getPartitionsAsync(config));
+    }
 
-        if (interrupted) {
-            Thread.currentThread().interrupt();
+    public ListenableFuture<Response> closeAsync() {
+        synchronized (pending) {
+            streaming = false;
+            currentBatch = null;
+            batches.clear();
+            return send(new CloseAction(), ActionType.CLOSE);
         }
+    }
 
+    @Override
+    public void close() {
+        await(closeAsync());
         return;
     }
 
     @Override
     public boolean hasNext() {
-        HasNextAction hasNextAction = new HasNextAction<>();
-
-        channel.writeAndFlush(hasNextAction);
-
-        Response response;
-        boolean interrupted = false;
-        for (; ; ) {
-            try {
-                response = answer.take();
-                break;
-            } catch (InterruptedException ignore) {
-                interrupted = true;
-            }
+        if (streaming) {
+            return hasNextInBatch();
         }
 
-        if (interrupted) {
-            Thread.currentThread().interrupt();
-        }
+        HasNextAction hasNextAction = new HasNextAction<>();
+
+        Response response = await(send(hasNextAction, ActionType.HAS_NEXT));
 
         return ((HasNextResponse) response).getData();
     }
 
     @Override
     public T next() {
+        if (streaming) {
+            if (!hasNextInBatch()) {
+                throw new NoSuchElementException();
+            }
+            return currentBatch.next();
+        }
+
         NextAction<T> nextAction = new NextAction<>();
 
-        channel.writeAndFlush(nextAction);
+        Response response = await(send(nextAction, ActionType.NEXT));
+
+        return ((NextResponse<T>) response).getData();
+    }
 
-        Response response;
-        boolean interrupted = false;
-        for (; ; ) {
-            try {
-                response = answer.take();
-                break;
-            } catch (InterruptedException ignore) {
-                interrupted = true;
+    private boolean hasNextInBatch() {
+        while (currentBatch == null || !currentBatch.hasNext()) {
+            if (lastBatchConsumed) {
+                return false;
             }
-        }
 
-        if (interrupted) {
-            Thread.currentThread().interrupt();
+            NextBatchResponse<T> batch = await(nextBatchAsync());
+            lastBatchConsumed = batch.isLast();
+            currentBatch = batch.getData().iterator();
         }
 
-        return ((NextResponse<T>) response).getData();
+        return true;
     }
 
-    @Override
-    public void initIterator(Partition dp, ExtractorConfig<T> config) {
-        InitIteratorAction<T> initIteratorAction = new InitIteratorAction<>(dp, config);
-
-        channel.writeAndFlush(initIteratorAction);
-
-        Response response;
-        boolean interrupted = false;
-        for (; ; ) {
-            try {
-                response = answer.take();
-                break;
-            } catch (InterruptedException ignore) {
-                interrupted = true;
+    /**
+     * Returns the next batch of records of the current iterator. It must not be called again once a batch flagged
+     * as last has been returned.
+     * <p>
+     * In streaming mode every call gives a credit back to the server, so it keeps reading ahead while the batch is
+     * being consumed. Otherwise the server answers with a batch holding the next record, flagged as last when the
+     * iterator has no more records, in a single round trip.
+     * </p>
+     *
+     * @return the future batch
+     */
+    public ListenableFuture<NextBatchResponse<T>> nextBatchAsync() {
+        ListenableFuture<Response> batch;
+        if (!streaming) {
+            batch = send(new NextBatchAction<T>(1), ActionType.NEXT_BATCH);
+        } else {
+            synchronized (pending) {
+                batch = batches.poll();
+                if (batch == null) {
+                    return Futures.immediateFuture(emptyLastBatch());
+                }
+                if (!lastBatchPushed) {
+                    batches.add(send(new NextBatchAction<T>(1), ActionType.NEXT_BATCH));
+                }
             }
         }
 
-        if (interrupted) {
-            Thread.currentThread().interrupt();
+        return Futures.transform(batch, ExtractorClientHandler.<NextBatchResponse<T>>cast(),
+                MoreExecutors.sameThreadExecutor());
+    }
+
+    public ListenableFuture<Response> initIteratorAsync(Partition dp, ExtractorConfig<T> config) {
+        Integer batchSize = config.getInteger(ExtractorConstants.EXTRACTOR_BATCH_SIZE);
+        Integer prefetch = config.getInteger(ExtractorConstants.EXTRACTOR_PREFETCH);
+
+        InitIteratorAction<T> initIteratorAction = new InitIteratorAction<>(dp, config,
+                batchSize != null ? batchSize : DEFAULT_EXTRACTOR_BATCH_SIZE,
+                prefetch != null ? Math.max(prefetch, 1) : DEFAULT_EXTRACTOR_PREFETCH);
+
+        synchronized (pending) {
+            streaming = initIteratorAction.isStreaming();
+            lastBatchPushed = false;
+            lastBatchConsumed = false;
+            currentBatch = null;
+            batches.clear();
+
+            ListenableFuture<Response> response = send(initIteratorAction, ActionType.INIT_ITERATOR);
+            if (streaming) {
+                // the server pushes the first batches without waiting for credits
+                for (int i = 0; i < initIteratorAction.getPrefetch(); i++) {
+                    PendingResponse batch = new PendingResponse(ActionType.NEXT_BATCH);
+                    pending.add(batch);
+                    batches.add(batch.future);
+                }
+            }
+            return response;
         }
+    }
+
+    @Override
+    public void initIterator(Partition dp, ExtractorConfig<T> config) {
+        await(initIteratorAsync(dp, config));
         return;
     }
 
@@ -205,51 +448,28 @@ public class ExtractorClientHandler<T> extends SimpleChannelInboundHandler<Respo
      * @see com.stratio.deep.commons.rdd.IExtractor#saveRDD(java.lang.Object,
      * com.stratio.deep.commons.functions.SaveFunction)
      */
-    @Override
-    public void saveRDD(T t) {
+    public ListenableFuture<Response> saveRDDAsync(T t) {
         SaveAction<T> saveAction = new SaveAction<>(t);
 
-        channel.writeAndFlush(saveAction);
-
-        Response response;
-        boolean interrupted = false;
-        for (; ; ) {
-            try {
-                response = answer.take();
-                break;
-            } catch (InterruptedException ignore) {
-                interrupted = true;
-            }
-        }
-
-        if (interrupted) {
-            Thread.currentThread().interrupt();
-        }
+        return send(saveAction, ActionType.SAVE);
+    }
 
+    @Override
+    public void saveRDD(T t) {
+        await(saveRDDAsync(t));
         return;
     }
 
-    @Override
-    public void initSave(ExtractorConfig<T> config, T first, UpdateQueryBuilder queryBuilder) {
+    public ListenableFuture<Response> initSaveAsync(ExtractorConfig<T> config, T first,
+                                                    UpdateQueryBuilder queryBuilder) {
         InitSaveAction<T> initSaveAction = new InitSaveAction<>(config, first, queryBuilder);
 
-        channel.writeAndFlush(initSaveAction);
-
-        Response response;
-        boolean interrupted = false;
-        for (; ; ) {
-            try {
-                response = answer.take();
-                break;
-            } catch (InterruptedException ignore) {
-                interrupted = true;
-            }
-        }
-
-        if (interrupted) {
-            Thread.currentThread().interrupt();
-        }
+        return send(initSaveAction, ActionType.INIT_SAVE);
+    }
 
+    @Override
+    public void initSave(ExtractorConfig<T> config, T first, UpdateQueryBuilder queryBuilder) {
+        await(initSaveAsync(config, first, queryBuilder));
         return;
     }
 
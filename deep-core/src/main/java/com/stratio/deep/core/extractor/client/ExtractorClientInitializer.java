@@ -22,7 +22,7 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.ssl.SslContext;
 
-public class ExtractorClientInitializer<T> extends ChannelInitializer<SocketChannel> {
+public class ExtractorClientInitializer extends ChannelInitializer<SocketChannel> {
 
     private final SslContext sslCtx;
 
@@ -40,6 +40,6 @@ public class ExtractorClientInitializer<T> extends ChannelInitializer<SocketChan
         p.addLast(new ResponseDecoder());
         p.addLast(new ActionEncoder());
 
-        p.addLast(new ExtractorClientHandler<T>());
+        p.addLast(new ExtractorClientDispatcher());
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.core.extractor.client;
+
+import javax.net.ssl.SSLException;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Long-lived connections to the extractor server shared by all the extractor clients of this JVM. Clients are
+ * assigned to connections round robin and open their own session on them, a connection is only re-established once
+ * it is no longer active.
+ */
+final class ExtractorConnectionPool {
+
+    /**
+     * The system property setting the number of connections, two by default.
+     */
+    static final String CONNECTIONS_PROPERTY = "deep.extractor.connections";
+
+    static final int CONNECTIONS = connections(System.getProperty(CONNECTIONS_PROPERTY, "2"));
+
+    private static final Channel[] channels = new Channel[CONNECTIONS];
+
+    private static EventLoopGroup group;
+
+    private static SslContext sslCtx;
+
+    private static int next;
+
+    private ExtractorConnectionPool() {
+    }
+
+    /**
+     * @return the number of connections set by the given property value
+     * @throws IllegalArgumentException if the value is not a number greater than zero
+     */
+    static int connections(String value) {
+        int connections;
+        try {
+            connections = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(CONNECTIONS_PROPERTY + " must be a number, got '" + value + "'", e);
+        }
+        if (connections < 1) {
+            throw new IllegalArgumentException(CONNECTIONS_PROPERTY + " must be at least 1, got " + connections);
+        }
+        return connections;
+    }
+
+    /**
+     * @return an active connection to the extractor server
+     */
+    static synchronized Channel acquire() throws SSLException, InterruptedException {
+        int index = next;
+        next = (next + 1) % CONNECTIONS;
+
+        Channel channel = channels[index];
+        if (channel == null || !channel.isActive()) {
+            channel = connect();
+            channels[index] = channel;
+        }
+
+        return channel;
+    }
+
+    private static Channel connect() throws SSLException, InterruptedException {
+        if (group == null) {
+            // Configure SSL.
+            if (ExtractorClient.SSL) {
+                sslCtx = SslContext.newClientContext(InsecureTrustManagerFactory.INSTANCE);
+            }
+            group = new NioEventLoopGroup(0, new DefaultThreadFactory("deep-extractor-client", true));
+        }
+
+        Bootstrap b = new Bootstrap();
+        b.group(group).channel(NioSocketChannel.class).handler(new ExtractorClientInitializer(sslCtx));
+
+        // Make a new connection.
+        return b.connect(ExtractorClient.HOST, ExtractorClient.PORT).sync().channel();
+    }
+}
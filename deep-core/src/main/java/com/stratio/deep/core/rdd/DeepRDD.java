@@ -21,7 +21,9 @@ import static scala.collection.JavaConversions.asScalaBuffer;
 import static scala.collection.JavaConversions.asScalaIterator;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.apache.spark.InterruptibleIterator;
 import org.apache.spark.Partition;
@@ -30,10 +32,13 @@ import org.apache.spark.TaskContext;
 import org.apache.spark.broadcast.Broadcast;
 import org.apache.spark.rdd.RDD;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.stratio.deep.commons.config.BaseConfig;
 import com.stratio.deep.commons.exception.DeepExtractorInitializationException;
 import com.stratio.deep.commons.exception.DeepIOException;
+import com.stratio.deep.commons.extractor.response.NextBatchResponse;
 import com.stratio.deep.commons.rdd.IExtractor;
+import com.stratio.deep.core.extractor.client.ExtractorClient;
 
 import scala.Function1;
 import scala.Unit;
@@ -96,6 +101,11 @@ public class DeepRDD<T, S extends BaseConfig> extends RDD<T> implements Serializ
             }
         });
 
+        if (extractorClient instanceof ExtractorClient) {
+            ExtractorClient<T> remoteClient = (ExtractorClient<T>) (IExtractor) extractorClient;
+            return new InterruptibleIterator<>(context, asScalaIterator(new ReadAheadIterator<>(remoteClient)));
+        }
+
         java.util.Iterator<T> iterator = new java.util.Iterator<T>() {
 
             @Override
@@ -140,4 +150,50 @@ public class DeepRDD<T, S extends BaseConfig> extends RDD<T> implements Serializ
 
     }
 
+    /**
+     * Iterates over the records of a remote extractor, keeping the request of the next batch in flight while the
+     * current one is consumed.
+     */
+    private static class ReadAheadIterator<T> implements java.util.Iterator<T> {
+
+        private final ExtractorClient<T> client;
+
+        private ListenableFuture<NextBatchResponse<T>> nextBatch;
+
+        private java.util.Iterator<T> currentBatch = Collections.emptyIterator();
+
+        ReadAheadIterator(ExtractorClient<T> client) {
+            this.client = client;
+            this.nextBatch = client.nextBatchAsync();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!currentBatch.hasNext()) {
+                if (nextBatch == null) {
+                    return false;
+                }
+
+                NextBatchResponse<T> batch = client.await(nextBatch);
+                nextBatch = batch.isLast() ? null : client.nextBatchAsync();
+                currentBatch = batch.getData().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return currentBatch.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new DeepIOException(
+                    "Method not implemented (and won't be implemented anytime soon!!!)");
+        }
+    }
+
 }
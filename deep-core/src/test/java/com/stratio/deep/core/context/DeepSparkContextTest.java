@@ -16,6 +16,8 @@
 
 package com.stratio.deep.core.context;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
@@ -41,10 +43,12 @@ import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.function.Function;
 import org.apache.spark.rdd.RDD;
 import org.apache.spark.sql.api.java.JavaSQLContext;
+import org.apache.spark.sql.api.java.JavaSchemaRDD;
 import org.apache.spark.sql.api.java.Row;
 import org.apache.spark.sql.api.java.StructType;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -117,6 +121,24 @@ public class DeepSparkContextTest {
         verify(sqlContext).applySchema(rowRDD, schema);
     }
 
+    @Test
+    public void createProjectedJavaSchemaRDDTest() throws Exception {
+        deepSparkContext = createDeepSparkContext();
+        DeepSparkContext deepSparkContextSpy = PowerMockito.spy(deepSparkContext);
+        ExtractorConfig<Cells> config = new ExtractorConfig<>(Cells.class);
+        JavaSchemaRDD schemaRDD = mock(JavaSchemaRDD.class);
+        PowerMockito.doReturn(schemaRDD).when(deepSparkContextSpy).createJavaSchemaRDD(any(ExtractorConfig.class));
+
+        assertSame(schemaRDD, deepSparkContextSpy.createJavaSchemaRDD(config, "id", "name"));
+
+        ArgumentCaptor<ExtractorConfig> projected = ArgumentCaptor.forClass(ExtractorConfig.class);
+        verify(deepSparkContextSpy).createJavaSchemaRDD(projected.capture());
+        assertArrayEquals(new String[] { "id", "name" },
+                projected.getValue().getStringArray(ExtractorConstants.INPUT_COLUMNS));
+        // the given configuration is left untouched
+        assertNull(config.getValues().get(ExtractorConstants.INPUT_COLUMNS));
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void createJavaSchemaFromEmptyRDDTest() throws Exception {
         deepSparkContext = createDeepSparkContext();
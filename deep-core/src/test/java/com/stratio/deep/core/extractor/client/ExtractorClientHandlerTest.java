@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.core.extractor.client;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.stratio.deep.commons.config.ExtractorConfig;
+import com.stratio.deep.commons.exception.DeepIOException;
+import com.stratio.deep.commons.extractor.actions.ActionType;
+import com.stratio.deep.commons.extractor.actions.CloseAction;
+import com.stratio.deep.commons.extractor.actions.InitIteratorAction;
+import com.stratio.deep.commons.extractor.actions.NextBatchAction;
+import com.stratio.deep.commons.extractor.response.CloseResponse;
+import com.stratio.deep.commons.extractor.response.ErrorResponse;
+import com.stratio.deep.commons.extractor.response.InitIteratorResponse;
+import com.stratio.deep.commons.extractor.response.NextBatchResponse;
+import com.stratio.deep.commons.extractor.response.Response;
+import com.stratio.deep.commons.extractor.utils.ExtractorConstants;
+
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+@Test
+public class ExtractorClientHandlerTest {
+
+    public void testInitIteratorGrantsPrefetchCredits() {
+        EmbeddedChannel channel = newChannel();
+        ExtractorClientHandler<String> client = new ExtractorClientHandler<>(channel, 5);
+
+        ListenableFuture<Response> init = client.initIteratorAsync(null, config(2, 3));
+
+        InitIteratorAction<String> action = (InitIteratorAction<String>) channel.readOutbound();
+        assertEquals(action.getSessionId(), 5);
+        assertEquals(action.getBatchSize(), 2);
+        assertEquals(action.getPrefetch(), 3);
+        assertFalse(init.isDone());
+
+        client.receive(new InitIteratorResponse());
+        assertTrue(init.isDone());
+    }
+
+    public void testEachConsumedBatchGrantsOneCredit() {
+        EmbeddedChannel channel = newChannel();
+        ExtractorClientHandler<String> client = new ExtractorClientHandler<>(channel, 5);
+
+        client.initIteratorAsync(null, config(2, 2));
+        channel.readOutbound();
+        client.receive(new InitIteratorResponse());
+        client.receive(new NextBatchResponse<>(Arrays.asList("a", "b"), false));
+        client.receive(new NextBatchResponse<>(Arrays.asList("c", "d"), false));
+
+        // no credit is granted until a batch is consumed
+        assertNull(channel.readOutbound());
+
+        assertTrue(client.hasNext());
+        assertCredit(channel);
+        assertEquals(client.next(), "a");
+        assertEquals(client.next(), "b");
+        assertNull(channel.readOutbound());
+
+        assertTrue(client.hasNext());
+        assertCredit(channel);
+        assertEquals(client.next(), "c");
+        assertEquals(client.next(), "d");
+
+        // the last batch answers the first credit, the second one is completed empty
+        client.receive(new NextBatchResponse<>(Arrays.asList("e"), true));
+
+        assertTrue(client.hasNext());
+        assertEquals(client.next(), "e");
+        assertFalse(client.hasNext());
+        // no credit is granted once the last batch has been pushed
+        assertNull(channel.readOutbound());
+    }
+
+    public void testLastBatchCompletesUnusedPrefetch() {
+        EmbeddedChannel channel = newChannel();
+        ExtractorClientHandler<String> client = new ExtractorClientHandler<>(channel, 5);
+
+        client.initIteratorAsync(null, config(10, 3));
+        channel.readOutbound();
+        client.receive(new InitIteratorResponse());
+        client.receive(new NextBatchResponse<>(Arrays.asList("a"), true));
+
+        assertTrue(client.hasNext());
+        assertEquals(client.next(), "a");
+        assertFalse(client.hasNext());
+        assertNull(channel.readOutbound());
+
+        // the unused prefetched batches no longer wait for a response
+        ListenableFuture<Response> close = client.closeAsync();
+        assertTrue(channel.readOutbound() instanceof CloseAction);
+        client.receive(new CloseResponse());
+        assertTrue(client.await(close) instanceof CloseResponse);
+    }
+
+    public void testNextBatchWithoutStreamingTakesOneRoundTrip() {
+        EmbeddedChannel channel = newChannel();
+        ExtractorClientHandler<String> client = new ExtractorClientHandler<>(channel, 5);
+
+        client.initIteratorAsync(null, config(0, 1));
+        channel.readOutbound();
+        client.receive(new InitIteratorResponse());
+
+        ListenableFuture<NextBatchResponse<String>> batch = client.nextBatchAsync();
+
+        NextBatchAction<String> action = (NextBatchAction<String>) channel.readOutbound();
+        assertEquals(action.getSessionId(), 5);
+        assertNull(channel.readOutbound());
+
+        client.receive(new NextBatchResponse<>(Arrays.asList("a"), true));
+        assertEquals(client.await(batch).getData(), Arrays.asList("a"));
+        assertTrue(client.await(batch).isLast());
+    }
+
+    public void testAwaitTimesOutAndCancels() {
+        EmbeddedChannel channel = newChannel();
+        ExtractorClientHandler<String> client = new ExtractorClientHandler<>(channel, 5);
+
+        ListenableFuture<Response> init = client.initIteratorAsync(null, config(0, 1));
+        try {
+            client.await(init, 10);
+            fail("The request should time out");
+        } catch (DeepIOException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(init.isCancelled());
+    }
+
+    public void testLateResponseOfCancelledRequestIsDiscarded() {
+        EmbeddedChannel channel = newChannel();
+        ExtractorClientHandler<String> client = new ExtractorClientHandler<>(channel, 5);
+
+        ListenableFuture<Response> init = client.initIteratorAsync(null, config(0, 1));
+        init.cancel(false);
+        ListenableFuture<Response> close = client.closeAsync();
+
+        try {
+            client.await(init);
+            fail("The request was cancelled");
+        } catch (DeepIOException e) {
+            assertTrue(e.getCause() instanceof CancellationException);
+        }
+
+        // the responses still match their requests in order
+        client.receive(new InitIteratorResponse());
+        assertFalse(close.isDone());
+        client.receive(new CloseResponse());
+        assertTrue(client.await(close) instanceof CloseResponse);
+    }
+
+    public void testErrorResponseFailsIteratorBatches() {
+        EmbeddedChannel channel = newChannel();
+        ExtractorClientHandler<String> client = new ExtractorClientHandler<>(channel, 5);
+
+        ListenableFuture<Response> init = client.initIteratorAsync(null, config(2, 2));
+        client.receive(new ErrorResponse(ActionType.INIT_ITERATOR, "Unreachable data store"));
+
+        assertFailed(client, init, "Unreachable data store");
+        assertFailed(client, client.nextBatchAsync(), "Unreachable data store");
+        assertFailed(client, client.nextBatchAsync(), "Unreachable data store");
+    }
+
+    public void testChannelInactiveFailsPendingRequests() {
+        ExtractorClientDispatcher dispatcher = new ExtractorClientDispatcher();
+        EmbeddedChannel channel = new EmbeddedChannel(dispatcher);
+        ExtractorClientHandler<String> client = dispatcher.openSession();
+
+        ListenableFuture<Response> init = client.initIteratorAsync(null, config(2, 1));
+        ListenableFuture<NextBatchResponse<String>> batch = client.nextBatchAsync();
+
+        channel.close();
+        // the channel becomes inactive in a task of its event loop
+        channel.runPendingTasks();
+
+        assertFailed(client, init, "Connection to the extractor server closed");
+        assertFailed(client, batch, "Connection to the extractor server closed");
+    }
+
+    private static void assertFailed(ExtractorClientHandler<String> client, ListenableFuture<?> future,
+                                     String message) {
+        assertTrue(future.isDone());
+        try {
+            client.await(future);
+            fail("The request should fail");
+        } catch (DeepIOException e) {
+            assertEquals(e.getCause().getMessage(), message);
+        }
+    }
+
+    private static ExtractorConfig<String> config(int batchSize, int prefetch) {
+        ExtractorConfig<String> config = new ExtractorConfig<>(String.class);
+        config.putValue(ExtractorConstants.EXTRACTOR_BATCH_SIZE, batchSize);
+        config.putValue(ExtractorConstants.EXTRACTOR_PREFETCH, prefetch);
+        return config;
+    }
+
+    /**
+     * Returns a channel recording the actions written to it, an embedded channel needing at least one handler.
+     */
+    private static EmbeddedChannel newChannel() {
+        return new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    }
+
+    private static void assertCredit(EmbeddedChannel channel) {
+        NextBatchAction<String> credit = (NextBatchAction<String>) channel.readOutbound();
+        assertEquals(credit.getSessionId(), 5);
+        assertEquals(credit.getCredits(), 1);
+    }
+}
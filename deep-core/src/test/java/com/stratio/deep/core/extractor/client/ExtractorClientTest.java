@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.core.extractor.client;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+
+@Test
+public class ExtractorClientTest {
+
+    public void testDefaultTimeout() {
+        assertEquals(ExtractorClient.TIMEOUT_PROPERTY, "deep.extractor.timeout");
+        assertEquals(ExtractorClient.TIMEOUT, 120000L);
+    }
+
+    public void testTimeoutIsParsed() {
+        assertEquals(ExtractorClient.timeout(" 500 "), 500L);
+    }
+
+    public void testZeroTimeoutIsRejected() {
+        try {
+            ExtractorClient.timeout("0");
+            fail("a zero timeout should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), "deep.extractor.timeout must be at least 1, got 0");
+        }
+    }
+}
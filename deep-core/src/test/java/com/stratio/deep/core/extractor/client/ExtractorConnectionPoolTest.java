@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.core.extractor.client;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+
+@Test
+public class ExtractorConnectionPoolTest {
+
+    public void testConnectionsAreParsed() {
+        assertEquals(ExtractorConnectionPool.connections("1"), 1);
+        assertEquals(ExtractorConnectionPool.connections(" 8 "), 8);
+    }
+
+    public void testDefaultConnections() {
+        assertEquals(ExtractorConnectionPool.CONNECTIONS_PROPERTY, "deep.extractor.connections");
+        assertEquals(ExtractorConnectionPool.CONNECTIONS, 2);
+    }
+
+    public void testZeroConnectionsAreRejected() {
+        assertRejected("0", "deep.extractor.connections must be at least 1, got 0");
+    }
+
+    public void testNegativeConnectionsAreRejected() {
+        assertRejected("-3", "deep.extractor.connections must be at least 1, got -3");
+    }
+
+    public void testNonNumericConnectionsAreRejected() {
+        assertRejected("two", "deep.extractor.connections must be a number, got 'two'");
+    }
+
+    private static void assertRejected(String value, String message) {
+        try {
+            ExtractorConnectionPool.connections(value);
+            fail(value + " connections should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), message);
+        }
+    }
+}
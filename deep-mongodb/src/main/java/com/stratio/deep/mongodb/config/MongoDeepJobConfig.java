@@ -16,9 +16,12 @@
 
 package com.stratio.deep.mongodb.config;
 
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.BATCHSIZE;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.CURSOR_BATCH_SIZE;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.FILTER_QUERY;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.IGNORE_ID_FIELD;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.INPUT_KEY;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.PIPELINE;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.READ_PREFERENCE;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.REPLICA_SET;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.SORT;
@@ -26,6 +29,7 @@ import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.SPLIT_
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.USE_CHUNKS;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.USE_SHARD;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.USE_SPLITS;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.WRITE_CONCURRENCY;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.WRITE_MODE;
 
 import java.io.Serializable;
@@ -43,14 +47,17 @@ import com.mongodb.DBObject;
 import com.mongodb.QueryBuilder;
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteConcern;
+import com.mongodb.util.JSON;
 import com.mongodb.hadoop.util.MongoConfigUtil;
 import com.stratio.deep.commons.config.ExtractorConfig;
 import com.stratio.deep.commons.config.HadoopConfig;
 import com.stratio.deep.commons.entity.Cells;
 import com.stratio.deep.commons.filter.Filter;
 import com.stratio.deep.commons.filter.FilterType;
+import com.stratio.deep.commons.utils.Constants;
 import com.stratio.deep.mongodb.extractor.MongoNativeCellExtractor;
 import com.stratio.deep.mongodb.extractor.MongoNativeEntityExtractor;
+import com.stratio.deep.mongodb.writer.MongoWriter;
 
 /**
  * The type Mongo deep job config.
@@ -129,6 +136,26 @@ public class MongoDeepJobConfig<T> extends HadoopConfig<T, MongoDeepJobConfig<T>
 
     private WriteConcern writeConcern = WriteConcern.NORMAL;
 
+    /**
+     * The number of documents per bulk write.
+     */
+    private int batchSize = MongoWriter.DEFAULT_BATCH_SIZE;
+
+    /**
+     * The maximum number of bulk writes in flight.
+     */
+    private int writeConcurrency = Constants.DEFAULT_WRITE_CONCURRENCY;
+
+    /**
+     * OPTIONAL aggregation pipeline run on every partition
+     */
+    private List<DBObject> pipeline;
+
+    /**
+     * The number of documents per cursor batch, 0 for the server default.
+     */
+    private int cursorBatchSize = 0;
+
 
     public MongoDeepJobConfig() {
     }
@@ -434,6 +461,18 @@ public class MongoDeepJobConfig<T> extends HadoopConfig<T, MongoDeepJobConfig<T>
         if (table == null) {
             throw new IllegalArgumentException("collection cannot be null");
         }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than zero");
+        }
+        if (writeConcurrency <= 0) {
+            throw new IllegalArgumentException("writeConcurrency must be greater than zero");
+        }
+        if (cursorBatchSize < 0) {
+            throw new IllegalArgumentException("cursorBatchSize cannot be negative");
+        }
+        if (pipeline != null && fields != null && !fields.keySet().isEmpty()) {
+            throw new IllegalArgumentException("fields cannot be used with a pipeline, add a $project stage instead");
+        }
 
         concantHostPort();
     }
@@ -523,6 +562,22 @@ public class MongoDeepJobConfig<T> extends HadoopConfig<T, MongoDeepJobConfig<T>
             writeConcern((WriteConcern) extractorConfig.getValue(WriteConcern.class, WRITE_MODE));
         }
 
+        if (values.get(BATCHSIZE) != null) {
+            batchSize(extractorConfig.getInteger(BATCHSIZE));
+        }
+
+        if (values.get(WRITE_CONCURRENCY) != null) {
+            writeConcurrency(extractorConfig.getInteger(WRITE_CONCURRENCY));
+        }
+
+        if (values.get(PIPELINE) != null) {
+            pipeline(extractorConfig.getString(PIPELINE));
+        }
+
+        if (values.get(CURSOR_BATCH_SIZE) != null) {
+            cursorBatchSize(extractorConfig.getInteger(CURSOR_BATCH_SIZE));
+        }
+
 
         this.initialize();
 
@@ -675,6 +730,88 @@ public class MongoDeepJobConfig<T> extends HadoopConfig<T, MongoDeepJobConfig<T>
         return this;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of documents saved in every unordered bulk write.
+     *
+     * @param batchSize the number of documents.
+     * @return this object.
+     */
+    public MongoDeepJobConfig<T> batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public int getWriteConcurrency() {
+        return writeConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of bulk writes in flight at the same time for every saved partition.
+     *
+     * @param writeConcurrency the number of bulk writes.
+     * @return this object.
+     */
+    public MongoDeepJobConfig<T> writeConcurrency(int writeConcurrency) {
+        this.writeConcurrency = writeConcurrency;
+        return this;
+    }
+
+    public List<DBObject> getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Sets an aggregation pipeline run by every partition instead of a find. Every partition runs it as an aggregate
+     * whose first stage is a $match on the partition range and the filter query, so $group stages compute partial
+     * results per partition. It cannot be combined with the fields projection: project with a $project stage instead.
+     *
+     * @param pipeline the pipeline stages.
+     * @return this object.
+     */
+    public MongoDeepJobConfig<T> pipeline(List<DBObject> pipeline) {
+        this.pipeline = pipeline;
+        return this;
+    }
+
+    /**
+     * Sets the aggregation pipeline run by every partition, as a JSON array of stages.
+     *
+     * @param pipeline the pipeline stages.
+     * @return this object.
+     * @see #pipeline(List)
+     */
+    public MongoDeepJobConfig<T> pipeline(String pipeline) {
+        Object stages = JSON.parse(pipeline);
+        if (!(stages instanceof List)) {
+            throw new IllegalArgumentException("pipeline must be a JSON array of stages");
+        }
+
+        List<DBObject> pipelineStages = new ArrayList<>();
+        for (Object stage : (List) stages) {
+            pipelineStages.add((DBObject) stage);
+        }
+        return pipeline(pipelineStages);
+    }
+
+    public int getCursorBatchSize() {
+        return cursorBatchSize;
+    }
+
+    /**
+     * Sets the number of documents fetched in every batch by the cursors of the partitions.
+     *
+     * @param cursorBatchSize the number of documents, 0 for the server default.
+     * @return this object.
+     */
+    public MongoDeepJobConfig<T> cursorBatchSize(int cursorBatchSize) {
+        this.cursorBatchSize = cursorBatchSize;
+        return this;
+    }
+
     public MongoDeepJobConfig<T> query(DBObject query) {
         this.query = query;
         return this;
@@ -707,6 +844,10 @@ public class MongoDeepJobConfig<T> extends HadoopConfig<T, MongoDeepJobConfig<T>
         sb.append(", splitsUseChunks=").append(splitsUseChunks);
         sb.append(", splitSize=").append(splitSize);
         sb.append(", writeConcern=").append(writeConcern);
+        sb.append(", batchSize=").append(batchSize);
+        sb.append(", writeConcurrency=").append(writeConcurrency);
+        sb.append(", pipeline=").append(pipeline);
+        sb.append(", cursorBatchSize=").append(cursorBatchSize);
         sb.append(", customConfiguration=").append(customConfiguration);
         sb.append('}');
         sb.append(super.toString());
@@ -29,7 +29,10 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.spark.Partition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.mongodb.AggregationOutput;
 import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
 import com.mongodb.BasicDBObjectBuilder;
@@ -39,7 +42,8 @@ import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
-import com.mongodb.QueryBuilder;
+import com.mongodb.MongoCredential;
+import com.mongodb.MongoException;
 import com.mongodb.ReadPreference;
 import com.mongodb.ServerAddress;
 import com.stratio.deep.commons.config.BaseConfig;
@@ -50,10 +54,10 @@ import com.stratio.deep.commons.impl.DeepPartition;
 import com.stratio.deep.commons.querybuilder.UpdateQueryBuilder;
 import com.stratio.deep.commons.rdd.DeepTokenRange;
 import com.stratio.deep.commons.rdd.IExtractor;
-import com.stratio.deep.commons.utils.Pair;
 import com.stratio.deep.mongodb.config.MongoDeepJobConfig;
 import com.stratio.deep.mongodb.partition.MongoPartition;
 import com.stratio.deep.mongodb.reader.MongoReader;
+import com.stratio.deep.mongodb.utils.MongoClientProvider;
 import com.stratio.deep.mongodb.writer.MongoWriter;
 
 /**
@@ -74,10 +78,17 @@ public abstract class MongoNativeExtractor<T, S extends BaseConfig> implements I
      */
     private static final long serialVersionUID = -4020891863696443624L;
 
+    private static final Logger LOG = LoggerFactory.getLogger(MongoNativeExtractor.class);
+
+    /**
+     * The number of sampled keys per split when estimating the split keys.
+     */
+    private static final int SAMPLES_PER_SPLIT = 10;
+
     /**
-     * The Split size.
+     * Bytes in a megabyte, the unit of the split size.
      */
-    private int splitSize = 10;
+    private static final long MB = 1024L * 1024L;
 
     /**
      * The constant MONGO_DEFAULT_ID.
@@ -110,24 +121,45 @@ public abstract class MongoNativeExtractor<T, S extends BaseConfig> implements I
 
             List<ServerAddress> addressList = new ArrayList<>();
             addressList.add(address);
-            mongoClient = new MongoClient(addressList);
+            mongoClient = MongoClientProvider.getClient(addressList, Collections.<MongoCredential>emptyList(),
+                    ReadPreference.nearest());
 
-            mongoClient.setReadPreference(ReadPreference.nearest());
             DB db = mongoClient.getDB(mongoDeepJobConfig.getDatabase());
             collection = db.getCollection(mongoDeepJobConfig.getCollection());
-            return isShardedCollection(collection) ? calculateShardChunks(collection) : calculateSplits(collection);
+            if (!mongoDeepJobConfig.isCreateInputSplit()) {
+                // the whole collection, the cast tells the range constructors apart
+                return new DeepPartition[] { new MongoPartition(mongoDeepJobConfig.getRddId(), 0,
+                        new DeepTokenRange((Object) null, null,
+                                getHosts(collection.getDB().getMongo().getServerAddressList())),
+                        getSplitKey()) };
+            }
+
+            return calculatePartitions(collection);
         } catch (UnknownHostException e) {
 
             throw new DeepGenericException(e);
         } finally {
-            if (mongoClient != null) {
-                mongoClient.close();
-            }
-
+            MongoClientProvider.release(mongoClient);
         }
     }
 
 
+    /**
+     * Splits the collection. Sharded collections are split by chunk or, if chunks are not used, every shard is split
+     * on its own and read through its own hosts, since splitVector cannot run through mongos.
+     *
+     * @param collection the collection
+     * @return the partitions
+     * @throws UnknownHostException if the host of a shard cannot be resolved
+     */
+    DeepPartition[] calculatePartitions(DBCollection collection) throws UnknownHostException {
+        if (!isShardedCollection(collection)) {
+            return calculateSplits(collection);
+        }
+        return mongoDeepJobConfig.isSplitsUseChunks() ? calculateShardChunks(collection) :
+                calculateShardSplits(collection);
+    }
+
     /**
      * Is sharded collection.
      *
@@ -159,11 +191,9 @@ public abstract class MongoNativeExtractor<T, S extends BaseConfig> implements I
         while (cursorShards.hasNext()) {
             DBObject currentShard = cursorShards.next();
             String currentHost = (String) currentShard.get("host");
+            // replica set shards are listed as "replicaSet/host1,host2", standalone ones as "host"
             int slashIndex = currentHost.indexOf("/");
-            if (slashIndex > 0) {
-                map.put((String) currentShard.get(MONGO_DEFAULT_ID),
-                        currentHost.substring(slashIndex + 1).split(","));
-            }
+            map.put((String) currentShard.get(MONGO_DEFAULT_ID), currentHost.substring(slashIndex + 1).split(","));
         }
         return map;
     }
@@ -180,111 +210,230 @@ public abstract class MongoNativeExtractor<T, S extends BaseConfig> implements I
         return configChunks.find(new BasicDBObject("ns", collection.getFullName()));
     }
 
+    /**
+     * Returns the key the collection is split on: the configured input key, or _id.
+     *
+     * @return the split key
+     */
+    private String getSplitKey() {
+        return mongoDeepJobConfig.getInputKey() != null ? mongoDeepJobConfig.getInputKey() : MONGO_DEFAULT_ID;
+    }
+
     /**
      * Calculate splits.
+     * <p>
+     * The collection is split with splitVector, which balances the splits by their size in bytes. If splitVector is
+     * not permitted, the split keys are estimated from a sample of the collection sized after its collStats.
+     * </p>
      *
      * @param collection the collection
      * @return the deep partition [ ]
      */
     private DeepPartition[] calculateSplits(DBCollection collection) {
+        List<MongoPartition> partitions = new ArrayList<>();
+        addPartitions(partitions, calculateSplitKeys(collection),
+                getHosts(collection.getDB().getMongo().getServerAddressList()));
+        return partitions.toArray(new MongoPartition[partitions.size()]);
+    }
 
-        BasicDBList splitData = getSplitData(collection);
-        List<ServerAddress> serverAddressList = collection.getDB().getMongo().getServerAddressList();
-
-        if (splitData == null) {
-            Pair<BasicDBList, List<ServerAddress>> pair = getSplitDataCollectionShardEnviroment(getShards(collection),
-                    collection.getDB().getName(),
-                    collection.getName());
-            splitData = pair.left;
-            serverAddressList = pair.right;
+    /**
+     * Splits every shard of a sharded collection as an unsharded collection, each split being read from the hosts
+     * of its shard.
+     *
+     * @param collection the collection
+     * @return the partitions of all the shards
+     * @throws UnknownHostException if the host of a shard cannot be resolved
+     */
+    private DeepPartition[] calculateShardSplits(DBCollection collection) throws UnknownHostException {
+        List<MongoPartition> partitions = new ArrayList<>();
+
+        for (String[] shardHosts : getShards(collection).values()) {
+            List<ServerAddress> addressList = getServerAddressList(Arrays.asList(shardHosts));
+            MongoClient shardClient = getShardClient(addressList);
+            try {
+                DBCollection shardCollection = shardClient.getDB(collection.getDB().getName())
+                        .getCollection(collection.getName());
+                addPartitions(partitions, calculateSplitKeys(shardCollection), getHosts(addressList));
+            } finally {
+                MongoClientProvider.release(shardClient);
+            }
         }
 
-        Object lastKey = null; // Lower boundary of the first min split
+        return partitions.toArray(new MongoPartition[partitions.size()]);
+    }
 
-        List<String> stringHosts = new ArrayList<>();
+    /**
+     * Returns a client connected to the hosts of a shard, which must be released.
+     *
+     * @param addressList the hosts of the shard
+     * @return the client
+     */
+    MongoClient getShardClient(List<ServerAddress> addressList) {
+        return MongoClientProvider.getClient(addressList);
+    }
 
-        for (ServerAddress serverAddress : serverAddressList) {
-            stringHosts.add(serverAddress.toString());
-        }
-        int i = 0;
+    /**
+     * Returns the keys splitting the given collection, computed by splitVector or estimated if it is not permitted.
+     *
+     * @param collection the collection
+     * @return the split keys, in ascending order
+     */
+    private List<Object> calculateSplitKeys(DBCollection collection) {
+        String splitKey = getSplitKey();
 
-        MongoPartition[] partitions = new MongoPartition[splitData.size() + 1];
+        BasicDBList splitData = getSplitData(collection);
+        if (splitData == null) {
+            return estimateSplitKeys(collection, splitKey);
+        }
 
+        List<Object> splitKeys = new ArrayList<>();
         for (Object aSplitData : splitData) {
+            splitKeys.add(((DBObject) aSplitData).get(splitKey));
+        }
+        return splitKeys;
+    }
 
-            BasicDBObject currentKey = (BasicDBObject) aSplitData;
+    /**
+     * Adds the partitions between the given split keys, read from the given hosts.
+     */
+    private void addPartitions(List<MongoPartition> partitions, List<Object> splitKeys, List<String> hosts) {
+        String splitKey = getSplitKey();
 
-            Object currentO = currentKey.get(MONGO_DEFAULT_ID);
+        // the first and the last splits are open ended, so documents out of the split keys are read too
+        Object lastKey = null; // Lower boundary of the first min split
+        for (Object currentKey : splitKeys) {
+            partitions.add(new MongoPartition(mongoDeepJobConfig.getRddId(), partitions.size(),
+                    new DeepTokenRange(lastKey, currentKey, hosts), splitKey));
+            lastKey = currentKey;
+        }
+        partitions.add(new MongoPartition(mongoDeepJobConfig.getRddId(), partitions.size(),
+                new DeepTokenRange(lastKey, null, hosts), splitKey));
+    }
 
-            partitions[i] = new MongoPartition(mongoDeepJobConfig.getRddId(), i, new DeepTokenRange(lastKey,
-                    currentO, stringHosts), MONGO_DEFAULT_ID);
+    private static List<String> getHosts(List<ServerAddress> serverAddressList) {
+        List<String> stringHosts = new ArrayList<>();
 
-            lastKey = currentO;
-            i++;
+        for (ServerAddress serverAddress : serverAddressList) {
+            stringHosts.add(serverAddress.toString());
         }
-        QueryBuilder queryBuilder = QueryBuilder.start(MONGO_DEFAULT_ID);
-        queryBuilder.greaterThanEquals(lastKey);
-        partitions[i] = new MongoPartition(0, i, new DeepTokenRange(lastKey, null, stringHosts), MONGO_DEFAULT_ID);
-        return partitions;
+        return stringHosts;
     }
 
     /**
      * Gets split data.
      *
      * @param collection the collection
-     * @return the split data
+     * @return the split data, or null if the collection cannot be split with splitVector
      */
     private BasicDBList getSplitData(DBCollection collection) {
 
         final DBObject cmd = BasicDBObjectBuilder.start("splitVector", collection.getFullName())
-                .add("keyPattern", new BasicDBObject(MONGO_DEFAULT_ID, 1))
+                .add("keyPattern", new BasicDBObject(getSplitKey(), 1))
                 .add("force", false)
-                .add("maxChunkSize", splitSize)
+                .add("maxChunkSize", mongoDeepJobConfig.getSplitSize())
                 .get();
 
         CommandResult splitVectorResult = collection.getDB().getSisterDB("admin").command(cmd);
+        if (!splitVectorResult.ok()) {
+            LOG.debug("splitVector failed on " + collection.getFullName() + ": " + splitVectorResult.getErrorMessage());
+            return null;
+        }
         return (BasicDBList) splitVectorResult.get(SPLIT_KEYS);
 
     }
 
     /**
-     * Gets split data collection shard enviroment.
+     * Estimates the split keys of a collection which cannot be split with splitVector. The number of splits follows
+     * from the data size reported by collStats and the configured split size, and the keys are picked at even
+     * intervals from a random $sample of the collection or, if the server does not support $sample, from the
+     * collection sorted by the split key.
      *
-     * @param shards         the shards
-     * @param dbName         the db name
-     * @param collectionName the collection name
-     * @return the split data collection shard enviroment
+     * @param collection the collection
+     * @param splitKey   the split key
+     * @return the split keys, in ascending order
      */
-    private Pair<BasicDBList, List<ServerAddress>> getSplitDataCollectionShardEnviroment(Map<String, String[]> shards,
-                                                                                         String dbName,
-                                                                                         String collectionName) {
-        MongoClient mongoClient = null;
+    private List<Object> estimateSplitKeys(DBCollection collection, String splitKey) {
+        CommandResult stats = collection.getStats();
+        long count = stats.get("count") == null ? 0 : ((Number) stats.get("count")).longValue();
+        long size = stats.get("size") == null ? 0 : ((Number) stats.get("size")).longValue();
+
+        int splits = (int) Math.min(count - 1, size / (mongoDeepJobConfig.getSplitSize() * MB));
+        if (splits <= 0) {
+            return new ArrayList<>();
+        }
+
+        LOG.info("splitVector is not permitted on " + collection.getFullName() + ", estimating " + (splits + 1) +
+                " splits on " + splitKey);
+
+        List<Object> splitKeys;
         try {
-            Set<String> keys = shards.keySet();
+            splitKeys = sampleSplitKeys(collection, splitKey, splits);
+        } catch (MongoException e) {
+            LOG.debug("$sample failed on " + collection.getFullName() + ": " + e.getMessage());
+            splitKeys = bucketSplitKeys(collection, splitKey, count, splits);
+        }
+        return splitKeys;
+    }
 
-            for (String key : keys) {
+    /**
+     * Picks the split keys from a sorted random sample of the collection.
+     */
+    private List<Object> sampleSplitKeys(DBCollection collection, String splitKey, int splits) {
+        List<DBObject> pipeline = new ArrayList<>();
+        pipeline.add(new BasicDBObject("$sample", new BasicDBObject("size", splits * SAMPLES_PER_SPLIT)));
+        pipeline.add(new BasicDBObject("$project", new BasicDBObject(splitKey, 1)));
+        pipeline.add(new BasicDBObject("$sort", new BasicDBObject(splitKey, 1)));
 
-                List<ServerAddress> addressList = getServerAddressList(Arrays.asList(shards.get(key)));
+        AggregationOutput output = collection.aggregate(pipeline);
 
-                mongoClient = new MongoClient(addressList);
+        List<Object> splitKeys = new ArrayList<>();
+        int i = 0;
+        for (DBObject document : output.results()) {
+            if (++i % SAMPLES_PER_SPLIT == 0) {
+                addSplitKey(splitKeys, document.get(splitKey));
+            }
+        }
+        return splitKeys;
+    }
 
-                BasicDBList dbList = getSplitData(mongoClient.getDB(dbName).getCollection(collectionName));
+    /**
+     * Picks the split keys at even intervals of the collection sorted by the split key, in a single pass over the
+     * split key index.
+     */
+    private List<Object> bucketSplitKeys(DBCollection collection, String splitKey, long count, int splits) {
+        long step = count / (splits + 1);
+        DBObject keyPattern = new BasicDBObject(splitKey, 1);
+
+        // only the split key is returned, so the scan is covered by its index
+        DBObject fields = new BasicDBObject(splitKey, 1);
+        if (!MONGO_DEFAULT_ID.equals(splitKey)) {
+            fields.put(MONGO_DEFAULT_ID, 0);
+        }
 
-                if (dbList != null) {
-                    return Pair.create(dbList, addressList);
+        List<Object> splitKeys = new ArrayList<>();
+        DBCursor cursor = collection.find(new BasicDBObject(), fields).sort(keyPattern);
+        try {
+            int picked = 0;
+            for (long i = 0; picked < splits && cursor.hasNext(); i++) {
+                DBObject document = cursor.next();
+                if (i > 0 && i % step == 0) {
+                    addSplitKey(splitKeys, document.get(splitKey));
+                    picked++;
                 }
             }
-        } catch (UnknownHostException e) {
-            throw new DeepGenericException(e);
         } finally {
-            if (mongoClient != null) {
-                mongoClient.close();
-            }
-
+            cursor.close();
         }
+        return splitKeys;
+    }
 
-        return null;
-
+    /**
+     * Adds a split key, unless it is missing or repeats the previous one, which would make an empty split.
+     */
+    private static void addSplitKey(List<Object> splitKeys, Object splitKey) {
+        if (splitKey != null && (splitKeys.isEmpty() || !splitKey.equals(splitKeys.get(splitKeys.size() - 1)))) {
+            splitKeys.add(splitKey);
+        }
     }
 
     @Override
@@ -395,7 +544,8 @@ public abstract class MongoNativeExtractor<T, S extends BaseConfig> implements I
         try {
             writer = new MongoWriter(getServerAddressList(mongoDeepJobConfig.getHostList()),
                     mongoDeepJobConfig.getDatabase(),
-                    mongoDeepJobConfig.getCollection(), mongoDeepJobConfig.getWriteConcern());
+                    mongoDeepJobConfig.getCollection(), mongoDeepJobConfig.getWriteConcern(),
+                    mongoDeepJobConfig.getBatchSize(), mongoDeepJobConfig.getWriteConcurrency());
         } catch (UnknownHostException e) {
             throw new DeepGenericException(e);
         }
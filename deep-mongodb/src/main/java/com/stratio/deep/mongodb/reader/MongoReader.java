@@ -24,6 +24,9 @@ import org.apache.spark.Partition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
@@ -38,6 +41,7 @@ import com.stratio.deep.commons.impl.DeepPartition;
 import com.stratio.deep.commons.rdd.IDeepRecordReader;
 import com.stratio.deep.mongodb.config.MongoDeepJobConfig;
 import com.stratio.deep.mongodb.partition.MongoPartition;
+import com.stratio.deep.mongodb.utils.MongoClientProvider;
 
 /**
  * Created by rcrespo on 30/10/14.
@@ -62,9 +66,9 @@ public class MongoReader<T> implements IDeepRecordReader<DBObject> {
      */
     private DB db = null;
     /**
-     * The Db cursor.
+     * The Db cursor, of the find or of the aggregation.
      */
-    private DBCursor dbCursor = null;
+    private Cursor dbCursor = null;
 
     /**
      * The Mongo deep job config.
@@ -88,10 +92,9 @@ public class MongoReader<T> implements IDeepRecordReader<DBObject> {
             dbCursor.close();
         }
 
-        if (mongoClient != null) {
-            mongoClient.close();
-        }
-
+        // a reader closed twice must not give back a reference somebody else holds
+        MongoClientProvider.release(mongoClient);
+        mongoClient = null;
     }
 
     /**
@@ -137,19 +140,61 @@ public class MongoReader<T> implements IDeepRecordReader<DBObject> {
 
             }
 
-            mongoClient = new MongoClient(addressList, mongoCredentials);
-            mongoClient.setReadPreference(ReadPreference.valueOf(mongoDeepJobConfig.getReadPreference()));
+            mongoClient = MongoClientProvider.getClient(addressList, mongoCredentials,
+                    ReadPreference.valueOf(mongoDeepJobConfig.getReadPreference()));
             db = mongoClient.getDB(mongoDeepJobConfig.getDatabase());
-            collection = db.getCollection(mongoDeepJobConfig.getCollection());
 
-            dbCursor = collection.find(generateFilterQuery((MongoPartition) partition),
-                    mongoDeepJobConfig.getDBFields());
+            init(db.getCollection(mongoDeepJobConfig.getCollection()), (MongoPartition) partition);
 
         } catch (UnknownHostException e) {
             throw new DeepExtractorInitializationException(e);
         }
     }
 
+    /**
+     * Opens the cursor of the documents of the partition in the given collection, with a find or with the
+     * configured aggregation pipeline.
+     *
+     * @param collection the collection
+     * @param partition  the partition
+     */
+    void init(DBCollection collection, MongoPartition partition) {
+        this.collection = collection;
+
+        if (mongoDeepJobConfig.getPipeline() != null) {
+            dbCursor = aggregate(partition);
+        } else {
+            DBCursor findCursor = collection.find(generateFilterQuery(partition), mongoDeepJobConfig.getDBFields());
+            if (mongoDeepJobConfig.getCursorBatchSize() > 0) {
+                findCursor.batchSize(mongoDeepJobConfig.getCursorBatchSize());
+            }
+            dbCursor = findCursor;
+        }
+    }
+
+    /**
+     * Runs the configured aggregation pipeline on the documents of the partition, which are selected by a $match
+     * stage prepended to the pipeline.
+     *
+     * @param partition the partition
+     * @return the cursor of the aggregation
+     */
+    private Cursor aggregate(MongoPartition partition) {
+        List<DBObject> pipeline = new ArrayList<>();
+        pipeline.add(new BasicDBObject("$match", generateFilterQuery(partition)));
+        pipeline.addAll(mongoDeepJobConfig.getPipeline());
+
+        LOG.debug("mongodb pipeline " + pipeline);
+
+        AggregationOptions.Builder options = AggregationOptions.builder()
+                .outputMode(AggregationOptions.OutputMode.CURSOR);
+        if (mongoDeepJobConfig.getCursorBatchSize() > 0) {
+            options.batchSize(mongoDeepJobConfig.getCursorBatchSize());
+        }
+
+        return collection.aggregate(pipeline, options.build());
+    }
+
     /**
      * Create query partition.
      *
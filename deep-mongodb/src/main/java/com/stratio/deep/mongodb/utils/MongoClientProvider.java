@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.mongodb.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoCredential;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import com.stratio.deep.commons.utils.ReferenceCountedRegistry;
+
+/**
+ * Executor wide registry of MongoDB clients.
+ * <p>
+ * Every client owns a connection pool and its own monitoring threads, so one client is shared by all the readers and
+ * writers of an executor connecting to the same hosts, with the same credentials and read preference. Clients are
+ * reference counted: every {@link #getClient} must be paired with a {@link #release}. Clients nobody is using are
+ * closed once they have been idle for {@link #IDLE_TIMEOUT} milliseconds.
+ * </p>
+ */
+public final class MongoClientProvider {
+
+    /**
+     * Milliseconds an unused client is kept open.
+     */
+    public static final long IDLE_TIMEOUT = 60000;
+
+    private static final ReferenceCountedRegistry<ClientKey, MongoClient> CLIENTS = new ReferenceCountedRegistry<>(
+            "mongo-client", new ReferenceCountedRegistry.Handler<ClientKey, MongoClient>() {
+                @Override
+                public MongoClient open(ClientKey key) {
+                    MongoClient client = new MongoClient(key.serverAddresses, key.credentials);
+                    client.setReadPreference(key.readPreference);
+                    return client;
+                }
+
+                @Override
+                public void close(ClientKey key, MongoClient client) {
+                    client.close();
+                }
+            });
+
+    /**
+     * Private default constructor.
+     */
+    private MongoClientProvider() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns a client connected to the given hosts, with no credentials and the primary read preference. The client
+     * must be handed back with {@link #release} once it is no longer used.
+     *
+     * @param serverAddresses the hosts.
+     * @return the client.
+     */
+    public static MongoClient getClient(List<ServerAddress> serverAddresses) {
+        return getClient(serverAddresses, Collections.<MongoCredential>emptyList(), ReadPreference.primary());
+    }
+
+    /**
+     * Returns a client connected to the given hosts. The client must be handed back with {@link #release} once it is
+     * no longer used, and its read preference must not be changed.
+     *
+     * @param serverAddresses the hosts.
+     * @param credentials     the credentials.
+     * @param readPreference  the read preference.
+     * @return the client.
+     */
+    public static MongoClient getClient(List<ServerAddress> serverAddresses, List<MongoCredential> credentials,
+                                        ReadPreference readPreference) {
+        return CLIENTS.retain(new ClientKey(serverAddresses, credentials, readPreference), IDLE_TIMEOUT);
+    }
+
+    /**
+     * Hands back a client obtained from {@link #getClient}. Clients not created by this registry are ignored.
+     *
+     * @param client the client no longer used.
+     */
+    public static void release(MongoClient client) {
+        CLIENTS.release(client);
+    }
+
+    /**
+     * The hosts, credentials and read preference of a client. Two keys are equal if they have the same hosts, in any
+     * order, the same credentials and the same read preference.
+     */
+    private static final class ClientKey {
+        private final List<ServerAddress> serverAddresses;
+        private final List<MongoCredential> credentials;
+        private final ReadPreference readPreference;
+        private final String id;
+
+        private ClientKey(List<ServerAddress> serverAddresses, List<MongoCredential> credentials,
+                          ReadPreference readPreference) {
+            this.serverAddresses = serverAddresses;
+            this.credentials = credentials;
+            this.readPreference = readPreference;
+            this.id = id(serverAddresses, credentials, readPreference);
+        }
+
+        /**
+         * Builds the id of a client from its sorted hosts, its credentials and its read preference.
+         */
+        private static String id(List<ServerAddress> serverAddresses, List<MongoCredential> credentials,
+                                 ReadPreference readPreference) {
+            List<String> hosts = new ArrayList<>();
+            for (ServerAddress serverAddress : serverAddresses) {
+                hosts.add(serverAddress.toString());
+            }
+            Collections.sort(hosts);
+
+            StringBuilder key = new StringBuilder(hosts.toString());
+            for (MongoCredential credential : credentials) {
+                key.append(":").append(credential.getUserName()).append("@").append(credential.getSource())
+                        .append("/").append(credential.getMechanism())
+                        .append("/").append(Arrays.hashCode(credential.getPassword()));
+            }
+            return key.append(":").append(readPreference).toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ClientKey && id.equals(((ClientKey) o).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+}
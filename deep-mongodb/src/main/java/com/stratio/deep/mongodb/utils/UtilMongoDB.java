@@ -207,50 +207,61 @@ public final class UtilMongoDB {
     }
 
     /**
-     * converts from BsonObject to cell class with deep's anotations
+     * converts from BsonObject to cell class with deep's anotations.
+     * <p>
+     * The fields are read in a single pass without copying the document, nested documents and arrays included.
+     * </p>
      *
      * @param bsonObject the bson object
      * @param tableName  the table name
      * @return cell from bson
-     * @throws IllegalAccessException the illegal access exception
-     * @throws IllegalAccessException the instantiation exception
-     * @throws IllegalAccessException the invocation target exception
      */
     public static Cells getCellFromBson(BSONObject bsonObject, String tableName) {
 
         Cells cells = tableName != null ? new Cells(tableName) : new Cells();
 
-        Map<String, Object> map = bsonObject.toMap();
-
-        Set<Map.Entry<String, Object>> entryBson = map.entrySet();
-
-        for (Map.Entry<String, Object> entry : entryBson) {
+        for (Map.Entry<String, Object> entry : entries(bsonObject)) {
             try {
+                cells.add(Cell.create(entry.getKey(), getCellValueFromBson(entry.getValue())));
+            } catch (IllegalArgumentException e) {
+                LOG.error("impossible to create a java cell from Bson field:" + entry.getKey() + ", type:" +
+                        (entry.getValue() == null ? null : entry.getValue().getClass()) + ", value:" +
+                        entry.getValue());
+            }
 
-                if (List.class.isAssignableFrom(entry.getValue().getClass())) {
-                    List innerCell = new ArrayList<>();
-                    for (Object innerBson : (List)entry.getValue()) {
-                        if(innerBson instanceof DBObject){
-                            innerCell.add(getCellFromBson((DBObject)innerBson, null));
-                        }else{
-                            innerCell.add(innerBson);
-                        }
+        }
+        return cells;
+    }
 
-                    }
-                    cells.add(Cell.create(entry.getKey(), innerCell));
-                } else if (BSONObject.class.isAssignableFrom(entry.getValue().getClass())) {
-                    Cells innerCells = getCellFromBson((BSONObject) entry.getValue(), null);
-                    cells.add(Cell.create(entry.getKey(), innerCells));
+    /**
+     * Returns the fields of a BSON object, without copying them when possible.
+     */
+    private static Set<Map.Entry<String, Object>> entries(BSONObject bsonObject) {
+        if (bsonObject instanceof Map) {
+            // BasicBSONObject is a map of its fields
+            return ((Map<String, Object>) bsonObject).entrySet();
+        }
+        return ((Map<String, Object>) bsonObject.toMap()).entrySet();
+    }
+
+    /**
+     * Converts a BSON value to a cell value: documents to Cells and arrays to lists, recursively.
+     */
+    private static Object getCellValueFromBson(Object value) {
+        if (value instanceof List) {
+            List<Object> innerCell = new ArrayList<>(((List) value).size());
+            for (Object innerBson : (List) value) {
+                if (innerBson instanceof BSONObject) {
+                    innerCell.add(getCellFromBson((BSONObject) innerBson, null));
                 } else {
-                    cells.add(Cell.create(entry.getKey(), entry.getValue()));
+                    innerCell.add(innerBson);
                 }
-            } catch (IllegalArgumentException e) {
-                LOG.error("impossible to create a java cell from Bson field:" + entry.getKey() + ", type:" + entry
-                        .getValue().getClass() + ", value:" + entry.getValue());
             }
-
+            return innerCell;
+        } else if (value instanceof BSONObject) {
+            return getCellFromBson((BSONObject) value, null);
         }
-        return cells;
+        return value;
     }
 
 
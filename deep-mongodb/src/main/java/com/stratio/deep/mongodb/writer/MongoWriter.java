@@ -16,19 +16,58 @@
 
 package com.stratio.deep.mongodb.writer;
 
+import static com.stratio.deep.mongodb.utils.UtilMongoDB.MONGO_DEFAULT_ID;
+
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
 import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
 import com.mongodb.ServerAddress;
 import com.mongodb.WriteConcern;
+import com.stratio.deep.commons.exception.DeepGenericException;
+import com.stratio.deep.commons.utils.Constants;
+import com.stratio.deep.mongodb.utils.MongoClientProvider;
 
 /**
+ * Writes documents to a MongoDB collection in unordered bulk operations.
+ * <p>
+ * Documents are buffered and written in batches of the configured size. Documents without an {@code _id} are simply
+ * inserted, while the others replace the document with the same {@code _id}, or are inserted if there is none. Up to
+ * the configured number of batches are written at the same time: saving blocks until one of them completes. The
+ * first failed batch makes the writer fail, at the latest when it is closed.
+ * </p>
+ * <p>
+ * The last saved document with a given {@code _id} is the one left in the collection: documents are spread over as
+ * many lanes as batches written at the same time by their {@code _id}, every lane writes its batches one after the
+ * other, and a batch never holds two documents with the same {@code _id}.
+ * </p>
  * Created by rcrespo on 5/11/14.
  */
 public class MongoWriter implements AutoCloseable {
 
+    private static final Logger LOG = LoggerFactory.getLogger(MongoWriter.class);
+
+    /**
+     * The default number of documents per bulk operation.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
     /**
      * The Mongo client.
      */
@@ -40,9 +79,52 @@ public class MongoWriter implements AutoCloseable {
 
     protected WriteConcern writeConcern = null;
 
+    private final int batchSize;
+
+    private final int writeConcurrency;
 
     /**
-     * Instantiates a new Mongo writer.
+     * Permits for the batches being written.
+     */
+    private final Semaphore inFlight;
+
+    /**
+     * The lanes batches are written through, one at a time per lane.
+     */
+    private final Lane[] lanes;
+
+    /**
+     * The lane the documents without {@code _id} are sent to.
+     */
+    private int insertLane = 0;
+
+    /**
+     * The first batch write failure.
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * The documents to be written by a single thread, in order.
+     */
+    private final class Lane {
+
+        private final ExecutorService executor;
+
+        private List<DBObject> batch = new ArrayList<>();
+
+        /**
+         * The {@code _id}s of the buffered documents.
+         */
+        private final Set<Object> ids = new HashSet<>();
+
+        private Lane() {
+            this.executor = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("deep-mongo-writer-%d").setDaemon(true).build());
+        }
+    }
+
+    /**
+     * Instantiates a new Mongo writer with the default batch size and concurrency.
      * 
      * @param serverAddresses
      *            the server addresses
@@ -53,9 +135,57 @@ public class MongoWriter implements AutoCloseable {
      */
     public MongoWriter(List<ServerAddress> serverAddresses, String databaseName, String collectionName,
             WriteConcern writeConcern) {
-        mongoClient = new MongoClient(serverAddresses);
-        dbCollection = mongoClient.getDB(databaseName).getCollection(collectionName);
+        this(serverAddresses, databaseName, collectionName, writeConcern, DEFAULT_BATCH_SIZE,
+                Constants.DEFAULT_WRITE_CONCURRENCY);
+    }
+
+    /**
+     * Instantiates a new Mongo writer.
+     *
+     * @param serverAddresses
+     *            the server addresses
+     * @param databaseName
+     *            the database name
+     * @param collectionName
+     *            the collection name
+     * @param batchSize
+     *            the number of documents per bulk operation
+     * @param writeConcurrency
+     *            the maximum number of bulk operations written at the same time
+     */
+    public MongoWriter(List<ServerAddress> serverAddresses, String databaseName, String collectionName,
+            WriteConcern writeConcern, int batchSize, int writeConcurrency) {
+        this(MongoClientProvider.getClient(serverAddresses), databaseName, collectionName, writeConcern, batchSize,
+                writeConcurrency);
+    }
+
+    private MongoWriter(MongoClient mongoClient, String databaseName, String collectionName,
+            WriteConcern writeConcern, int batchSize, int writeConcurrency) {
+        this(mongoClient.getDB(databaseName).getCollection(collectionName), writeConcern, batchSize,
+                writeConcurrency);
+        this.mongoClient = mongoClient;
+    }
+
+    /**
+     * Instantiates a new Mongo writer of the given collection, whose client is not released on close.
+     *
+     * @param dbCollection
+     *            the collection
+     * @param batchSize
+     *            the number of documents per bulk operation
+     * @param writeConcurrency
+     *            the maximum number of bulk operations written at the same time
+     */
+    MongoWriter(DBCollection dbCollection, WriteConcern writeConcern, int batchSize, int writeConcurrency) {
+        this.dbCollection = dbCollection;
         this.writeConcern = writeConcern;
+        this.batchSize = batchSize;
+        this.writeConcurrency = writeConcurrency;
+        this.inFlight = new Semaphore(writeConcurrency);
+        this.lanes = new Lane[writeConcurrency];
+        for (int i = 0; i < writeConcurrency; i++) {
+            lanes[i] = new Lane();
+        }
     }
 
     /**
@@ -65,16 +195,132 @@ public class MongoWriter implements AutoCloseable {
      *            the db object
      */
     public void save(DBObject dbObject) {
-        dbCollection.save(dbObject, writeConcern);
+        checkFailure();
+
+        Object id = dbObject.get(MONGO_DEFAULT_ID);
+        Lane lane;
+        if (id == null) {
+            lane = lanes[insertLane];
+        } else {
+            lane = lanes[(id.hashCode() & Integer.MAX_VALUE) % lanes.length];
+            if (!lane.ids.add(id)) {
+                // the previous document with this _id must be written first
+                flush(lane);
+                lane.ids.add(id);
+            }
+        }
+
+        lane.batch.add(dbObject);
+        if (lane.batch.size() >= batchSize) {
+            flush(lane);
+            if (lane == lanes[insertLane]) {
+                insertLane = (insertLane + 1) % lanes.length;
+            }
+        }
+    }
+
+    /**
+     * Sends the documents buffered in the given lane, waiting first for a free slot if the maximum number of batches
+     * is being written.
+     */
+    private void flush(Lane lane) {
+        if (lane.batch.isEmpty()) {
+            return;
+        }
+
+        final List<DBObject> documents = lane.batch;
+        lane.batch = new ArrayList<>(batchSize);
+        lane.ids.clear();
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeepGenericException(e);
+        }
+
+        try {
+            lane.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        write(documents);
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
     }
 
     /**
-     * Close void.
+     * Writes the given documents in one unordered bulk operation.
+     */
+    private void write(List<DBObject> documents) {
+        BulkWriteOperation bulk = dbCollection.initializeUnorderedBulkOperation();
+        for (DBObject document : documents) {
+            Object id = document.get(MONGO_DEFAULT_ID);
+            if (id == null) {
+                bulk.insert(document);
+            } else {
+                bulk.find(new BasicDBObject(MONGO_DEFAULT_ID, id)).upsert().replaceOne(document);
+            }
+        }
+
+        try {
+            bulk.execute(writeConcern);
+        } catch (BulkWriteException e) {
+            List<BulkWriteError> errors = e.getWriteErrors();
+            String message = "Bulk write of " + documents.size() + " documents to " + dbCollection.getFullName() +
+                    " failed with " + errors.size() + " write errors" +
+                    (errors.isEmpty() ? "" : ", the first one: " + errors.get(0).getMessage()) +
+                    (e.getWriteConcernError() == null ? "" : ", write concern error: " +
+                            e.getWriteConcernError().getMessage());
+            LOG.error(message);
+            failure.compareAndSet(null, new DeepGenericException(message, e));
+        } catch (Exception e) {
+            LOG.error("Bulk write of " + documents.size() + " documents to " + dbCollection.getFullName() +
+                    " failed: " + e.getMessage());
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Throws the first batch write failure, if any.
+     */
+    private void checkFailure() {
+        Throwable t = failure.get();
+        if (t instanceof DeepGenericException) {
+            throw (DeepGenericException) t;
+        }
+        if (t != null) {
+            throw new DeepGenericException(t);
+        }
+    }
+
+    /**
+     * Writes the buffered documents, waits for all the batches being written and closes the client.
      */
     public void close() {
-        if (mongoClient != null) {
-            mongoClient.close();
+        try {
+            for (Lane lane : lanes) {
+                flush(lane);
+            }
+        } finally {
+            inFlight.acquireUninterruptibly(writeConcurrency);
+            inFlight.release(writeConcurrency);
+            for (Lane lane : lanes) {
+                lane.executor.shutdownNow();
+            }
+
+            MongoClientProvider.release(mongoClient);
+            mongoClient = null;
         }
+
+        checkFailure();
     }
 
 }
@@ -16,8 +16,11 @@
 
 package com.stratio.deep.mongodb.config;
 
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.BATCHSIZE;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.CURSOR_BATCH_SIZE;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.FILTER_QUERY;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.INPUT_KEY;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.PIPELINE;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.READ_PREFERENCE;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.REPLICA_SET;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.SORT;
@@ -25,6 +28,7 @@ import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.SPLIT_
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.USE_CHUNKS;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.USE_SHARD;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.USE_SPLITS;
+import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.WRITE_CONCURRENCY;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.WRITE_MODE;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.HOST;
 import static com.stratio.deep.commons.extractor.utils.ExtractorConstants.PORT;
@@ -34,6 +38,7 @@ import static org.testng.Assert.*;
 
 import org.testng.annotations.Test;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteConcern;
 import com.stratio.deep.commons.config.ExtractorConfig;
@@ -55,6 +60,10 @@ public class MongoDeepJobConfigTest {
     private boolean useChunks = true;
     private int splitSize = 20;
     private WriteConcern writeMode = WriteConcern.JOURNAL_SAFE;
+    private int batchSize = 500;
+    private int writeConcurrency = 4;
+    private String pipeline = "[{$project: {author: 1}}, {$group: {_id: '$author', books: {$sum: 1}}}]";
+    private int cursorBatchSize = 100;
 
     @Test
     public void testInitialize() throws Exception {
@@ -77,6 +86,21 @@ public class MongoDeepJobConfigTest {
         assertEquals(mongoDeepJobConfig.isSplitsUseChunks(), useChunks);
         assertEquals(mongoDeepJobConfig.getSplitSize().intValue(), splitSize);
         assertEquals(mongoDeepJobConfig.getWriteConcern(), writeMode);
+        assertEquals(mongoDeepJobConfig.getBatchSize(), batchSize);
+        assertEquals(mongoDeepJobConfig.getWriteConcurrency(), writeConcurrency);
+        assertEquals(mongoDeepJobConfig.getPipeline().size(), 2);
+        assertEquals(mongoDeepJobConfig.getPipeline().get(0), new BasicDBObject("$project",
+                new BasicDBObject("author", 1)));
+        assertEquals(mongoDeepJobConfig.getCursorBatchSize(), cursorBatchSize);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPipelineWithFieldsIsRejected() {
+
+        MongoDeepJobConfig mongoDeepJobConfig = new MongoDeepJobConfig(Cells.class);
+        mongoDeepJobConfig.inputColumns("author");
+
+        mongoDeepJobConfig.initialize(getExtractorConfig());
     }
 
 
@@ -98,6 +122,10 @@ public class MongoDeepJobConfigTest {
         extractorConfig.putValue(USE_CHUNKS, useChunks);
         extractorConfig.putValue(SPLIT_SIZE, splitSize);
         extractorConfig.putValue(WRITE_MODE, writeMode);
+        extractorConfig.putValue(BATCHSIZE, batchSize);
+        extractorConfig.putValue(WRITE_CONCURRENCY, writeConcurrency);
+        extractorConfig.putValue(PIPELINE, pipeline);
+        extractorConfig.putValue(CURSOR_BATCH_SIZE, cursorBatchSize);
 
         return extractorConfig;
 
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.mongodb.extractor;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+import com.mongodb.AggregationOutput;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.CommandResult;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.Mongo;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.stratio.deep.commons.impl.DeepPartition;
+import com.stratio.deep.commons.rdd.DeepTokenRange;
+import com.stratio.deep.mongodb.config.MongoDeepJobConfig;
+
+@Test
+public class MongoNativeExtractorTest {
+
+    private static final long MB = 1024L * 1024L;
+
+    @Test
+    public void testSplitVectorKeysBoundPartitions() throws Exception {
+        DBCollection collection = collection(mongo(false), splitVector(10, 20));
+
+        DeepPartition[] partitions = extractor(true).calculatePartitions(collection);
+
+        assertRanges(partitions, null, 10, 10, 20, 20, null);
+        for (DeepPartition partition : partitions) {
+            assertEquals(partition.splitWrapper().getReplicas(), Arrays.asList("127.0.0.1:27017"));
+        }
+    }
+
+    @Test
+    public void testSampledKeysWhenSplitVectorFails() throws Exception {
+        DBCollection collection = collection(mongo(false), failedCommand());
+        stats(collection, 1000, 3 * MB);
+
+        List<DBObject> sample = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            sample.add(new BasicDBObject("_id", i));
+        }
+        AggregationOutput output = mock(AggregationOutput.class);
+        when(output.results()).thenReturn(sample);
+        when(collection.aggregate(anyListOf(DBObject.class))).thenReturn(output);
+
+        DeepPartition[] partitions = extractor(true).calculatePartitions(collection);
+
+        // one split every 10 sampled keys
+        assertRanges(partitions, null, 9, 9, 19, 19, 29, 29, null);
+    }
+
+    @Test
+    public void testBucketedKeysWhenSampleFails() throws Exception {
+        DBCollection collection = collection(mongo(false), failedCommand());
+        stats(collection, 1000, 3 * MB);
+        when(collection.aggregate(anyListOf(DBObject.class))).thenThrow(new MongoException("$sample not supported"));
+
+        final AtomicInteger read = new AtomicInteger();
+        DBCursor cursor = mock(DBCursor.class);
+        when(collection.find(any(DBObject.class), any(DBObject.class))).thenReturn(cursor);
+        when(cursor.sort(any(DBObject.class))).thenReturn(cursor);
+        when(cursor.hasNext()).thenReturn(true);
+        when(cursor.next()).thenAnswer(new Answer<DBObject>() {
+            @Override
+            public DBObject answer(InvocationOnMock invocation) {
+                return new BasicDBObject("_id", read.getAndIncrement());
+            }
+        });
+
+        DeepPartition[] partitions = extractor(true).calculatePartitions(collection);
+
+        // the document at every quarter of the collection, read in a single sorted pass stopping at the last one
+        assertRanges(partitions, null, 250, 250, 500, 500, 750, 750, null);
+        verify(collection, times(1)).find(new BasicDBObject(), new BasicDBObject("_id", 1));
+        verify(cursor).sort(new BasicDBObject("_id", 1));
+        verify(cursor, never()).skip(anyInt());
+        verify(cursor).close();
+        assertEquals(read.get(), 751);
+    }
+
+    @Test
+    public void testUnsplittableCollectionIsReadWhole() throws Exception {
+        DBCollection collection = collection(mongo(false), failedCommand());
+        stats(collection, 1000, MB / 2);
+
+        DeepPartition[] partitions = extractor(true).calculatePartitions(collection);
+
+        assertRanges(partitions, null, null);
+    }
+
+    @Test
+    public void testShardsAreSplitThroughTheirOwnHosts() throws Exception {
+        CommandResult mongosSplitVector = failedCommand();
+        DBCollection collection = collection(mongo(true, shard("shard0", "rs0/127.0.0.1:27018"),
+                shard("shard1", "127.0.0.1:27019")), mongosSplitVector);
+
+        DBCollection shardCollection = collection(mongo(false), splitVector(5));
+        DB shardDB = shardCollection.getDB();
+        MongoClient shardClient = mock(MongoClient.class);
+        when(shardClient.getDB("db")).thenReturn(shardDB);
+        when(shardDB.getCollection("coll")).thenReturn(shardCollection);
+
+        MongoNativeExtractor<DBObject, MongoDeepJobConfig<DBObject>> extractor = spy(extractor(false));
+        doReturn(shardClient).when(extractor).getShardClient(anyListOf(ServerAddress.class));
+
+        DeepPartition[] partitions = extractor.calculatePartitions(collection);
+
+        assertRanges(partitions, null, 5, 5, null, null, 5, 5, null);
+        assertEquals(partitions[0].splitWrapper().getReplicas(), partitions[1].splitWrapper().getReplicas());
+        assertEquals(partitions[2].splitWrapper().getReplicas(), partitions[3].splitWrapper().getReplicas());
+        assertEquals(new HashSet<>(Arrays.asList(partitions[0].splitWrapper().getReplicas().get(0),
+                        partitions[2].splitWrapper().getReplicas().get(0))),
+                new HashSet<>(Arrays.asList("127.0.0.1:27018", "127.0.0.1:27019")));
+        verify(mongosSplitVector, never()).ok();
+    }
+
+    /**
+     * Returns an extractor splitting on _id in splits of 1 MB.
+     */
+    @SuppressWarnings("unchecked")
+    private static MongoNativeExtractor<DBObject, MongoDeepJobConfig<DBObject>> extractor(boolean useChunks) {
+        MongoDeepJobConfig<DBObject> config = mock(MongoDeepJobConfig.class);
+        when(config.getSplitSize()).thenReturn(1);
+        when(config.isSplitsUseChunks()).thenReturn(useChunks);
+
+        MongoNativeDBObjectExtractor extractor = new MongoNativeDBObjectExtractor();
+        extractor.mongoDeepJobConfig = config;
+        return extractor;
+    }
+
+    /**
+     * Checks that the partitions are numbered in order and bounded by the given start and end keys.
+     */
+    private static void assertRanges(DeepPartition[] partitions, Object... bounds) {
+        List<Object> actual = new ArrayList<>();
+        for (int i = 0; i < partitions.length; i++) {
+            assertEquals(partitions[i].index(), i);
+            actual.add(partitions[i].splitWrapper().getStartToken());
+            actual.add(partitions[i].splitWrapper().getEndToken());
+        }
+        assertEquals(actual, Arrays.asList(bounds));
+    }
+
+    private static DBCollection collection(Mongo mongo, CommandResult splitVectorResult) {
+        DB admin = mock(DB.class);
+        when(admin.command(any(DBObject.class))).thenReturn(splitVectorResult);
+
+        DB configDB = mongo.getDB("config");
+        DB db = mock(DB.class);
+        when(db.getMongo()).thenReturn(mongo);
+        when(db.getName()).thenReturn("db");
+        when(db.getSisterDB("admin")).thenReturn(admin);
+        when(db.getSisterDB("config")).thenReturn(configDB);
+
+        DBCollection collection = mock(DBCollection.class);
+        when(collection.getDB()).thenReturn(db);
+        when(collection.getName()).thenReturn("coll");
+        when(collection.getFullName()).thenReturn("db.coll");
+        return collection;
+    }
+
+    /**
+     * Returns a server, listing the given shards if the collection is sharded.
+     */
+    private static Mongo mongo(boolean sharded, DBObject... shards) throws Exception {
+        DBCollection collections = mock(DBCollection.class);
+        when(collections.findOne(any(DBObject.class))).thenReturn(sharded ? new BasicDBObject("_id", "db.coll") : null);
+
+        DBCursor shardCursor = mock(DBCursor.class);
+        List<Boolean> hasNext = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            hasNext.add(true);
+        }
+        hasNext.add(false);
+        when(shardCursor.hasNext()).thenReturn(hasNext.get(0),
+                hasNext.subList(1, hasNext.size()).toArray(new Boolean[hasNext.size() - 1]));
+        if (shards.length > 0) {
+            when(shardCursor.next()).thenReturn(shards[0], Arrays.copyOfRange(shards, 1, shards.length));
+        }
+        DBCollection shardCollection = mock(DBCollection.class);
+        when(shardCollection.find()).thenReturn(shardCursor);
+
+        DB configDB = mock(DB.class);
+        when(configDB.getCollection("collections")).thenReturn(collections);
+        when(configDB.getCollection("shards")).thenReturn(shardCollection);
+
+        Mongo mongo = mock(Mongo.class);
+        when(mongo.getDB("config")).thenReturn(configDB);
+        when(mongo.getServerAddressList()).thenReturn(Arrays.asList(new ServerAddress("127.0.0.1", 27017)));
+        return mongo;
+    }
+
+    private static DBObject shard(String id, String host) {
+        return new BasicDBObject("_id", id).append("host", host);
+    }
+
+    private static CommandResult splitVector(Object... keys) {
+        BasicDBList splitKeys = new BasicDBList();
+        for (Object key : keys) {
+            splitKeys.add(new BasicDBObject("_id", key));
+        }
+        CommandResult result = mock(CommandResult.class);
+        when(result.ok()).thenReturn(true);
+        when(result.get(MongoNativeExtractor.SPLIT_KEYS)).thenReturn(splitKeys);
+        return result;
+    }
+
+    private static CommandResult failedCommand() {
+        CommandResult result = mock(CommandResult.class);
+        when(result.ok()).thenReturn(false);
+        return result;
+    }
+
+    private static void stats(DBCollection collection, long count, long size) {
+        CommandResult stats = mock(CommandResult.class);
+        when(stats.get("count")).thenReturn(count);
+        when(stats.get("size")).thenReturn(size);
+        when(collection.getStats()).thenReturn(stats);
+    }
+}
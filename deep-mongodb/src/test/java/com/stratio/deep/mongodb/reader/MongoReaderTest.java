@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.mongodb.reader;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.List;
+
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.Test;
+
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+import com.stratio.deep.commons.entity.Cells;
+import com.stratio.deep.commons.rdd.DeepTokenRange;
+import com.stratio.deep.mongodb.config.MongoDeepJobConfig;
+import com.stratio.deep.mongodb.partition.MongoPartition;
+
+@Test
+public class MongoReaderTest {
+
+    private static final String PIPELINE = "[{$project: {author: 1}}, {$group: {_id: '$author', books: {$sum: 1}}}]";
+
+    private static final DBObject PARTITION_QUERY = (DBObject) JSON.parse(
+            "{$and: [{_id: {$gte: 'a'}}, {_id: {$lt: 'm'}}]}");
+
+    private final MongoPartition partition = new MongoPartition(0, 0, new DeepTokenRange("a", "m"), "_id");
+
+    @Test
+    public void testPipelineStartsWithPartitionMatch() {
+        MongoDeepJobConfig<Cells> config = new MongoDeepJobConfig<>(Cells.class)
+                .pipeline(PIPELINE)
+                .filterQuery(new BasicDBObject("author", "Cervantes"))
+                .cursorBatchSize(100);
+
+        DBCollection collection = mock(DBCollection.class);
+        ArgumentCaptor<List> pipeline = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<AggregationOptions> options = ArgumentCaptor.forClass(AggregationOptions.class);
+        when(collection.aggregate(anyListOf(DBObject.class), any(AggregationOptions.class)))
+                .thenReturn(mock(Cursor.class));
+
+        new MongoReader<>(config).init(collection, partition);
+
+        verify(collection).aggregate(pipeline.capture(), options.capture());
+        verify(collection, never()).find(any(DBObject.class), any(DBObject.class));
+
+        assertEquals(pipeline.getValue().get(0), JSON.parse("{$match: {$and: [" +
+                "{$and: [{_id: {$gte: 'a'}}, {_id: {$lt: 'm'}}]}, {author: 'Cervantes'}]}}"));
+        assertEquals(pipeline.getValue().subList(1, 3), config.getPipeline());
+
+        assertEquals(options.getValue().getOutputMode(), AggregationOptions.OutputMode.CURSOR);
+        assertEquals(options.getValue().getBatchSize(), Integer.valueOf(100));
+    }
+
+    @Test
+    public void testPipelineWithoutFilterQueryMatchesPartition() {
+        MongoDeepJobConfig<Cells> config = new MongoDeepJobConfig<>(Cells.class).pipeline(PIPELINE);
+
+        DBCollection collection = mock(DBCollection.class);
+        ArgumentCaptor<List> pipeline = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<AggregationOptions> options = ArgumentCaptor.forClass(AggregationOptions.class);
+        when(collection.aggregate(anyListOf(DBObject.class), any(AggregationOptions.class)))
+                .thenReturn(mock(Cursor.class));
+
+        new MongoReader<>(config).init(collection, partition);
+
+        verify(collection).aggregate(pipeline.capture(), options.capture());
+        assertEquals(pipeline.getValue().size(), 3);
+        assertEquals(pipeline.getValue().get(0), new BasicDBObject("$match", PARTITION_QUERY));
+        assertNull(options.getValue().getBatchSize(), "the server default batch size must be kept");
+    }
+
+    @Test
+    public void testFindUsesFieldsAndCursorBatchSize() {
+        MongoDeepJobConfig<Cells> config = new MongoDeepJobConfig<>(Cells.class)
+                .inputColumns("author")
+                .cursorBatchSize(100);
+
+        DBCollection collection = mock(DBCollection.class);
+        DBCursor cursor = mock(DBCursor.class);
+        when(collection.find(any(DBObject.class), any(DBObject.class))).thenReturn(cursor);
+
+        new MongoReader<>(config).init(collection, partition);
+
+        verify(collection).find(PARTITION_QUERY, new BasicDBObject("author", 1).append("_id", 0));
+        verify(cursor).batchSize(100);
+    }
+}
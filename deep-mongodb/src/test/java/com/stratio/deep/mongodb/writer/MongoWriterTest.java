@@ -0,0 +1,275 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.deep.mongodb.writer;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkUpdateRequestBuilder;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteRequestBuilder;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+import com.stratio.deep.commons.exception.DeepGenericException;
+
+@Test
+public class MongoWriterTest {
+
+    /**
+     * A collection whose bulk operations record the inserted and upserted documents of every executed batch. Batches
+     * are only told apart when they are written one at a time.
+     */
+    private static class RecordingCollection {
+        private final DBCollection collection = mock(DBCollection.class);
+        private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+        private final List<DBObject> upsertQueries = Collections.synchronizedList(new ArrayList<DBObject>());
+        private List<String> current = Collections.synchronizedList(new ArrayList<String>());
+
+        private RecordingCollection() {
+            BulkWriteOperation bulk = mock(BulkWriteOperation.class);
+            final BulkWriteRequestBuilder requestBuilder = mock(BulkWriteRequestBuilder.class);
+            BulkUpdateRequestBuilder updateBuilder = mock(BulkUpdateRequestBuilder.class);
+
+            when(collection.initializeUnorderedBulkOperation()).thenReturn(bulk);
+            when(collection.getFullName()).thenReturn("db.collection");
+
+            doAnswer(new Answer<Void>() {
+                @Override
+                public Void answer(InvocationOnMock invocation) {
+                    current.add("insert " + ((DBObject) invocation.getArguments()[0]).get("value"));
+                    return null;
+                }
+            }).when(bulk).insert(any(DBObject.class));
+
+            when(bulk.find(any(DBObject.class))).thenAnswer(new Answer<BulkWriteRequestBuilder>() {
+                @Override
+                public BulkWriteRequestBuilder answer(InvocationOnMock invocation) {
+                    upsertQueries.add((DBObject) invocation.getArguments()[0]);
+                    return requestBuilder;
+                }
+            });
+            when(requestBuilder.upsert()).thenReturn(updateBuilder);
+            doAnswer(new Answer<Void>() {
+                @Override
+                public Void answer(InvocationOnMock invocation) {
+                    current.add("upsert " + ((DBObject) invocation.getArguments()[0]).get("value"));
+                    return null;
+                }
+            }).when(updateBuilder).replaceOne(any(DBObject.class));
+
+            when(bulk.execute(any(WriteConcern.class))).thenAnswer(new Answer<Object>() {
+                @Override
+                public Object answer(InvocationOnMock invocation) throws Throwable {
+                    execute();
+                    batches.add(current);
+                    current = Collections.synchronizedList(new ArrayList<String>());
+                    return null;
+                }
+            });
+        }
+
+        /**
+         * Called when a batch is executed.
+         */
+        void execute() throws Exception {
+        }
+    }
+
+    private static BasicDBObject document(int value) {
+        return new BasicDBObject("value", value);
+    }
+
+    @Test
+    public void testDocumentsAreWrittenInBatches() {
+        RecordingCollection collection = new RecordingCollection();
+        MongoWriter writer = new MongoWriter(collection.collection, WriteConcern.ACKNOWLEDGED, 3, 1);
+
+        for (int i = 0; i < 7; i++) {
+            writer.save(document(i));
+        }
+        writer.close();
+
+        assertEquals(collection.batches.size(), 3);
+        assertEquals(collection.batches.get(0), Arrays.asList("insert 0", "insert 1", "insert 2"));
+        assertEquals(collection.batches.get(1).size(), 3);
+        assertEquals(collection.batches.get(2), Collections.singletonList("insert 6"));
+    }
+
+    @Test
+    public void testDocumentsWithIdAreUpserted() {
+        RecordingCollection collection = new RecordingCollection();
+        MongoWriter writer = new MongoWriter(collection.collection, WriteConcern.ACKNOWLEDGED, 10, 1);
+
+        writer.save(document(0));
+        writer.save(document(1).append("_id", "id1"));
+        writer.close();
+
+        assertEquals(collection.batches.size(), 1);
+        assertEquals(collection.batches.get(0), Arrays.asList("insert 0", "upsert 1"));
+        assertEquals(collection.upsertQueries, Collections.singletonList(new BasicDBObject("_id", "id1")));
+    }
+
+    @Test
+    public void testDocumentsWithTheSameIdAreNotBatchedTogether() {
+        RecordingCollection collection = new RecordingCollection();
+        MongoWriter writer = new MongoWriter(collection.collection, WriteConcern.ACKNOWLEDGED, 10, 1);
+
+        writer.save(document(0).append("_id", "a"));
+        writer.save(document(1).append("_id", "b"));
+        writer.save(document(2).append("_id", "a"));
+        writer.close();
+
+        assertEquals(collection.batches.size(), 2);
+        assertEquals(collection.batches.get(0), Arrays.asList("upsert 0", "upsert 1"));
+        assertEquals(collection.batches.get(1), Collections.singletonList("upsert 2"));
+    }
+
+    @Test
+    public void testDocumentsWithTheSameIdAreWrittenInOrder() {
+        final AtomicInteger executed = new AtomicInteger();
+        RecordingCollection collection = new RecordingCollection() {
+            @Override
+            void execute() throws Exception {
+                // the first batch is the slowest one
+                if (executed.getAndIncrement() == 0) {
+                    Thread.sleep(200);
+                }
+            }
+        };
+        MongoWriter writer = new MongoWriter(collection.collection, WriteConcern.ACKNOWLEDGED, 1, 4);
+
+        for (int i = 0; i < 5; i++) {
+            writer.save(document(i).append("_id", "a"));
+        }
+        writer.close();
+
+        assertEquals(collection.batches, Arrays.asList(Collections.singletonList("upsert 0"),
+                Collections.singletonList("upsert 1"), Collections.singletonList("upsert 2"),
+                Collections.singletonList("upsert 3"), Collections.singletonList("upsert 4")));
+    }
+
+    @Test
+    public void testBatchesInFlightAreLimited() throws Exception {
+        final CountDownLatch written = new CountDownLatch(1);
+        final AtomicInteger executing = new AtomicInteger();
+        final AtomicInteger maxExecuting = new AtomicInteger();
+        final AtomicInteger started = new AtomicInteger();
+        RecordingCollection collection = new RecordingCollection() {
+            @Override
+            void execute() throws Exception {
+                started.incrementAndGet();
+                synchronized (maxExecuting) {
+                    maxExecuting.set(Math.max(maxExecuting.get(), executing.incrementAndGet()));
+                }
+                written.await();
+                executing.decrementAndGet();
+            }
+        };
+        final MongoWriter writer = new MongoWriter(collection.collection, WriteConcern.ACKNOWLEDGED, 1, 2);
+
+        Thread saver = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 5; i++) {
+                    writer.save(document(i));
+                }
+            }
+        };
+        saver.start();
+
+        // the third batch waits for one of the two first ones
+        saver.join(500);
+        assertTrue(saver.isAlive(), "saving should block while two batches are being written");
+        assertEquals(started.get(), 2);
+
+        written.countDown();
+        saver.join(TimeUnit.SECONDS.toMillis(10));
+        writer.close();
+
+        assertEquals(started.get(), 5);
+        assertEquals(maxExecuting.get(), 2);
+    }
+
+    @Test
+    public void testFailedBatchFailsNextSave() {
+        RecordingCollection collection = new RecordingCollection() {
+            @Override
+            void execute() {
+                throw new MongoException("write failed");
+            }
+        };
+        MongoWriter writer = new MongoWriter(collection.collection, WriteConcern.ACKNOWLEDGED, 1, 1);
+
+        writer.save(document(0));
+
+        try {
+            // the second save waits for the first batch to complete before writing its own, so the failure is
+            // reported by the third one at the latest
+            writer.save(document(1));
+            writer.save(document(2));
+            fail("the failure of the first batch should be reported");
+        } catch (DeepGenericException e) {
+            assertTrue(e.getCause() instanceof MongoException);
+        } finally {
+            try {
+                writer.close();
+            } catch (DeepGenericException e) {
+                // the failure is reported again
+            }
+        }
+    }
+
+    @Test
+    public void testFailedBatchFailsClose() {
+        RecordingCollection collection = new RecordingCollection() {
+            @Override
+            void execute() {
+                throw new MongoException("write failed");
+            }
+        };
+        MongoWriter writer = new MongoWriter(collection.collection, WriteConcern.ACKNOWLEDGED, 10, 1);
+
+        writer.save(document(0));
+
+        try {
+            writer.close();
+            fail("the failure of the last batch should be reported on close");
+        } catch (DeepGenericException e) {
+            assertTrue(e.getCause() instanceof MongoException);
+        }
+    }
+}